@@ -1,3 +1,8 @@
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
 /**
  * This class represents the memory pool and provides functions to insert,
  * remove, and retrieve records. It also keeps track of free blocks of space.
@@ -6,7 +11,13 @@
  */
 public class MemPool {
     
-    private LList<FreeSpace> freeBlocks;
+    // Size headers (a first byte of LONG_LENGTH is followed by a four-byte size)
+    private static final int LONG_LENGTH = 0xFF;
+    private static final int LONG_HEADER_SIZE = 5;
+    
+    private TreeMap<Integer, TreeSet<Integer>> freeBlocks; // Free handles by size
+    private TreeMap<Integer, Integer> freeAddresses; // Free sizes by handle
+    private int totalFreeBlocks;
     private byte[] byteArray;
     private int poolSize;
     
@@ -21,8 +32,10 @@ public class MemPool {
         this.poolSize = poolSize;
         
         // Create the free block representing the entire memory pool
-        freeBlocks = new LList<FreeSpace>();
-        freeBlocks.append(new FreeSpace(0, poolSize));
+        freeBlocks = new TreeMap<Integer, TreeSet<Integer>>();
+        freeAddresses = new TreeMap<Integer, Integer>();
+        totalFreeBlocks = 0;
+        addFreeSpace(new FreeSpace(0, poolSize));
     }
     
     /**
@@ -41,26 +54,25 @@ public class MemPool {
      */
     public int insert(byte[] space, int size) {
         // Locate slot using bestfit algorithm
-        int startLocation = findOpenSlot(size);
-        int totalSize = size + 1; // Factors in the size byte
+        FreeSpace bestSpace = findBestSpace(size);
+        int startLocation = -1;
+        int headerSize = getHeaderSize(size);
+        int totalSize = size + headerSize; // Factors in the size header
         
         // Insert the information into the free space
-        if (startLocation != -1) {
-            // Move to the free block with the matching handle
-            freeBlocks.moveToPos(findBestSpace(size));
+        if (bestSpace != null) {
+            startLocation = bestSpace.getHandlePosition();
             
             // Get space left over after new record inserted
-            int leftoverSpace = freeBlocks.getValue().getSpace() - totalSize;
+            int leftoverSpace = bestSpace.getSpace() - totalSize;
             
-            // Remove the free space from the list
-            freeBlocks.remove();
+            // Remove the free space from the index
+            removeFreeSpace(bestSpace);
             
-            // Insert new record at postion, the first byte indicates the size
-            // of the record NOT including the size byte itself
-            byteArray[startLocation] = (byte) size;
-            for (int i = 0; i < size; ++i) {
-                byteArray[startLocation + i + 1] = space[i];
-            }
+            // Insert new record at postion, the header indicates the size
+            // of the record NOT including the header itself
+            writeLength(startLocation, size);
+            System.arraycopy(space, 0, byteArray, startLocation + headerSize, size);
             
             // Check if need to create a new free space block to represent the
             // leftover space and insert it into the list if created
@@ -68,10 +80,8 @@ public class MemPool {
                 FreeSpace remainingSpace = 
                         new FreeSpace(startLocation + totalSize, leftoverSpace);
                 
-                // Add to the list of free spaces and resort the list
-                freeBlocks.append(remainingSpace);
-                sortFreeSpace();
-                mergeFreeSpace();
+                // Add to the index of free spaces and merge it
+                mergeFreeSpace(remainingSpace);
             }
         }
         
@@ -84,23 +94,24 @@ public class MemPool {
      * @param handle The integer position of the start of the record to remove
      */
     public void remove(int handle) {
+        int recordSize = getLength(handle);
+        int space = getHeaderSize(recordSize) + recordSize;
+        
         // Create a new free space block to fill in this space
-        // Adds the single byte used to indicate size to the total bytes
+        // Adds the header used to indicate size to the total bytes
         FreeSpace newSpace = 
                 new FreeSpace(handle,
-                (((int) byteArray[handle]) & 0xFF) + 1);
+                space);
         
         // Clear bytes associated with the record
-        // Adds the single byte used to indicate size to the total bytes
+        // Adds the header used to indicate size to the total bytes
         clearBytes(
                 handle, // Position
-                (((int) byteArray[handle]) & 0xFF) + 1
+                space
         );
 
-        // Insert the free space into the list of spaces, sort, and merge it
-        freeBlocks.append(newSpace);
-        sortFreeSpace();
-        mergeFreeSpace();
+        // Insert the free space into the index of spaces and merge it
+        mergeFreeSpace(newSpace);
     }
     
     /**
@@ -112,17 +123,28 @@ public class MemPool {
      * @param size The total bytes of the array provided
      */
     public int get(byte[] space, int handle, int size) {
-        // Get unsigned byte size
-        int recordSize = ((int) byteArray[handle]) & 0xFF;
+        // Get the size from the header
+        int recordSize = getLength(handle);
         
-        for (int i = handle + 1;
-             i < handle + recordSize + 1 && i < handle + size + 1; ++i) {
-            space[i - handle - 1] = byteArray[i];
-        }
+        System.arraycopy(byteArray, handle + getHeaderSize(recordSize), space, 0,
+                         Math.min(size, recordSize));
         
         return recordSize;
     }
     
+    /**
+     * Returns the array of bytes representing the record pointed to by the
+     * provided handle, whatever its size.
+     * @param handle The handle pointing to the record
+     * @return The bytes of the record
+     */
+    public byte[] get(int handle) {
+        byte[] space = new byte[getLength(handle)];
+        get(space, handle, space.length);
+        
+        return space;
+    }
+    
     /**
      * Retrieves the starting byte position of a free space.
      * @param index The free space in the list whose location to retrieve
@@ -130,16 +152,12 @@ public class MemPool {
      */
     public int getFreeSpaceLocation(int index) {
         // Check if the index is within the bounds of the array
-        if (index < 0 || index > freeBlocks.length() - 1) {
+        if (index < 0 || index > totalFreeBlocks - 1) {
             System.err.println("Free space index is out of bounds!");
             return -1;
         }
         
-        freeBlocks.moveToPos(index);
-        int location = freeBlocks.getValue().getHandlePosition();
-        freeBlocks.moveToStart();
-        
-        return location;
+        return getFreeSpace(index).getHandlePosition();
     }
     
     /**
@@ -149,16 +167,12 @@ public class MemPool {
      */
     public int getFreeSpaceSize(int index) {
         // Check if the index is within the bounds of the array
-        if (index < 0 || index > freeBlocks.length() - 1) {
+        if (index < 0 || index > totalFreeBlocks - 1) {
             System.err.println("Free space index is out of bounds!");
             return -1;
         }
         
-        freeBlocks.moveToPos(index);
-        int size = freeBlocks.getValue().getSpace();
-        freeBlocks.moveToStart();
-        
-        return size;
+        return getFreeSpace(index).getSpace();
     }
     
     /**
@@ -167,195 +181,150 @@ public class MemPool {
      * @return The total number of free blocks
      */
     public int getTotalFreeBlocks() {
-        return freeBlocks.length();
+        return totalFreeBlocks;
     }
     
     /**
-     * Returns the index of best free space to place the
-     * specified number of bytes.
+     * Returns the best free space to place the specified number of bytes:
+     * the smallest space large enough for the bytes and the size header, and
+     * the earliest of the spaces of that size.
      * @param space The number of bytes to potentially place
-     * @return The location of the free space in the list of spaces
+     * @return The free space (or null if none is large enough)
      */
-    private int findBestSpace(int space) {
-        int currentSpace = -1;
-        int freeSize = -1;
-        
-        // Exit early if there is no free space
-        if (freeBlocks.length() == 0) return -1;
-        
-        // Start at beginning to search for free block
-        freeBlocks.moveToStart();
-        freeSize = freeBlocks.getValue().getSpace() + 2; // Make one larger than
-                                                         // the maximum size
+    private FreeSpace findBestSpace(int space) {
+        // Find the smallest size that fits
+        Map.Entry<Integer, TreeSet<Integer>> entry =
+                freeBlocks.ceilingEntry(space + getHeaderSize(space));
+        if (entry == null) return null;
         
-        for (int i = 0; i < freeBlocks.length(); ++i) {
-            // Check if there is enough space with this block (ignores blocks
-            // of the same size as the current best block)
-            if (freeBlocks.getValue().getSpace() >= space + 1 &&
-                freeBlocks.getValue().getSpace() < freeSize) {
-                currentSpace = i;
-                freeSize = freeBlocks.getValue().getSpace();
-            } else if (freeBlocks.getValue().getSpace() < space + 1) {
-                break;
-            }
-            
-            // Check next block
-            freeBlocks.next();
-        }
-        
-        // Reset location to beginning
-        freeBlocks.moveToStart();
-        
-        // Return the location (or -1 if not found)
-        return currentSpace;
+        return new FreeSpace(entry.getValue().first(), entry.getKey());
     }
     
     /**
      * Returns an integer pointing to the available location in the byte array
-     * to store the specified number of bytes plus the size byte.
+     * to store the specified number of bytes plus the size header.
      * Returns -1 if no location is available to use.
      * @param space The number of bytes to store
      * @return The Handle to store the bytes
      */
     public int findOpenSlot(int space) {
-        int freeBlockIndex = findBestSpace(space);
-        int byteIndex = -1;
-        
-        // Get starting location of best free space in the byte array
-        if (freeBlockIndex != -1) {
-            freeBlocks.moveToPos(freeBlockIndex);
-            byteIndex = freeBlocks.getValue().getHandlePosition();
-            freeBlocks.moveToStart();
-        }
+        FreeSpace bestSpace = findBestSpace(space);
         
         // Returns the starting location of the block or -1 if there is no block
-        return byteIndex;
+        return (bestSpace != null) ? bestSpace.getHandlePosition() : -1;
     }
     
     /**
-     * Merges all adjacent free space blocks.
+     * Adds the free space to the index of free spaces after merging it with
+     * the free spaces ending where it starts and starting where it ends,
+     * which are looked up by handle position.
+     * @param newSpace The free space to add
      */
-    private void mergeFreeSpace() {
-        // Exit if there's one or zero free blocks
-        if (freeBlocks.length() < 2) return;
+    private void mergeFreeSpace(FreeSpace newSpace) {
+        int position = newSpace.getHandlePosition();
+        int space = newSpace.getSpace();
         
-        // Represents the current space comparing to all other spaces
-        // and its position in the list
-        FreeSpace currentSpace = null;
-        int currentIndexPosition = 0;
-        int currentPosition = 0;
-        int otherPosition = 0;
+        // Merge the free space to the left
+        Map.Entry<Integer, Integer> left = freeAddresses.floorEntry(position);
+        while (left != null && left.getKey() + left.getValue() == position) {
+            removeFreeSpace(new FreeSpace(left.getKey(), left.getValue()));
+            position = left.getKey();
+            space += left.getValue();
+            left = freeAddresses.floorEntry(position);
+        }
         
-        // Start at beginning of free block list
-        freeBlocks.moveToStart();
+        // Merge the free space to the right
+        Integer right = freeAddresses.get(position + space);
+        while (right != null) {
+            removeFreeSpace(new FreeSpace(position + space, right));
+            space += right;
+            right = freeAddresses.get(position + space);
+        }
         
-        // Loop through and find the two adjacent free blocks
-        while (freeBlocks.currPos() != freeBlocks.length()) {
-            // Get the current free block and its position
-            currentSpace = freeBlocks.getValue();
-            currentPosition = freeBlocks.getValue().getHandlePosition();
-            
-            // Loop through and check all possible remaining free blocks
-            // to see if they are connected
-            for (int i = currentIndexPosition + 1; i < freeBlocks.length(); ++i) {
-                // Move to next block
-                freeBlocks.next();
-                
-                // Get the starting position of the other free block
-                otherPosition = freeBlocks.getValue().getHandlePosition();
-                
-                // Compare free space to see if adjacent
-                if (currentSpace.isAdjacent(freeBlocks.getValue())) {
-                    // Get the combined size of the two free spaces
-                    int totalSize = 
-                            currentSpace.getSpace() + freeBlocks.getValue().getSpace();
-                    
-                    // Determine which block is the left of the two being merged
-                    // and grab its position
-                    int position = (currentPosition < otherPosition) ? 
-                                    currentPosition : otherPosition;
-                    
-                    // Create a new free space at the start of the left smaller
-                    // free space with the size of the two merged spaces
-                    FreeSpace mergedBlock = 
-                            new FreeSpace(position, totalSize);
-                    
-                    // Remove other space
-                    freeBlocks.remove();
-                    
-                    // Remove current space
-                    freeBlocks.moveToPos(currentIndexPosition);
-                    freeBlocks.remove();
-                    
-                    // Append new free space to end of list
-                    freeBlocks.append(mergedBlock);
-                    
-                    // Sort free block list and exit
-                    sortFreeSpace();
-                    
-                    return;
+        addFreeSpace(new FreeSpace(position, space));
+    }
+    
+    /**
+     * Adds the free space to the index of free spaces.
+     * @param space The free space to add
+     */
+    private void addFreeSpace(FreeSpace space) {
+        TreeSet<Integer> handles = freeBlocks.get(space.getSpace());
+        if (handles == null) {
+            handles = new TreeSet<Integer>();
+            freeBlocks.put(space.getSpace(), handles);
+        }
+        handles.add(space.getHandlePosition());
+        freeAddresses.put(space.getHandlePosition(), space.getSpace());
+        ++totalFreeBlocks;
+    }
+    
+    /**
+     * Removes the free space from the index of free spaces.
+     * @param space The free space to remove
+     */
+    private void removeFreeSpace(FreeSpace space) {
+        TreeSet<Integer> handles = freeBlocks.get(space.getSpace());
+        handles.remove(space.getHandlePosition());
+        if (handles.isEmpty()) freeBlocks.remove(space.getSpace());
+        freeAddresses.remove(space.getHandlePosition());
+        --totalFreeBlocks;
+    }
+    
+    /**
+     * Returns the free space at the provided index of the order the spaces
+     * are printed in: descending order of size and, in the case of having
+     * the same size, ascending order of handle position.
+     * @param index The index of the free space
+     * @return The free space
+     */
+    private FreeSpace getFreeSpace(int index) {
+        for (Map.Entry<Integer, TreeSet<Integer>> entry : freeBlocks.descendingMap().entrySet()) {
+            if (index < entry.getValue().size()) {
+                for (int handle : entry.getValue()) {
+                    if (index-- == 0) return new FreeSpace(handle, entry.getKey());
                 }
             }
-            
-            // Move to next free block in list
-            freeBlocks.moveToPos(++currentIndexPosition);
+            index -= entry.getValue().size();
         }
         
-        // Move back to beginning of free space list
-        freeBlocks.moveToStart();
+        return null;
     }
     
     /**
-     * Sorts the list of free spaces in descending order of size and, in the
-     * case of having the same size, in ascending order of handle position.
+     * Reads the size header at the provided position: a single byte for sizes
+     * up to 254, or LONG_LENGTH followed by the size as four bytes.
+     * @param position The position of the header in the byte array
+     * @return The size of the record following the header
      */
-    private void sortFreeSpace() {
-        // Create an empty free space list to populate in decending order
-        // of spaces
-        LList<FreeSpace> newSpaceList = new LList<FreeSpace>();
+    private int getLength(int position) {
+        int length = byteArray[position] & 0xFF;
+        if (length != LONG_LENGTH) return length;
         
-        // Loop through and move free spaces from the old list to the new
-        // list in decending order of sizes and, in the case of matching sizes,
-        // ascending order of handles
-        while (freeBlocks.length() != 0) {
-            // Start at beginning of free block list
-            freeBlocks.moveToStart();
-            
-            int largestHandle = freeBlocks.getValue().getHandlePosition();
-            int largestSize = freeBlocks.getValue().getSpace();
-            int largestSpacePos = 0;
-            for (int i = 1; i < freeBlocks.length(); ++i) {
-                freeBlocks.next();
-                
-                // New block is larger than current largest block
-                if (freeBlocks.getValue().getSpace() > largestSize) {
-                    largestHandle = freeBlocks.getValue().getHandlePosition();
-                    largestSize = freeBlocks.getValue().getSpace();
-                    largestSpacePos = freeBlocks.currPos();
-                    
-                // New block is equal in size, but has an earlier handle
-                } else if (freeBlocks.getValue().getSpace() == largestSize) {
-                    if (freeBlocks.getValue().getHandlePosition() < largestHandle) {
-                        largestHandle = freeBlocks.getValue().getHandlePosition();
-                        largestSize = freeBlocks.getValue().getSpace();
-                        largestSpacePos = freeBlocks.currPos();
-                    }
-                }
-            }
-            
-            // Move to next free space to insert
-            freeBlocks.moveToPos(largestSpacePos);
-            
-            // Insert the free space into the new list and remove it from the
-            // old list
-            newSpaceList.append(freeBlocks.remove());
+        length = 0;
+        for (int i = 1; i < LONG_HEADER_SIZE; ++i) {
+            length = (length << 8) | (byteArray[position + i] & 0xFF);
+        }
+        return length;
+    }
+    
+    /**
+     * Writes the size header of a record of the provided size at the
+     * specified position.
+     * @param position The position of the header in the byte array
+     * @param length The size of the record
+     */
+    private void writeLength(int position, int length) {
+        if (length < LONG_LENGTH) {
+            byteArray[position] = (byte) length;
+            return;
         }
         
-        // Start new list at beginning
-        newSpaceList.moveToStart();
-        
-        // Move new list of free spaces to free block list
-        freeBlocks = newSpaceList;
+        byteArray[position] = (byte) LONG_LENGTH;
+        for (int i = LONG_HEADER_SIZE - 1; i > 0; --i) {
+            byteArray[position + i] = (byte) length;
+            length >>>= 8;
+        }
     }
     
     /**
@@ -376,6 +345,16 @@ public class MemPool {
         }
     }
     
+    /**
+     * Returns the number of bytes of the size header of a record of the
+     * provided size (one byte for records shorter than 255 bytes).
+     * @param length The size of the record
+     * @return The number of bytes of the header
+     */
+    public static int getHeaderSize(int length) {
+        return (length < LONG_LENGTH) ? 1 : LONG_HEADER_SIZE;
+    }
+    
         /**
      * Represents a block of free space.
      */
@@ -409,25 +388,5 @@ public class MemPool {
         public int getSpace() {
             return space;
         }
-        
-        /**
-         * Checks to see if the other space is adjacent to this one.
-         * @param otherSpace The other free space to compare
-         * @return Whether or not the two spaces are adjacent
-         */
-        public boolean isAdjacent(FreeSpace otherSpace) {
-            // Represents the end of the left free block
-            int endOfSpace = 0;
-            
-            // Check if the other space is to the left or right of the
-            // current space
-            if (this.handlePosition < otherSpace.getHandlePosition()) { // Right
-                endOfSpace = this.handlePosition + this.space - 1;
-                return (endOfSpace == otherSpace.getHandlePosition() - 1);
-            } else { // Left
-                endOfSpace = otherSpace.handlePosition + otherSpace.space - 1;
-                return (endOfSpace == this.getHandlePosition() - 1);
-            }
-        }
     }
 }
@@ -117,8 +117,8 @@ public class RecordHandler {
         }
         
         // Retrieve the record
-        byte[] byteArray = new byte[256];
-        int recordSize = memPool.get(byteArray, handles[recordPosition].getPosition(), 256);
+        byte[] byteArray = memPool.get(handles[recordPosition].getPosition());
+        int recordSize = byteArray.length;
         
         // Convert the record to the record information
         int[] loc = new int[2];
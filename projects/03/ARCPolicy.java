@@ -0,0 +1,150 @@
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * Represents the Adaptive Replacement Cache policy (Megiddo and Modha). The
+ * pool is split between blocks seen once (T1) and blocks seen more than once
+ * (T2), each backed by a ghost list of recently removed blocks (B1 and B2).
+ * A miss that hits a ghost list shifts the target size of T1 towards the
+ * list that would have kept the block, so the split adapts to the workload.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public class ARCPolicy extends EvictionPolicy {
+    
+    private LinkedHashSet<Integer> t1; // Resident, seen once (LRU order)
+    private LinkedHashSet<Integer> t2; // Resident, seen again (LRU order)
+    private LinkedHashSet<Integer> b1; // Ghosts removed from T1
+    private LinkedHashSet<Integer> b2; // Ghosts removed from T2
+    private int capacity; // c, the number of buffers in the pool
+    private int target; // p, the target size of T1
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new ARC policy for a pool of the provided size.
+     * @param capacity The total number of buffers in the pool
+     */
+    public ARCPolicy(int capacity) {
+        this.t1 = new LinkedHashSet<Integer>();
+        this.t2 = new LinkedHashSet<Integer>();
+        this.b1 = new LinkedHashSet<Integer>();
+        this.b2 = new LinkedHashSet<Integer>();
+        this.capacity = Math.max(capacity, 1);
+        this.target = 0;
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    @Override
+    public String getName() {
+        return ARC;
+    }
+    
+    @Override
+    public void blockAdded(int block) {
+        // A block remembered by either ghost list has been seen before
+        if (this.b1.remove(block) || this.b2.remove(block)) {
+            this.t2.add(block);
+        } else {
+            this.t1.add(block);
+        }
+    }
+    
+    @Override
+    public void blockAccessed(int block) {
+        // Any hit makes the block frequent and most recently used
+        if (this.t1.remove(block) || this.t2.remove(block)) {
+            this.t2.add(block);
+        }
+    }
+    
+    @Override
+    public int selectVictim(int incomingBlock) {
+        // Adapt the target towards the ghost list that saw the block
+        if (this.b1.contains(incomingBlock)) {
+            int delta = Math.max(this.b2.size() / this.b1.size(), 1);
+            this.target = Math.min(this.target + delta, this.capacity);
+            return this.replace(incomingBlock);
+        } else if (this.b2.contains(incomingBlock)) {
+            int delta = Math.max(this.b1.size() / this.b2.size(), 1);
+            this.target = Math.max(this.target - delta, 0);
+            return this.replace(incomingBlock);
+        }
+        
+        // A brand new block; keep the directory within 2c entries
+        if (this.t1.size() + this.b1.size() >= this.capacity) {
+            if (this.t1.size() < this.capacity) {
+                removeFirst(this.b1);
+                return this.replace(incomingBlock);
+            }
+            return removeFirst(this.t1);
+        }
+        if (this.t1.size() + this.t2.size() +
+            this.b1.size() + this.b2.size() >= 2 * this.capacity) {
+            removeFirst(this.b2);
+        }
+        return this.replace(incomingBlock);
+    }
+    
+    @Override
+    public void blockRestored(int block) {
+        // Take the victim back out of the ghost list it was remembered in
+        // (a victim of T1 is not always remembered) and return it to its list
+        if (this.b2.remove(block)) {
+            this.t2.add(block);
+        } else {
+            this.b1.remove(block);
+            this.t1.add(block);
+        }
+    }
+    
+    @Override
+    public void clear() {
+        this.t1.clear();
+        this.t2.clear();
+        this.b1.clear();
+        this.b2.clear();
+        this.target = 0;
+    }
+    
+    // =====================================================================
+    // = PRIVATE METHODS                                                   =
+    // =====================================================================
+    
+    /**
+     * Removes the least recently used block of T1 or T2 (depending on the
+     * target size of T1) and remembers it in the matching ghost list.
+     * @param incomingBlock The block number about to be loaded
+     * @return The block removed
+     */
+    private int replace(int incomingBlock) {
+        int victim;
+        if (!this.t1.isEmpty() &&
+            (this.t1.size() > this.target ||
+             (this.b2.contains(incomingBlock) && this.t1.size() == this.target) ||
+             this.t2.isEmpty())) {
+            victim = removeFirst(this.t1);
+            this.b1.add(victim);
+        } else {
+            victim = removeFirst(this.t2);
+            this.b2.add(victim);
+        }
+        return victim;
+    }
+    
+    /**
+     * Removes and returns the least recently used block of the provided list.
+     * @param list The list to remove from
+     * @return The block removed
+     */
+    private static int removeFirst(LinkedHashSet<Integer> list) {
+        Iterator<Integer> it = list.iterator();
+        int block = it.next();
+        it.remove();
+        return block;
+    }
+}
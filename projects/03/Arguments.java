@@ -0,0 +1,131 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Splits the commandline arguments into positional arguments and options.
+ * Options start with a dash and are given as -name=value (or just -name to
+ * turn a setting on); everything else is positional and keeps its order.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public class Arguments {
+    
+    private List<String> positional;
+    private LinkedHashMap<String, String> options; // Name to value (or null)
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new set of arguments from those passed to the program.
+     * @param args The commandline arguments passed to the program
+     */
+    public Arguments(String[] args) {
+        this.positional = new ArrayList<String>();
+        this.options = new LinkedHashMap<String, String>();
+        for (String arg : args) {
+            if (arg.startsWith("-") && arg.length() > 1) {
+                int split = arg.indexOf('=');
+                if (split == -1) {
+                    this.options.put(arg.substring(1).toLowerCase(), null);
+                } else {
+                    this.options.put(arg.substring(1, split).toLowerCase(),
+                                     arg.substring(split + 1));
+                }
+            } else {
+                this.positional.add(arg);
+            }
+        }
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Returns the number of positional arguments.
+     * @return The integer count
+     */
+    public int getPositionalCount() {
+        return this.positional.size();
+    }
+    
+    /**
+     * Returns the positional argument at the provided index.
+     * @param index The index of the argument (ignoring options)
+     * @return The String argument
+     */
+    public String getPositional(int index) {
+        return this.positional.get(index);
+    }
+    
+    /**
+     * Checks the options provided against those the program accepts: each
+     * must be one of them, and only the flags may be given without a value.
+     * The numeric options must have an integer value and the text options
+     * any value; an option listed as a flag and as numeric may be given
+     * either way. Returns a message describing the first problem found.
+     * @param flags The names of the options that take no value
+     * @param numeric The names of the options that take an integer value
+     * @param text The names of the options that take any other value
+     * @return The message, or null if the options are valid
+     */
+    public String check(String[] flags, String[] numeric, String[] text) {
+        List<String> flagNames = Arrays.asList(flags);
+        List<String> numericNames = Arrays.asList(numeric);
+        List<String> textNames = Arrays.asList(text);
+        for (String name : this.options.keySet()) {
+            String value = this.options.get(name);
+            if (value == null && flagNames.contains(name)) continue;
+            if (numericNames.contains(name) || textNames.contains(name)) {
+                if (value == null) return "The option -" + name + " needs a value";
+                if (!numericNames.contains(name)) continue;
+                try {
+                    Integer.parseInt(value);
+                } catch (NumberFormatException ex) {
+                    return "Invalid value '" + value + "' for -" + name +
+                           ", expected a whole number";
+                }
+            } else if (!flagNames.contains(name)) {
+                return "Unknown option '-" + name + "'";
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Returns whether or not the named option was provided.
+     * @param name The name of the option (without the dash)
+     * @return Whether or not the option exists
+     */
+    public boolean hasOption(String name) {
+        return this.options.containsKey(name.toLowerCase());
+    }
+    
+    /**
+     * Returns the value of the named option or the default if not provided
+     * (or provided without a value).
+     * @param name The name of the option (without the dash)
+     * @param defaultValue The value to return if the option is missing
+     * @return The String value
+     */
+    public String getOption(String name, String defaultValue) {
+        String value = this.options.get(name.toLowerCase());
+        return (value != null) ? value : defaultValue;
+    }
+    
+    /**
+     * Returns the integer value of the named option or the default if not
+     * provided (or provided without a value). The value must have passed
+     * check as a numeric option.
+     * @param name The name of the option (without the dash)
+     * @param defaultValue The value to return if the option is missing
+     * @return The integer value
+     */
+    public int getIntOption(String name, int defaultValue) {
+        String value = this.options.get(name.toLowerCase());
+        return (value != null) ? Integer.parseInt(value) : defaultValue;
+    }
+}
@@ -3,32 +3,64 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Represents a class that bridges the connection between the external max heap
  * and the buffer pool containing information. It provides routines to read
  * information from a file and compare indices (built to use a two-byte value
- * for comparisons and move a four-byte value).
+ * for comparisons and move a four-byte value, unless another record format is
+ * provided).
  * @author rcsvt (Robert C. Senkbeil)
  */
 public class BufferBridge {
     
     // Constants for processing information
-    private static final int BLOCK_SIZE = 4096;
-    private static final int COMPARE_SIZE = 2;
-    private static final int SWAP_SIZE = 4;
+    protected static final int BLOCK_SIZE = 4096;
+    protected static final int COMPARE_SIZE = 2;
+    protected static final int SWAP_SIZE = 4;
     
     // File and buffer references
-    private File file;
-    private RandomAccessFile rfAccess;
+    protected File file;
+    protected RandomAccessFile rfAccess;
     public BufferPool pool;
     
+    // Layout of the records (key position, width and record length)
+    protected RecordFormat format;
+    protected int recordLength;
+    
+    // Records being swapped (kept to avoid allocating on every swap)
+    private byte[] temp1;
+    private byte[] temp2;
+    private byte[] keyBytes; // Key split between two blocks
+    
+    // Background writing of dirty buffers (null if writes are synchronous)
+    private WriteBehind writeBehind;
+    private int highWaterMark; // Dirty buffers allowed before cleaning
+    
+    // Background reading of blocks ahead of their use (null if disabled)
+    private ReadAhead readAhead;
+    private int readAheadBlocks; // Blocks read together ahead of a run
+    private int lastMissBlock; // Block of the most recent miss
+    private int direction; // 1 or -1 while misses are sequential, else 0
+    private int runLength; // Sequential misses in the current run
+    private int nextAhead; // Next block to read ahead of the run
+    
+    // Live statistics of blocks and I/O (null unless monitored)
+    protected BridgeMonitor monitor;
+    
+    // Old contents of blocks kept before they are overwritten (or null)
+    private UndoLog undoLog;
+    
     // Statistical information
-    private int cacheHits;
-    private int cacheMisses;
-    private int diskReads;
-    private int diskWrites;
+    protected int cacheHits;
+    protected int cacheMisses;
+    protected int diskReads;
+    protected int diskWrites;
+    protected long bytesRead;
+    protected long bytesWritten;
+    protected long swaps;
     
     // =====================================================================
     // = CONSTRUCTORS                                                      =
@@ -41,15 +73,63 @@ public class BufferBridge {
      * @param maxBuffers The total number of buffers supported
      */
     public BufferBridge(File file, int maxBuffers) throws FileNotFoundException {
+        this(file, maxBuffers, EvictionPolicy.LRU);
+    }
+    
+    /**
+     * Creates a new instance of the buffer bridge class that targets the
+     * specified file and uses the named eviction policy for its pool.
+     * @param file The file to access
+     * @param maxBuffers The total number of buffers supported
+     * @param policyName The name of the eviction policy of the buffer pool
+     */
+    public BufferBridge(File file, int maxBuffers, String policyName) throws FileNotFoundException {
+        this(file, maxBuffers, policyName, RecordFormat.DEFAULT);
+    }
+    
+    /**
+     * Creates a new instance of the buffer bridge class that targets the
+     * specified file, uses the named eviction policy for its pool and reads
+     * records of the provided format. Records may span two blocks.
+     * @param file The file to access
+     * @param maxBuffers The total number of buffers supported
+     * @param policyName The name of the eviction policy of the buffer pool
+     * @param format The layout of the records
+     */
+    public BufferBridge(File file, int maxBuffers, String policyName, RecordFormat format) throws FileNotFoundException {
         this.file = file;
         this.rfAccess = new RandomAccessFile(file, "rw");
-        this.pool = new BufferPool(maxBuffers);
+        this.pool = new BufferPool(maxBuffers, BLOCK_SIZE, policyName);
+        this.format = format;
+        this.recordLength = format.getLength();
+        this.temp1 = new byte[this.recordLength];
+        this.temp2 = new byte[this.recordLength];
+        this.keyBytes = new byte[format.getKeyWidth()];
+        
+        // Write synchronously until write-behind is enabled
+        this.writeBehind = null;
+        this.highWaterMark = 0;
+        
+        // Read a block at a time until read-ahead is enabled
+        this.readAhead = null;
+        this.readAheadBlocks = 0;
+        this.lastMissBlock = -1;
+        this.direction = 0;
+        this.runLength = 0;
+        this.nextAhead = -1;
+        
+        // Keep only the totals until monitoring is enabled
+        this.monitor = null;
+        this.undoLog = null;
         
         // Initialize statistics
         this.cacheHits = 0;
         this.cacheMisses = 0;
         this.diskReads = 0;
         this.diskWrites = 0;
+        this.bytesRead = 0;
+        this.bytesWritten = 0;
+        this.swaps = 0;
     }
     
     // =====================================================================
@@ -57,24 +137,106 @@ public class BufferBridge {
     // =====================================================================
     
     /**
-     * Gets the value at the specified index (index jumps by 4 bytes).
+     * Returns the file associated with this buffer bridge.
+     * @return The file object
+     */
+    public File getFile() {
+        return this.file;
+    }
+    
+    /**
+     * Returns the layout of the records read through this bridge.
+     * @return The record format
+     */
+    public RecordFormat getFormat() {
+        return this.format;
+    }
+    
+    /**
+     * Gets the value at the specified index (index jumps by the length of a
+     * record). Keys wider than four bytes are truncated.
      * @param index The index of the key to retrieve
      * @return The key value
      */
     public int get(int index) throws FileNotFoundException, IOException {
-        // Get the buffer
-        BufferPool.Buffer buffer = this.getBuffer(index);
+        return (int) this.getKey(index);
+    }
         
-        // Grab the bytes from the buffer
+    /**
+     * Gets the key of the record at the specified index as an ordered long
+     * (see RecordFormat).
+     * @param index The index of the key to retrieve
+     * @return The key value
+     */
+    public long getKey(int index) throws IOException {
+        int position = (index * this.recordLength) + this.format.getKeyOffset();
+        return this.readKey(position, this.getBufferAt(position));
+    }
+    
+    /**
+     * Copies the whole record at the specified index into the array.
+     * @param index The index of the record to copy
+     * @param record The array to copy the record into (a record long)
+     */
+    public void read(int index, byte[] record) throws IOException {
+        this.transfer(index * this.recordLength, record, null);
+    }
+    
+    /**
+     * Gets the whole record (key and value) at the specified index, with the
+     * key in the upper two bytes (default record format only).
+     * @param index The index of the record to retrieve
+     * @return The record
+     */
+    public int getRecord(int index) throws IOException {
+        BufferPool.Buffer buffer = this.getBufferAt(index * SWAP_SIZE);
         byte[] bArray = buffer.getBytes();
-        
-        // Get the position relative to the buffer's byte array
         int startPosition = (index * SWAP_SIZE) - buffer.getBytePosition();
-        
-        // Determine the key to return and return it
-        int key = ((int) bArray[startPosition]) << 8 & 0x0000FF00 |
-                  ((int) bArray[startPosition + 1] & 0x000000FF);
-        return key;
+        return (bArray[startPosition] & 0xFF) << 24 |
+               (bArray[startPosition + 1] & 0xFF) << 16 |
+               (bArray[startPosition + 2] & 0xFF) << 8 |
+               (bArray[startPosition + 3] & 0xFF);
+    }
+    
+    /**
+     * Sets the whole record (key and value) at the specified index, with the
+     * key in the upper two bytes (default record format only).
+     * @param index The index of the record to set
+     * @param record The new record
+     */
+    public void setRecord(int index, int record) throws IOException {
+        BufferPool.Buffer buffer = this.getBufferAt(index * SWAP_SIZE);
+        int startPosition = (index * SWAP_SIZE) - buffer.getBytePosition();
+        for (int i = 0; i < SWAP_SIZE; ++i) {
+            buffer.setByte(startPosition + i, (byte) (record >>> (8 * (SWAP_SIZE - 1 - i))));
+        }
+    }
+    
+    /**
+     * Returns the index of the largest key in the provided range of records
+     * (the first one if several are equal), scanning each block of the range
+     * once.
+     * @param index The index of the first record
+     * @param length The total number of records (at least 1)
+     * @return The index of the largest key
+     */
+    public int indexOfMax(int index, int length) throws IOException {
+        int end = index + length;
+        int largest = index;
+        long largestKey = Long.MIN_VALUE;
+        int position = (index * this.recordLength) + this.format.getKeyOffset();
+        while (index < end) {
+            BufferPool.Buffer buffer = this.getBufferAt(position);
+            int blockEnd = buffer.getBytePosition() + BLOCK_SIZE;
+            for (; index < end && position < blockEnd; ++index, position += this.recordLength) {
+                long key = this.readKey(position, buffer);
+                if (key > largestKey || index == largest) {
+                    largestKey = key;
+                    largest = index;
+                }
+            }
+        }
+        return largest;
     }
     
     /**
@@ -86,7 +248,7 @@ public class BufferBridge {
      * @return The result of the comparison
      */
     public int compareTo(int index1, int index2) throws FileNotFoundException, IOException {
-        int v1 = get(index1), v2 = get(index2);
+        long v1 = getKey(index1), v2 = getKey(index2);
         if (v1 > v2) {
             return 1;
         } else if (v1 == v2) {
@@ -102,59 +264,140 @@ public class BufferBridge {
      * @param index2 The second index
      */
     public void swap(int index1, int index2) throws IOException {
-        // Get the first buffer
-        BufferPool.Buffer firstBuffer = this.getBuffer(index1);
-        
-        // Store the byte array
-        int firstBufferStart = (index1 * SWAP_SIZE) - firstBuffer.getBytePosition();
-        byte[] firstBytes = firstBuffer.getBytes();
-        byte[] temp1 = new byte[SWAP_SIZE];
-        for (int i = 0; i < SWAP_SIZE; ++i) {
-            temp1[i] = firstBytes[firstBufferStart + i];
-        }
-        
-        // Swap the bytes with the second buffer
-        BufferPool.Buffer secondBuffer = this.getBuffer(index2);
-        int secondBufferStart = (index2 * SWAP_SIZE) - secondBuffer.getBytePosition();
-        byte[] secondBytes = secondBuffer.getBytes();
-        byte[] temp2 = new byte[SWAP_SIZE];
-        for (int i = 0; i < SWAP_SIZE; ++i) {
-            // Store temporarily the second buffer's byte
-            temp2[i] = secondBytes[secondBufferStart + i];
-            
-            // Set the new value for the second buffer's byte
-            secondBuffer.setByte(secondBufferStart + i, temp1[i]);
-        }
-        
-        // Swap the bytes with the first buffer
-        firstBuffer = this.getBuffer(index1);
-        firstBufferStart = (index1 * SWAP_SIZE) - firstBuffer.getBytePosition();
-        temp1 = new byte[SWAP_SIZE];
-        for (int i = 0; i < SWAP_SIZE; ++i) {
-            firstBuffer.setByte(firstBufferStart + i, temp2[i]);
-        }
+        // Copy out the first record, exchange it with the second, then copy
+        // the second into the place of the first
+        int position1 = index1 * this.recordLength;
+        int position2 = index2 * this.recordLength;
+        ++this.swaps;
+        this.transfer(position1, this.temp1, null);
+        this.transfer(position2, this.temp2, this.temp1);
+        this.transfer(position1, null, this.temp2);
     }
     
     /**
-     * Flushes the buffer pool and writes all data.
+     * Flushes the buffer pool and writes all data. Returns once every write
+     * has reached the file.
      */
     public void flush() throws IOException {
+        // Forget blocks read ahead (the pool is emptied as well)
+        if (this.readAhead != null) this.readAhead.clear();
+        this.direction = 0;
+        this.runLength = 0;
+        
         List<BufferPool.Buffer> buffers = this.pool.flush();
         BufferPool.Buffer currentBuffer = null;
         for (int i = 0; i < buffers.size(); ++i) {
             currentBuffer = buffers.get(i);
             
+            // Record the block leaving the pool
+            if (this.monitor != null) {
+                this.monitor.recordEviction(BridgeMonitor.EVICT_FLUSH, currentBuffer.isDirty());
+            }
+            
             // Exit if the block does not need to be written
             if (!currentBuffer.isDirty()) continue;
             
             // Get the bytes and write them
-            byte[] bytes = currentBuffer.getBytes();
-            this.rfAccess.seek(currentBuffer.getBytePosition());
-            this.rfAccess.write(bytes);
-            
-            // Update counter for disk writes
-            ++this.diskWrites;
+            this.writeBlock(currentBuffer.getBytePosition(), currentBuffer.getBytes());
         }
+        
+        // Wait for any background writes so the file is up to date
+        if (this.writeBehind != null) this.writeBehind.drain();
+    }
+    
+    /**
+     * Flushes the buffer pool and forces the file to the disk, so every write
+     * so far would survive a crash.
+     */
+    public void sync() throws IOException {
+        this.flush();
+        this.rfAccess.getChannel().force(false);
+    }
+    
+    /**
+     * Sets the log the old contents of each block are saved to before the
+     * block is overwritten.
+     * @param undoLog The log (or null to save nothing)
+     */
+    public void setUndoLog(UndoLog undoLog) {
+        this.undoLog = undoLog;
+    }
+    
+    /**
+     * Flushes the buffer pool and closes the file.
+     */
+    public void close() throws IOException {
+        this.flush();
+        this.rfAccess.close();
+    }
+    
+    /**
+     * Moves the writing of dirty buffers to a background thread. Once more
+     * than the provided number of buffers are dirty, the least recently used
+     * dirty buffers are written ahead of their eviction until only half that
+     * number remain dirty. Flushing still waits for every write to finish.
+     * @param highWaterMark The number of dirty buffers allowed
+     */
+    public void enableWriteBehind(int highWaterMark) {
+        if (this.writeBehind == null) this.writeBehind = new WriteBehind();
+        this.highWaterMark = highWaterMark;
+    }
+    
+    /**
+     * Reads blocks ahead of their use once misses walk the file forwards or
+     * backwards, reading the provided number of blocks at a time in the
+     * background. Prefetch hints are ignored until this is enabled.
+     * @param blocks The number of blocks to read at a time
+     */
+    public void enableReadAhead(int blocks) {
+        if (blocks <= 0) return;
+        this.readAhead = new ReadAhead(BLOCK_SIZE, 4 * blocks);
+        this.readAheadBlocks = blocks;
+    }
+    
+    /**
+     * Hints that the records in the provided range will be used soon, so
+     * their blocks that are not in the pool are read in the background. Does
+     * nothing unless read-ahead is enabled.
+     * @param index The index of the first record
+     * @param length The total number of records
+     */
+    public void prefetch(int index, int length) throws IOException {
+        if (this.readAhead == null || length <= 0) return;
+        int firstBlock = (index * this.recordLength) / BLOCK_SIZE;
+        int lastBlock = ((index + length) * this.recordLength - 1) / BLOCK_SIZE;
+        this.stage(firstBlock, lastBlock - firstBlock + 1);
+    }
+    
+    /**
+     * Starts recording a heat map of block accesses, block read and write
+     * latencies and the reasons blocks leave the pool, and publishes them
+     * (with the totals) as an MBean named after the file.
+     * @return The monitor recording the statistics
+     */
+    public BridgeMonitor enableMonitor() {
+        if (this.monitor == null) {
+            this.monitor = new BridgeMonitor(this);
+            this.monitor.register(this.file.getName());
+        }
+        return this.monitor;
+    }
+    
+    /**
+     * Returns the monitor recording live statistics, or null if monitoring
+     * has not been enabled.
+     * @return The monitor
+     */
+    public BridgeMonitor getMonitor() {
+        return this.monitor;
+    }
+
+    /**
+     * Returns the name of the eviction policy used by the buffer pool.
+     * @return The String name
+     */
+    public String getPolicyName() {
+        return this.pool.getPolicyName();
     }
 
     /**
@@ -191,49 +434,327 @@ public class BufferBridge {
         return diskWrites;
     }
     
+    /**
+     * Returns the number of bytes the buffer bridge has read from the disk
+     * (including blocks read ahead).
+     * @return The long count
+     */
+    public long getBytesRead() {
+        return this.bytesRead;
+    }
+    
+    /**
+     * Returns the number of bytes the buffer bridge has written to the disk.
+     * @return The long count
+     */
+    public long getBytesWritten() {
+        return this.bytesWritten;
+    }
+    
+    /**
+     * Returns the number of times two records have been swapped.
+     * @return The long count
+     */
+    public long getSwaps() {
+        return this.swaps;
+    }
+    
+    /**
+     * Returns the most buffers of the pool that have held a block at once
+     * since the last call to resetPeakBuffers.
+     * @return The integer count
+     */
+    public int getPeakBuffers() {
+        return this.pool.getPeakBuffers();
+    }
+    
+    /**
+     * Starts counting the most buffers in use again from the buffers in use
+     * now.
+     */
+    public void resetPeakBuffers() {
+        this.pool.resetPeakBuffers();
+    }
+    
+    // =====================================================================
+    // = STATIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Creates the bridge to the file for the named policy: a memory mapped
+     * bridge for MAPPED, else a buffer pool using that eviction policy.
+     * @param file The file to access
+     * @param maxBuffers The total number of buffers supported
+     * @param policyName The name of the eviction policy (or MAPPED)
+     * @return The new bridge
+     */
+    public static BufferBridge create(File file, int maxBuffers, String policyName) throws FileNotFoundException, IOException {
+        return create(file, maxBuffers, policyName, RecordFormat.DEFAULT);
+    }
+    
+    /**
+     * Creates the bridge to the file for the named policy that reads records
+     * of the provided format.
+     * @param file The file to access
+     * @param maxBuffers The total number of buffers supported
+     * @param policyName The name of the eviction policy (or MAPPED)
+     * @param format The layout of the records
+     * @return The new bridge
+     */
+    public static BufferBridge create(File file, int maxBuffers, String policyName, RecordFormat format) throws FileNotFoundException, IOException {
+        if (policyName.equalsIgnoreCase(MappedBufferBridge.MAPPED)) {
+            return new MappedBufferBridge(file, format);
+        }
+        return new BufferBridge(file, maxBuffers, policyName, format);
+    }
+    
     // =====================================================================
     // = PRIVATE METHODS                                                   =
     // =====================================================================
     
     /**
-     * Gets the buffer associated with the provided index.
-     * @param index The index of the buffer to retrieve
+     * Reads the key starting at the provided byte position, taking the bytes
+     * past the end of the provided buffer from the next block.
+     * @param position The byte position of the key
+     * @param buffer The buffer holding the first byte of the key
+     * @return The ordered key
+     */
+    private long readKey(int position, BufferPool.Buffer buffer) throws IOException {
+        int start = position - buffer.getBytePosition();
+        int width = this.keyBytes.length;
+        if (start + width <= BLOCK_SIZE) {
+            return this.format.getKey(buffer.getBytes(), start);
+        }
+        int first = BLOCK_SIZE - start;
+        System.arraycopy(buffer.getBytes(), start, this.keyBytes, 0, first);
+        BufferPool.Buffer next = this.getBufferAt(position + first);
+        System.arraycopy(next.getBytes(), 0, this.keyBytes, first, width - first);
+        return this.format.getKey(this.keyBytes, 0);
+    }
+    
+    /**
+     * Copies the record at the provided byte position out to one array and
+     * replaces it with the bytes of another, a block at a time.
+     * @param position The byte position of the record
+     * @param out The array to copy the record to (or null)
+     * @param in The bytes to replace the record with (or null)
+     */
+    private void transfer(int position, byte[] out, byte[] in) throws IOException {
+        int done = 0;
+        while (done < this.recordLength) {
+            BufferPool.Buffer buffer = this.getBufferAt(position + done);
+            int start = position + done - buffer.getBytePosition();
+            int count = Math.min(this.recordLength - done, BLOCK_SIZE - start);
+            if (out != null) System.arraycopy(buffer.getBytes(), start, out, done, count);
+            if (in != null) buffer.setBytes(start, in, done, count);
+            done += count;
+        }
+    }
+    
+    /**
+     * Gets the buffer holding the provided byte position.
+     * @param bytePosition The position of a byte of the file
      * @return The buffer found
      */
-    private BufferPool.Buffer getBuffer(int index) throws IOException {
+    private BufferPool.Buffer getBufferAt(int bytePosition) throws IOException {
+        // Look up the buffer (a hit also makes it the most recently used)
+        BufferPool.Buffer found = this.pool.getBufferAt(bytePosition);
+        
         // Determine if the buffer pool needs to have the buffer added
-        if (!this.pool.hasBufferAt(index * SWAP_SIZE)) {
-            byte[] bArray = new byte[BLOCK_SIZE];
-            int startBlock = (index * SWAP_SIZE) / BLOCK_SIZE;
+        if (found == null) {
+            int startBlock = bytePosition / BLOCK_SIZE;
+            int position = startBlock * BLOCK_SIZE;
             
-            // Go to the block associated with the new buffer and read it
-            this.rfAccess.seek(startBlock * BLOCK_SIZE);
-            this.rfAccess.read(bArray);
+            // Free a buffer for the block, writing the block it held if it
+            // has been modified
+            boolean replacing = this.pool.isFull();
+            BufferPool.Buffer buffer = this.pool.evict(position);
+            if (this.monitor != null && replacing) {
+                this.monitor.recordEviction(BridgeMonitor.EVICT_MISS, buffer.isDirty());
+            }
+            if (buffer.isDirty()) {
+                this.writeBlock(buffer.getBytePosition(), buffer.getBytes());
+            }
             
-            // Update counter for disk reads
-            ++this.diskReads;
+            // Load the newest contents straight into the buffer: a write still
+            // waiting in the background, a block read ahead (already counted
+            // as part of the read of its run), else the block on disk
+            byte[] bArray = buffer.getBytes();
+            boolean loaded =
+                    (this.writeBehind != null &&
+                     this.writeBehind.readPending(position, bArray)) ||
+                    (this.readAhead != null &&
+                     this.readAhead.take(startBlock, bArray));
+            if (!loaded) this.readBlock(position, bArray);
             
-            // Store the binary array with the starting block position into the pool
-            BufferPool.Buffer buffer = 
-                    this.pool.insert(startBlock * BLOCK_SIZE, bArray);
+            // Place the buffer into the pool holding the new block
+            this.pool.insert(buffer, position);
             
-            // Write the buffer if there is a buffer being removed and it has been modified
-            if (buffer != null && buffer.isDirty()) {
-                this.rfAccess.seek(buffer.getBytePosition());
-                this.rfAccess.write(buffer.getBytes());
-                
-                // Update counter for disk writes
-                ++this.diskWrites;
+            // Clean buffers ahead of eviction if too many are dirty
+            if (this.writeBehind != null &&
+                this.pool.getDirtyCount() > this.highWaterMark) {
+                this.cleanAhead();
             }
             
+            // Read the blocks after (or before) a sequential run of misses
+            if (this.readAhead != null) this.followRun(startBlock);
+            
             // Update counter for cache misses
             ++this.cacheMisses;
+            
+            // Use the new buffer (loading it already counted as its use)
+            found = buffer;
         } else {
             // Update counter for cache hits
             ++this.cacheHits;
         }
         
+        // Record the access of the block
+        if (this.monitor != null) {
+            this.monitor.recordAccess(found.getBytePosition() / BLOCK_SIZE);
+        }
+        
         // Return the buffer associated with this index
-        return this.pool.getBufferAt(index * SWAP_SIZE);
+        return found;
+    }
+    
+    /**
+     * Reads the block at the provided position into the provided array,
+     * zeroing any part of it past the end of the file.
+     * @param position The byte position of the block
+     * @param bytes The array to read the block into
+     */
+    private void readBlock(int position, byte[] bytes) throws IOException {
+        long start = (this.monitor != null) ? System.nanoTime() : 0;
+        
+        this.rfAccess.seek(position);
+        int total = 0;
+        while (total < bytes.length) {
+            int read = this.rfAccess.read(bytes, total, bytes.length - total);
+            if (read < 0) break;
+            total += read;
+        }
+        Arrays.fill(bytes, total, bytes.length, (byte) 0);
+        
+        if (this.monitor != null) this.monitor.recordRead(System.nanoTime() - start);
+        
+        // Update counter for disk reads
+        ++this.diskReads;
+        this.bytesRead += bytes.length;
+    }
+    
+    /**
+     * Writes the block to the file, either now or in the background if
+     * write-behind is enabled (which copies the bytes first).
+     * @param position The byte position of the block
+     * @param bytes The bytes of the block
+     */
+    private void writeBlock(int position, byte[] bytes) throws IOException {
+        long start = (this.monitor != null) ? System.nanoTime() : 0;
+        
+        // A block read ahead of the write would now be out of date
+        if (this.readAhead != null) this.readAhead.discard(position / BLOCK_SIZE);
+        
+        // Keep the contents being overwritten until the next checkpoint
+        if (this.undoLog != null) this.undoLog.save(position, this.rfAccess);
+        
+        if (this.writeBehind != null) {
+            this.writeBehind.schedule(this.rfAccess.getChannel(), position, bytes);
+        } else {
+            this.rfAccess.seek(position);
+            this.rfAccess.write(bytes);
+        }
+        
+        if (this.monitor != null) this.monitor.recordWrite(System.nanoTime() - start);
+        
+        // Update counter for disk writes
+        ++this.diskWrites;
+        this.bytesWritten += bytes.length;
+    }
+    
+    /**
+     * Schedules the least recently used dirty buffers to be written in the
+     * background until half of the high-water mark remain dirty.
+     */
+    private void cleanAhead() throws IOException {
+        int toClean = this.pool.getDirtyCount() - (this.highWaterMark / 2);
+        for (BufferPool.Buffer buffer : this.pool.getDirtyBuffers(toClean)) {
+            this.writeBlock(buffer.getBytePosition(), buffer.getBytes());
+            buffer.makeClean();
+            if (this.monitor != null) {
+                this.monitor.recordEviction(BridgeMonitor.EVICT_WRITE_BEHIND, true);
+            }
+        }
+    }
+    
+    /**
+     * Tracks misses on the provided block and, once they form a run in one
+     * direction, keeps at least half of the read-ahead blocks staged ahead
+     * of the run.
+     * @param block The block that missed
+     */
+    private void followRun(int block) throws IOException {
+        int step = block - this.lastMissBlock;
+        this.lastMissBlock = block;
+        
+        // Check whether the miss continues the run or breaks it
+        if (step == 1 || step == -1) {
+            if (step != this.direction) {
+                this.direction = step;
+                this.runLength = 0;
+            }
+            ++this.runLength;
+        } else {
+            this.direction = 0;
+            this.runLength = 0;
+            return;
+        }
+        
+        // Wait for a second sequential miss before reading ahead
+        if (this.runLength < 2) return;
+        
+        // Read the next set of blocks once the run comes within half of them
+        int distance = (this.nextAhead - block) * this.direction;
+        if (distance <= 0 || distance > this.readAheadBlocks + 1) {
+            this.nextAhead = block + this.direction;
+            distance = 1;
+        }
+        if (distance <= this.readAheadBlocks / 2 + 1) {
+            int firstBlock = (this.direction > 0) ?
+                    this.nextAhead : this.nextAhead - this.readAheadBlocks + 1;
+            this.stage(firstBlock, this.readAheadBlocks);
+            this.nextAhead += this.direction * this.readAheadBlocks;
+        }
+    }
+    
+    /**
+     * Reads the blocks in the range that are not already in the pool, staged,
+     * or waiting to be written in the background (one read for each set of
+     * adjacent blocks).
+     * @param firstBlock The first block of the range
+     * @param totalBlocks The total number of blocks in the range
+     */
+    private void stage(int firstBlock, int totalBlocks) throws IOException {
+        // Keep the range within the file and the staging area
+        int lastBlock = firstBlock + Math.min(totalBlocks, 2 * this.readAheadBlocks) - 1;
+        lastBlock = Math.min(lastBlock, (int) ((this.rfAccess.length() - 1) / BLOCK_SIZE));
+        firstBlock = Math.max(firstBlock, 0);
+        
+        int runStart = -1;
+        for (int block = firstBlock; block <= lastBlock + 1; ++block) {
+            boolean needed = block <= lastBlock &&
+                    this.pool.findBufferAt(block * BLOCK_SIZE) == null &&
+                    !this.readAhead.isStaged(block) &&
+                    (this.writeBehind == null ||
+                     !this.writeBehind.isPending(block * BLOCK_SIZE));
+            if (needed && runStart < 0) {
+                runStart = block;
+            } else if (!needed && runStart >= 0) {
+                this.readAhead.schedule(this.rfAccess.getChannel(), runStart, block - runStart);
+                ++this.diskReads;
+                this.bytesRead += (long) (block - runStart) * BLOCK_SIZE;
+                runStart = -1;
+            }
+        }
     }
 }
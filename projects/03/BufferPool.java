@@ -1,4 +1,5 @@
 
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -10,8 +11,16 @@ import java.util.List;
  */
 public class BufferPool {
     
-    private java.util.LinkedList<Buffer> buffers;
+    private HashMap<Integer, Buffer> blocks; // Block number to buffer index
+    private Buffer head; // Most recently used buffer
+    private Buffer tail; // Least recently used buffer
     private int maxBuffers;
+    private EvictionPolicy policy; // Decides which buffer to give up
+    private int dirtyBuffers; // The number of modified buffers in the pool
+    private Buffer[] frames; // Every buffer of the pool, allocated up front
+    private int unusedFrames; // The first frames not yet holding a block
+    private int peakBuffers; // The most frames holding a block at once
+    private int blockSize;
     
     // =====================================================================
     // = CONSTRUCTORS                                                      =
@@ -20,10 +29,30 @@ public class BufferPool {
     /**
      * Creates a new buffer pool with the specified number of buffers.
      * @param maxBuffers The total number of buffers to hold
+     * @param blockSize The size of each buffer (block) in bytes
      */
-    public BufferPool(int maxBuffers) {
-        this.buffers = new java.util.LinkedList<Buffer>();
+    public BufferPool(int maxBuffers, int blockSize) {
+        this(maxBuffers, blockSize, EvictionPolicy.LRU);
+    }
+    
+    /**
+     * Creates a new buffer pool with the specified number of buffers that
+     * removes buffers based on the named eviction policy.
+     * @param maxBuffers The total number of buffers to hold
+     * @param blockSize The size of each buffer (block) in bytes
+     * @param policyName The name of the eviction policy to use
+     */
+    public BufferPool(int maxBuffers, int blockSize, String policyName) {
+        this.blocks = new HashMap<Integer, Buffer>();
+        this.head = null;
+        this.tail = null;
+        this.dirtyBuffers = 0;
         this.maxBuffers = maxBuffers;
+        this.blockSize = blockSize;
+        
+        // The pool holds one buffer beyond the maximum before removing any
+        this.policy = EvictionPolicy.create(policyName, maxBuffers + 1);
+        this.allocateFrames(maxBuffers + 1);
     }
     
     // =====================================================================
@@ -31,35 +60,46 @@ public class BufferPool {
     // =====================================================================
     
     /**
-     * Inserts a buffer that has a byte position specified and contains the
-     * byte array provided. If the maximum number of buffers has been reached,
-     * the last buffer in the list is removed and returned, else null is returned.
-     * @param firstBytePosition The location of the first byte
-     * @param byteArray The array of bytes
-     * @return The buffer removed (if limit has been achieved)
+     * Returns the buffer the block at the provided position should be loaded
+     * into. If every buffer holds a block, the buffer chosen by the eviction
+     * policy is removed from the pool and returned still holding its old
+     * block (which must be written if it is dirty), else an unused buffer is
+     * returned. The buffer must then be placed back with insert.
+     * @param firstBytePosition The location of the first byte of the new block
+     * @return The buffer to load the block into
      */
-    public Buffer insert(int firstBytePosition, byte[] byteArray) {
-        Buffer removedBuffer = null;
-        
-        // Check if the limit has been exceeded
-        if (this.buffers.size() > this.maxBuffers) {
-            // Set the removed buffer to a copy of the last buffer
-            removedBuffer = this.buffers.getLast().makeCopy();
-            
-            // Move the least recently used to the front and wipe it
-            Buffer newBuffer = this.buffers.getLast();
-            newBuffer.setBytePosition(firstBytePosition);
-            newBuffer.setBytes(byteArray);
-            newBuffer.makeClean();
-            this.buffers.addFirst(newBuffer);
-            this.buffers.removeLast();
-        } else {
-            // Add the buffer to the list after dynamically allocating it
-            this.buffers.addFirst(new Buffer(firstBytePosition, byteArray));
+    public Buffer evict(int firstBytePosition) {
+        // Hand out the unused buffers first (flushed buffers keep their flag
+        // for the caller of flush, so it is reset here without counting it)
+        if (this.unusedFrames > 0) {
+            Buffer unused = this.frames[--this.unusedFrames];
+            unused.dirty = false;
+            this.peakBuffers = Math.max(this.peakBuffers, this.frames.length - this.unusedFrames);
+            return unused;
         }
         
-        // Return the removed buffer
-        return removedBuffer;
+        // Remove the buffer chosen by the policy
+        Buffer victim = this.blocks.remove(
+                this.policy.selectVictim(firstBytePosition / this.blockSize));
+        this.unlink(victim);
+        return victim;
+    }
+    
+    /**
+     * Inserts the buffer returned by evict into the pool as the holder of the
+     * block at the provided position. Its bytes must already be loaded.
+     * @param buffer The buffer returned by evict
+     * @param firstBytePosition The location of the first byte
+     */
+    public void insert(Buffer buffer, int firstBytePosition) {
+        int block = firstBytePosition / this.blockSize;
+        buffer.setBytePosition(firstBytePosition);
+        buffer.makeClean();
+        
+        // Add the buffer to the front of the list and index it by block
+        this.linkFirst(buffer);
+        this.blocks.put(block, buffer);
+        this.policy.blockAdded(block);
     }
     
     /**
@@ -68,41 +108,92 @@ public class BufferPool {
      * @return Whether or not a buffer exists
      */
     public boolean hasBufferAt(int index) {
-        Buffer currentBuffer = null;
-        java.util.ListIterator<Buffer> it = this.buffers.listIterator();
-        while (it.hasNext()) {
-            currentBuffer = it.next();
-            int startPosition = currentBuffer.getBytePosition();
-            int buffSize = currentBuffer.getSize();
-            if (index >= startPosition && index < startPosition + buffSize) {
-                this.buffers.remove(currentBuffer);
-                this.buffers.addFirst(currentBuffer);
-                return true;
-            }
-        }
-        return false;
+        return (this.getBufferAt(index) != null);
     }
     
     /**
      * Returns the buffer that contains the provided index or null if no buffer
-     * exists.
+     * exists. The buffer found becomes the most recently used buffer and
+     * counts as an access for the eviction policy.
      * @param index The index to be contained in a buffer
      * @return The buffer found
      */
     public Buffer getBufferAt(int index) {
-        Buffer currentBuffer = null;
-        java.util.ListIterator<Buffer> it = this.buffers.listIterator();
-        while (it.hasNext()) {
-            currentBuffer = it.next();
-            int startPosition = currentBuffer.getBytePosition();
-            int buffSize = currentBuffer.getSize();
-            if (index >= startPosition && index < startPosition + buffSize) {
-                this.buffers.remove(currentBuffer);
-                this.buffers.addFirst(currentBuffer);
-                return currentBuffer;
+        Buffer buffer = this.blocks.get(index / this.blockSize);
+        if (buffer != null) {
+            this.policy.blockAccessed(index / this.blockSize);
+            if (buffer != this.head) {
+                this.unlink(buffer);
+                this.linkFirst(buffer);
             }
         }
-        return null;
+        return buffer;
+    }
+    
+    /**
+     * Returns the buffer that contains the provided index or null if no buffer
+     * exists, without counting it as an access.
+     * @param index The index to be contained in a buffer
+     * @return The buffer found
+     */
+    public Buffer findBufferAt(int index) {
+        return this.blocks.get(index / this.blockSize);
+    }
+    
+    /**
+     * Returns whether or not every buffer holds a block, so loading another
+     * block would remove one.
+     * @return Whether or not the pool is full
+     */
+    public boolean isFull() {
+        return this.unusedFrames == 0;
+    }
+    
+    /**
+     * Returns the number of buffers in the pool that have been modified.
+     * @return The integer count
+     */
+    public int getDirtyCount() {
+        return this.dirtyBuffers;
+    }
+    
+    /**
+     * Returns the most buffers that have held a block at once since the pool
+     * was created or the count was last reset.
+     * @return The integer count
+     */
+    public int getPeakBuffers() {
+        return this.peakBuffers;
+    }
+    
+    /**
+     * Starts counting the most buffers holding a block at once again from
+     * the buffers holding a block now.
+     */
+    public void resetPeakBuffers() {
+        this.peakBuffers = this.frames.length - this.unusedFrames;
+    }
+    
+    /**
+     * Returns up to the provided number of modified buffers, starting with the
+     * least recently used (those closest to being removed).
+     * @param max The maximum number of buffers to return
+     * @return The list of dirty buffers
+     */
+    public List<Buffer> getDirtyBuffers(int max) {
+        List<Buffer> bList = new LinkedList<Buffer>();
+        for (Buffer b = this.tail; b != null && bList.size() < max; b = b.previous) {
+            if (b.isDirty()) bList.add(b);
+        }
+        return bList;
+    }
+    
+    /**
+     * Returns the name of the eviction policy used by this pool.
+     * @return The String name
+     */
+    public String getPolicyName() {
+        return this.policy.getName();
     }
     
     /**
@@ -135,15 +226,21 @@ public class BufferPool {
     }
     
     /**
-     * Removes all buffers in the pool and returns them as a list.
+     * Removes all buffers in the pool and returns them as a list. The buffers
+     * are not reused until the next call to evict.
      * @return The array of buffers
      */
     public List<Buffer> flush() {
         List<Buffer> bList = new LinkedList<Buffer>();
-        for (int i = 0; i < this.buffers.size(); ++i) {
-            bList.add(this.buffers.get(i));
+        for (Buffer b = this.head; b != null; b = b.next) {
+            bList.add(b);
         }
-        this.buffers.clear();
+        this.blocks.clear();
+        this.head = null;
+        this.tail = null;
+        this.dirtyBuffers = 0;
+        this.unusedFrames = this.frames.length;
+        this.policy.clear();
         return bList;
     }
     
@@ -154,8 +251,8 @@ public class BufferPool {
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < this.buffers.size(); ++i) {
-            sb.append(this.buffers.get(i).toString());
+        for (Buffer b = this.head; b != null; b = b.next) {
+            sb.append(b.toString());
         }
         return sb.toString();
     }
@@ -164,6 +261,44 @@ public class BufferPool {
     // = PRIVATE METHODS                                                   =
     // =====================================================================
     
+    /**
+     * Allocates every buffer the pool will hold, so loading and removing
+     * blocks never allocates memory.
+     * @param total The total number of buffers
+     */
+    private void allocateFrames(int total) {
+        this.frames = new Buffer[total];
+        for (int i = 0; i < total; ++i) {
+            this.frames[i] = new Buffer(this.blockSize);
+        }
+        this.unusedFrames = total;
+        this.peakBuffers = 0;
+    }
+    
+    /**
+     * Places the buffer at the front (most recently used end) of the list.
+     * @param buffer The buffer to link
+     */
+    private void linkFirst(Buffer buffer) {
+        buffer.previous = null;
+        buffer.next = this.head;
+        if (this.head != null) this.head.previous = buffer;
+        this.head = buffer;
+        if (this.tail == null) this.tail = buffer;
+    }
+    
+    /**
+     * Removes the buffer from the list without touching the block index.
+     * @param buffer The buffer to unlink
+     */
+    private void unlink(Buffer buffer) {
+        if (buffer.previous != null) buffer.previous.next = buffer.next;
+        else this.head = buffer.next;
+        if (buffer.next != null) buffer.next.previous = buffer.previous;
+        else this.tail = buffer.previous;
+        buffer.previous = null;
+        buffer.next = null;
+    }
     
     // =====================================================================
     // = INNER CLASSES                                                     =
@@ -176,18 +311,16 @@ public class BufferPool {
         private boolean dirty;
         private int firstBytePosition;
         private byte[] bytes;
+        private Buffer previous; // More recently used neighbour
+        private Buffer next; // Less recently used neighbour
         
         /**
-         * Creates a new buffer containing the provided information.
-         * @param byteArray The array of bytes to store
-         * @param totalBytes The total bytes from the array provided to store
+         * Creates a new, empty buffer of the provided size.
+         * @param size The size of the buffer
          */
-        public Buffer(int firstBytePosition, byte[] byteArray) {
-            this.bytes = new byte[byteArray.length];
-            for (int i = 0; i < byteArray.length; ++i) {
-                this.bytes[i] = byteArray[i];
-            }
-            this.firstBytePosition = firstBytePosition;
+        public Buffer(int size) {
+            this.bytes = new byte[size];
+            this.firstBytePosition = -1;
             this.dirty = false;
         }
         
@@ -195,6 +328,7 @@ public class BufferPool {
          * Sets the buffer modified flag to true.
          */
         public void makeDirty() {
+            if (!this.dirty) ++dirtyBuffers;
             this.dirty = true;
         }
         
@@ -202,6 +336,7 @@ public class BufferPool {
          * Sets the buffer modified flag to false.
          */
         public void makeClean() {
+            if (this.dirty) --dirtyBuffers;
             this.dirty = false;
         }
         
@@ -237,17 +372,6 @@ public class BufferPool {
             return this.bytes;
         }
         
-        /**
-         * Sets the bytes to the byte array provided.
-         * @param byteArray The new array of bytes
-         */
-        public void setBytes(byte[] byteArray) {
-            this.bytes = new byte[byteArray.length];
-            for (int i = 0; i < byteArray.length; ++i) {
-                this.bytes[i] = byteArray[i];
-            }
-        }
-        
         /**
          * Returns the size of the buffer.
          * @return The integer size
@@ -266,6 +390,18 @@ public class BufferPool {
             this.makeDirty();
         }
         
+        /**
+         * Sets the bytes starting at the specified index within the buffer.
+         * @param index The index of the first byte to set
+         * @param source The array holding the new bytes
+         * @param offset The position of the first new byte in the array
+         * @param length The number of bytes to set
+         */
+        public void setBytes(int index, byte[] source, int offset, int length) {
+            System.arraycopy(source, offset, this.bytes, index, length);
+            this.makeDirty();
+        }
+        
         /**
          * Swaps the bytes at the provided indices with the provided sizes.
          * E.G. With a size of 3 and indices 0 and 4, range 0 through 2 move to
@@ -307,16 +443,6 @@ public class BufferPool {
             buffer.makeDirty();
         }
         
-        /**
-         * Returns a deep copy of this buffer.
-         * @return The copy of this buffer
-         */
-        public Buffer makeCopy() {
-            Buffer copy = new Buffer(this.firstBytePosition, this.bytes);
-            if (this.dirty) copy.makeDirty();
-            return copy;
-        }
-        
         /**
          * Returns the byte position of the buffer in a string format.
          * @return The String byte position
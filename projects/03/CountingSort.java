@@ -0,0 +1,274 @@
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Represents a counting sort of the records by their two-byte keys. The first
+ * pass counts each key, which gives the range of positions of the records of
+ * every key in the sorted file.
+ * 
+ * The records are then distributed by key between the file and a run file of
+ * the same size. Each distribution splits a range of keys into as many parts
+ * as the pool has buffers, with about the same number of records in each, and
+ * reads the range in order while appending each record to its part in the
+ * other file, so every part is written front to back through one buffer. A
+ * range whose records fit in the pool is read into memory and each record is
+ * written to the next position of its key in the original file. Each pass
+ * reads and writes the records once, in order, and a file of n blocks with a
+ * pool of m buffers takes about log(n / m) / log(m) distributions before the
+ * ranges fit (three for 4000 blocks and 10 buffers) instead of a pass for
+ * every m blocks. Records with equal keys keep the order they were read in.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public final class CountingSort {
+    
+    /**
+     * Name used to select this sort in place of the heapsort.
+     */
+    public static final String COUNTING = "counting";
+    
+    // Constants for processing information
+    private static final int KEY_SHIFT = 8 * (BufferBridge.SWAP_SIZE - BufferBridge.COMPARE_SIZE);
+    private static final int TOTAL_KEYS = 1 << (8 * BufferBridge.COMPARE_SIZE);
+    
+    private BufferBridge bridge; // The bridge to the file being sorted
+    private BufferBridge runBridge; // The bridge to the run file
+    private int totalRecords; // The number of records in the file
+    private int fanOut; // The most parts a range of keys is split into
+    private int[] scratch; // The records of a range placed in memory
+    private int[] first; // The position of the first record of each key
+    private int[] next; // The next position of each key placed in memory
+    private int[] part; // The part each key of a distributed range goes to
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new counting sort of the records behind the provided bridge.
+     * @param bridge The bridge to the file being sorted
+     * @param runBridge The bridge to a file of the same size to distribute into
+     * @param totalRecords The number of records in the file
+     * @param maxBuffers The total number of buffers of each bridge
+     */
+    public CountingSort(BufferBridge bridge, BufferBridge runBridge,
+                        int totalRecords, int maxBuffers) {
+        this.bridge = bridge;
+        this.runBridge = runBridge;
+        this.totalRecords = totalRecords;
+        
+        // Write to one part through each buffer, and place in memory a range
+        // whose records span no more blocks than the pool holds
+        this.fanOut = Math.max(maxBuffers, 2);
+        this.scratch = new int[Math.max(maxBuffers - 1, 1) *
+                (BufferBridge.BLOCK_SIZE / BufferBridge.SWAP_SIZE)];
+        this.next = new int[TOTAL_KEYS];
+        this.part = new int[TOTAL_KEYS];
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Sorts the file, leaving the sorted records in the original file.
+     */
+    public void sort() throws IOException {
+        this.place(this.count());
+    }
+    
+    // =====================================================================
+    // = PRIVATE METHODS                                                   =
+    // =====================================================================
+    
+    /**
+     * Counts the records of each key.
+     * @return The position of the first record of each key (followed by the
+     *         total number of records)
+     */
+    private int[] count() throws IOException {
+        int[] first = new int[TOTAL_KEYS + 1];
+        for (int i = 0; i < this.totalRecords; ++i) {
+            ++first[this.bridge.getRecord(i) >>> KEY_SHIFT];
+        }
+        
+        // Turn the counts into the position of the first record of each key
+        int position = 0;
+        for (int key = 0; key <= TOTAL_KEYS; ++key) {
+            int count = first[key];
+            first[key] = position;
+            position += count;
+        }
+        return first;
+    }
+        
+    /**
+     * Places each record after the records with smaller keys and the records
+     * with the same key read before it.
+     * @param first The position of the first record of each key
+     */
+    private void place(int[] first) throws IOException {
+        this.first = first;
+        this.place(0, TOTAL_KEYS, this.bridge);
+    }
+    
+    /**
+     * Places the records of the range of keys, which are at the positions of
+     * the range in the source file (in the order read so far).
+     * @param low The lowest key of the range
+     * @param high The key past the highest key of the range
+     * @param source The bridge to the file holding the records of the range
+     */
+    private void place(int low, int high, BufferBridge source) throws IOException {
+        int start = this.first[low];
+        int end = this.first[high];
+        if (end - start <= this.scratch.length) {
+            this.placeInMemory(low, high, source);
+        } else if (this.keyAt(start, low, high) == this.keyAt(end - 1, low, high)) {
+            // The records of a single key are already in order
+            if (source != this.bridge) {
+                for (int i = start; i < end; ++i) {
+                    this.bridge.setRecord(i, source.getRecord(i));
+                }
+            }
+        } else {
+            BufferBridge target = (source == this.bridge) ? this.runBridge : this.bridge;
+            int[] bounds = this.split(low, high);
+            this.distribute(bounds, source, target);
+            for (int i = 0; i + 1 < bounds.length; ++i) {
+                this.place(bounds[i], bounds[i + 1], target);
+            }
+        }
+    }
+    
+    /**
+     * Reads the records of the range of keys into memory, then writes each
+     * to the next position of its key in the original file (the positions
+     * span no more blocks than the pool holds).
+     * @param low The lowest key of the range
+     * @param high The key past the highest key of the range
+     * @param source The bridge to the file holding the records of the range
+     */
+    private void placeInMemory(int low, int high, BufferBridge source) throws IOException {
+        int start = this.first[low];
+        int records = this.first[high] - start;
+        for (int i = 0; i < records; ++i) {
+            this.scratch[i] = source.getRecord(start + i);
+        }
+        
+        System.arraycopy(this.first, low, this.next, low, high - low);
+        for (int i = 0; i < records; ++i) {
+            int record = this.scratch[i];
+            this.bridge.setRecord(this.next[record >>> KEY_SHIFT]++, record);
+        }
+    }
+    
+    /**
+     * Splits the range of keys, which holds records of more than one key,
+     * into at most fanOut parts of about the same number of records (a key
+     * with more records than that is never split).
+     * @param low The lowest key of the range
+     * @param high The key past the highest key of the range
+     * @return The lowest key of each part, followed by high
+     */
+    private int[] split(int low, int high) {
+        int start = this.first[low];
+        int records = this.first[high] - start;
+        int[] bounds = new int[this.fanOut + 1];
+        int parts = 0;
+        bounds[0] = low;
+        for (int i = 1; i < this.fanOut; ++i) {
+            // Start a part at the key holding the record that ends each share
+            // (or after it when that is the first key, so the range splits)
+            int key = this.keyAt(start + (int) ((long) i * records / this.fanOut), low, high);
+            if (this.first[key] == start) ++key;
+            if (key > bounds[parts] && key < high) bounds[++parts] = key;
+        }
+        bounds[++parts] = high;
+        return Arrays.copyOf(bounds, parts + 1);
+    }
+    
+    /**
+     * Copies the records of each part of a range of keys from the source to
+     * the target file, in the order read, to the positions of the part.
+     * @param bounds The lowest key of each part, followed by the key past
+     *               the range
+     * @param source The bridge to the file holding the records of the range
+     * @param target The bridge to the file to distribute them into
+     */
+    private void distribute(int[] bounds, BufferBridge source, BufferBridge target) throws IOException {
+        int[] positions = new int[bounds.length - 1];
+        for (int i = 0; i < positions.length; ++i) {
+            positions[i] = this.first[bounds[i]];
+            Arrays.fill(this.part, bounds[i], bounds[i + 1], i);
+        }
+        
+        int end = this.first[bounds[bounds.length - 1]];
+        for (int i = this.first[bounds[0]]; i < end; ++i) {
+            int record = source.getRecord(i);
+            target.setRecord(positions[this.part[record >>> KEY_SHIFT]]++, record);
+        }
+    }
+    
+    /**
+     * Returns the key of the record at the provided position of the sorted
+     * file, which must be held by the range of keys.
+     * @param position The position of the record
+     * @param low The lowest key of the range
+     * @param high The key past the highest key of the range
+     * @return The key
+     */
+    private int keyAt(int position, int low, int high) {
+        // Find the last key whose records start at or before the position
+        int lowKey = low;
+        int highKey = high - 1;
+        while (lowKey < highKey) {
+            int middle = (lowKey + highKey + 1) >>> 1;
+            if (this.first[middle] <= position) {
+                lowKey = middle;
+            } else {
+                highKey = middle - 1;
+            }
+        }
+        return lowKey;
+    }
+    
+    // =====================================================================
+    // = STATIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Sorts a file with a counting sort through the provided bridges, then
+     * prints and writes the same statistics as the heapsort (counting the
+     * accesses of both files).
+     * @param f The file to sort
+     * @param bridge The bridge to the file (already configured)
+     * @param runBridge The bridge to the run file (already configured)
+     * @param maxBuffers The total number of buffers of each bridge
+     * @param stats The statistics to record the count, place and flush in
+     */
+    static void sort(File f, BufferBridge bridge, BufferBridge runBridge,
+                     int maxBuffers, SortStatistics stats) throws FileNotFoundException, IOException {
+        stats.start(f, bridge.getPolicyName(), bridge, runBridge);
+        stats.phase("count");
+        CountingSort sorter =
+                new CountingSort(bridge, runBridge, (int) (f.length() / 4), maxBuffers);
+        int[] first = sorter.count();
+        stats.phase("place");
+        sorter.place(first);
+        
+        // Flush to make sure all information has been written
+        stats.phase("flush");
+        bridge.flush();
+        runBridge.close();
+        stats.end();
+        
+        // Print out the keys and values of each block
+        ExternalMaxHeap.printBlocks(f);
+        
+        // Write statistics
+        stats.write();
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Represents the strategy a buffer pool uses to decide which block to give up
+ * when it is full. The pool reports every block it loads and every block it
+ * finds (a hit), and asks the policy for a victim before loading a new block.
+ * Policies only track block numbers; the pool owns the buffers themselves.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public abstract class EvictionPolicy {
+    
+    // Names used to select a policy (from the command line)
+    public static final String LRU = "LRU";
+    public static final String CLOCK = "CLOCK";
+    public static final String TWO_QUEUE = "2Q";
+    public static final String ARC = "ARC";
+    public static final String LFU = "LFU";
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Returns the name of this policy.
+     * @return The String name
+     */
+    public abstract String getName();
+    
+    /**
+     * Records that the block has been loaded into the pool.
+     * @param block The block number loaded
+     */
+    public abstract void blockAdded(int block);
+    
+    /**
+     * Records that the block was found in the pool (a cache hit).
+     * @param block The block number accessed
+     */
+    public abstract void blockAccessed(int block);
+    
+    /**
+     * Chooses the block to remove from a full pool and stops tracking it.
+     * @param incomingBlock The block number about to be loaded
+     * @return The block number to remove
+     */
+    public abstract int selectVictim(int incomingBlock);
+    
+    /**
+     * Takes back a victim that could not be removed (its buffer is pinned),
+     * restoring the state it had before it was selected as far as possible.
+     * It becomes the most recently used block of its list, so it is not the
+     * next victim again. By default it is treated as if just loaded.
+     * @param block The block number selected by selectVictim
+     */
+    public void blockRestored(int block) {
+        this.blockAdded(block);
+    }
+    
+    /**
+     * Forgets every block tracked by this policy (including any history).
+     */
+    public abstract void clear();
+    
+    // =====================================================================
+    // = STATIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Determines whether a policy with the provided name exists.
+     * @param name The name of the policy (case insensitive)
+     * @return Whether or not the policy is supported
+     */
+    public static boolean isSupported(String name) {
+        return (create(name, 1) != null);
+    }
+    
+    /**
+     * Creates the policy with the provided name for a pool holding the
+     * provided number of buffers. Returns null if the name is unknown.
+     * @param name The name of the policy (case insensitive)
+     * @param capacity The total number of buffers the pool holds
+     * @return The new policy
+     */
+    public static EvictionPolicy create(String name, int capacity) {
+        if (name.equalsIgnoreCase(LRU)) {
+            return new LRUPolicy();
+        } else if (name.equalsIgnoreCase(CLOCK)) {
+            return new ClockPolicy(capacity);
+        } else if (name.equalsIgnoreCase(TWO_QUEUE)) {
+            return new TwoQueuePolicy(capacity);
+        } else if (name.equalsIgnoreCase(ARC)) {
+            return new ARCPolicy(capacity);
+        } else if (name.equalsIgnoreCase(LFU)) {
+            return new LFUPolicy();
+        } else {
+            return null;
+        }
+    }
+}
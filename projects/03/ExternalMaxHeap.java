@@ -12,10 +12,22 @@ import java.util.logging.Logger;
  * @author rcsvt (Robert C. Senkbeil)
  */
 public final class ExternalMaxHeap {
+    // Records hinted to the bridge at a time while building the heap
+    private static final int PREFETCH_RECORDS = 1024;
+    
+    /**
+     * Name used to select the heapsort with a fan-out that fills a block.
+     */
+    public static final String DARY = "dary";
+    
     private BufferBridge bridge; // The bridge connecting the heap to the buffer pool
     private int elementsInHeap; // The total number of elements in the heap,
                                 // equivalent to heap.length
     private int maxSize; // The maximum allowed size for the heap
+    private int arity; // The number of children of each node
+    private int rootCount; // The number of roots (1, or the arity if over 2)
+    private boolean bottomUp; // Whether removals sift down bottom-up
+    private long comparisons; // The number of keys compared so far
     
     // =====================================================================
     // = CONSTRUCTORS                                                      =
@@ -28,10 +40,44 @@ public final class ExternalMaxHeap {
      * @param maxSize The maximum supported number of elements in the heap
      */
     public ExternalMaxHeap(BufferBridge bridge, int elementsInHeap, int maxSize) throws FileNotFoundException, IOException {
+        this(bridge, elementsInHeap, maxSize, 2);
+    }
+    
+    /**
+     * Creates a new maximum heap in which each node has the provided number of
+     * children. The children of a node are stored next to each other. With
+     * more than two children the first arity records are all roots (the
+     * maximum is the largest of them) and the children of node i start at
+     * arity * (i + 1), so every group of children starts at a multiple of the
+     * arity: with a fan-out of a block each level of a sift reads one block.
+     * @param bridge The bridge to be used to provide information to the heap
+     * @param elementsInHeap The total number of elements in the heap
+     * @param maxSize The maximum supported number of elements in the heap
+     * @param arity The number of children of each node (at least 2)
+     */
+    public ExternalMaxHeap(BufferBridge bridge, int elementsInHeap, int maxSize, int arity) throws FileNotFoundException, IOException {
+        this(bridge, elementsInHeap, maxSize, arity, true);
+    }
+    
+    /**
+     * Creates a new maximum heap in which each node has the provided number of
+     * children, leaving the heap to be built by the caller if requested (as
+     * when a checkpointed sort builds it in steps or resumes after it).
+     * @param bridge The bridge to be used to provide information to the heap
+     * @param elementsInHeap The total number of elements in the heap
+     * @param maxSize The maximum supported number of elements in the heap
+     * @param arity The number of children of each node (at least 2)
+     * @param build Whether or not to build the heap now
+     */
+    public ExternalMaxHeap(BufferBridge bridge, int elementsInHeap, int maxSize, int arity, boolean build) throws FileNotFoundException, IOException {
         this.bridge = bridge;
         this.elementsInHeap = elementsInHeap;
         this.maxSize = maxSize;
-        this.buildHeap();
+        this.arity = Math.max(arity, 2);
+        this.rootCount = (this.arity == 2) ? 1 : this.arity;
+        this.bottomUp = false;
+        this.comparisons = 0;
+        if (build) this.buildHeap();
     }
     
     // =====================================================================
@@ -46,43 +92,75 @@ public final class ExternalMaxHeap {
         return this.elementsInHeap;
     }
     
+    /**
+     * Returns the number of keys compared since the heap was created. Finding
+     * the largest of n children counts n - 1 comparisons.
+     * @return The count
+     */
+    public long getComparisons() {
+        return this.comparisons;
+    }
+    
+    /**
+     * Sets whether removals sift the new root down bottom-up (Floyd): the
+     * root first follows the path of larger children to a leaf, comparing
+     * only the children at each level, and then climbs back up to its place.
+     * As the new root (taken from the end of the heap) nearly always belongs
+     * near the bottom, this compares about half as many keys.
+     * @param bottomUp Whether or not to sift down bottom-up
+     */
+    public void setBottomUp(boolean bottomUp) {
+        this.bottomUp = bottomUp;
+    }
+    
     /**
      * Checks whether or not the provided index points to a leaf in the heap.
      * @param index The index of the node to check
      * @return Whether or not the index points to a leaf
      */
     public boolean isLeaf(int index) {
-        // Heaps are balanced with the later half of the elements being leaves
-        return (index >= (this.elementsInHeap / 2)) && // Check if is in leaf range
+        // Heaps are balanced with the nodes past the last parent being leaves
+        return (this.arity * index + this.rootCount >= this.elementsInHeap) && // Check if is in leaf range
                (index < this.elementsInHeap); // Make sure not over highest value
     }
     
     /**
-     * Determines the index of the left child of the node whose index is provided.
+     * Determines the index of the left (first) child of the node whose index
+     * is provided.
      * @param index The node whose left child's index to determine
      * @return The index of the left child
      */
     public int getLeftChildIndex(int index) {
         // Check that it is possible for a left child to exist
-        assert (index < (this.elementsInHeap / 2)) : 
+        assert (this.arity * index + this.rootCount < this.elementsInHeap) : 
                 "No left child available!";
         
         // Return the index of the left child
-        return (2 * index + 1); // Determined from way heap is stored in array
+        return (this.arity * index + this.rootCount); // Determined from way heap is stored in array
     }
     
     /**
-     * Determines the index of the right child of the node whose index is provided.
+     * Determines the index of the right (last) child of the node whose index
+     * is provided.
      * @param index The node whose right child's index to determine
      * @return The index of the right child
      */
     public int getRightChildIndex(int index) {
         // Check that it is possible for a right child to exist
-        assert (index < ((this.elementsInHeap - 1) / 2)) : 
+        assert (this.arity * index + this.rootCount + this.arity - 1 < this.elementsInHeap) : 
                 "No right child available!";
         
         // Return the index of the right child
-        return (2 * index + 2); // Determined from way heap is stored in array
+        return (this.arity * index + this.rootCount + this.arity - 1); // Determined from way heap is stored in array
+    }
+    
+    /**
+     * Returns the index the build of the heap starts from (no node past it
+     * has children).
+     * @return The index of the last parent
+     */
+    public int getLastParentIndex() {
+        return (this.elementsInHeap - this.rootCount) / this.arity;
     }
     
     /**
@@ -92,11 +170,11 @@ public final class ExternalMaxHeap {
      */
     public int getParentIndex(int index) {
         // Check that it is possible for a parent to exist
-        assert (index > 0) :
+        assert (index >= this.rootCount) :
                 "No parent available!";
         
         // Return the index of the parent
-        return ((index - 1) / 2); // Determined from way heap is stored in array
+        return ((index - this.rootCount) / this.arity); // Determined from way heap is stored in array
     }
     
     /**
@@ -114,8 +192,8 @@ public final class ExternalMaxHeap {
         
         // Continuously bubble the new value up until its parent has a value
         // larger than it (to meet the requirements of a maximum heap)
-        while ((index != 0) && 
-               (this.bridge.compareTo(index, this.getParentIndex(index)) > 0)) {
+        while ((index >= this.rootCount) && 
+               (this.compare(index, this.getParentIndex(index)) > 0)) {
             this.bridge.swap(index, this.getParentIndex(index)); // Bubble the value up
             index = this.getParentIndex(index); // Replace the value index with
                                                 // its new location
@@ -126,9 +204,26 @@ public final class ExternalMaxHeap {
      * Builds the heap based on the values it contains.
      */
     public void buildHeap() throws FileNotFoundException, IOException {
+        this.buildHeap(this.getLastParentIndex(), 0);
+    }
+    
+    /**
+     * Builds part of the heap by sifting down the nodes from one index back
+     * to another. Sifting down every node from the last parent back to the
+     * root builds the whole heap.
+     * @param from The index of the first node to sift down
+     * @param to The index of the last node to sift down
+     */
+    public void buildHeap(int from, int to) throws FileNotFoundException, IOException {
         // Sift down all non-leaf nodes starting from the bottom nodes and
         // moving up to the root node
-        for (int i = ((this.elementsInHeap - 1) / 2); i >= 0; --i) {
+        for (int i = from; i >= to; --i) {
+            // Hint the parents the build moves to next and their children
+            if (i % PREFETCH_RECORDS == 0 && i > 0) {
+                int first = Math.max(i - PREFETCH_RECORDS, 0);
+                this.bridge.prefetch(first, i - first);
+                this.bridge.prefetch(this.arity * first + this.rootCount, this.arity * (i - first));
+            }
             this.siftDown(i);
         }
     }
@@ -142,12 +237,24 @@ public final class ExternalMaxHeap {
         assert this.elementsInHeap > 0 :
                 "Unable to remove maximum value from empty heap!";
         
+        // Find the largest root (there is only one unless the arity is over 2)
+        int root = 0;
+        if (this.rootCount > 1) {
+            int roots = Math.min(this.rootCount, this.elementsInHeap);
+            this.comparisons += roots - 1;
+            root = this.bridge.indexOfMax(0, roots);
+        }
+        
         // Swap the maximum value and the last value as well as decrement size
-        this.bridge.swap(0, --this.elementsInHeap);
+        this.bridge.swap(root, --this.elementsInHeap);
         
-        // Place the new root in the correct location (if the heap is not empty)
-        if (this.elementsInHeap > 0) {
-            this.siftDown(0);
+        // Place the new root in the correct location (if it was not the last)
+        if (root < this.elementsInHeap) {
+            if (this.bottomUp) {
+                this.siftDownBottomUp(root);
+            } else {
+                this.siftDown(root);
+            }
         }
         
         // Return the element removed
@@ -174,8 +281,8 @@ public final class ExternalMaxHeap {
             this.bridge.swap(index, --this.elementsInHeap);
             
             // Check if the value should be bubbled up
-            while ((index > 0) && 
-                   (this.bridge.compareTo(index, this.getParentIndex(index)) > 0)) {
+            while ((index >= this.rootCount) && 
+                   (this.compare(index, this.getParentIndex(index)) > 0)) {
                 this.bridge.swap(index, this.getParentIndex(index));
                 index = this.getParentIndex(index);
             }
@@ -226,16 +333,11 @@ public final class ExternalMaxHeap {
         // Continue sifting down until the targeted position is a leaf node
         int iChild = -1;
         while (!this.isLeaf(index)) {
-            iChild = this.getLeftChildIndex(index);
-            
-            // Check if the value in the right child is larger than the left
-            if ((iChild < (this.elementsInHeap - 1)) &&
-                (this.bridge.compareTo(iChild, iChild + 1) < 0)) // Left < right?
-                ++iChild; // Make the child index point to the right child
+            iChild = this.getLargestChildIndex(index);
             
             // Check if the value at the current index is the maximum value,
             // if it is then the sifting process is finished
-            if (this.bridge.compareTo(index, iChild) >= 0) return;
+            if (this.compare(index, iChild) >= 0) return;
             
             // Swap the value at the current index and the largest child
             this.bridge.swap(index, iChild);
@@ -245,6 +347,81 @@ public final class ExternalMaxHeap {
         }
     }
     
+    /**
+     * Sifts the value at the specified index down bottom-up: descends to a
+     * leaf along the largest children, climbs back to the first node on that
+     * path whose value is not smaller, then moves the value to that node and
+     * the nodes between them on the path up one level.
+     * @param index The index of the value to sift down
+     */
+    private void siftDownBottomUp(int index) throws FileNotFoundException, IOException {
+        // Check that the index fits in the allowed range of values
+        assert (index >= 0 && index < this.elementsInHeap) :
+                "Invalid index provided in siftDownBottomUp function!";
+        
+        // Descend to a leaf, counting the levels below the index
+        int target = index;
+        int depth = 0;
+        while (!this.isLeaf(target)) {
+            target = this.getLargestChildIndex(target);
+            ++depth;
+        }
+        
+        // Climb while the value being sifted is larger
+        while (target != index && this.compare(index, target) > 0) {
+            target = this.getParentIndex(target);
+            --depth;
+        }
+        
+        // Record the path from the index down to the target
+        int[] path = new int[depth + 1];
+        for (int i = depth; i >= 0; --i) {
+            path[i] = target;
+            if (i > 0) target = this.getParentIndex(target);
+        }
+        
+        // Rotate the path through the index from the bottom up, which places
+        // the value at the target and moves each node below the index up a
+        // level while revisiting the blocks the climb just used first
+        for (int i = depth; i > 0; --i) {
+            this.bridge.swap(path[0], path[i]);
+        }
+    }
+    
+    /**
+     * Determines the index of the largest child of the node whose index is
+     * provided (the leftmost if several are equal).
+     * @param index The node whose children to check
+     * @return The index of the largest child
+     */
+    private int getLargestChildIndex(int index) throws FileNotFoundException, IOException {
+        int iChild = this.getLeftChildIndex(index);
+        
+        if (this.arity == 2) {
+            // Check if the value in the right child is larger than the left
+            if ((iChild < (this.elementsInHeap - 1)) &&
+                (this.compare(iChild, iChild + 1) < 0)) // Left < right?
+                ++iChild; // Make the child index point to the right child
+        } else {
+            // Find the largest child with one pass over their blocks
+            int children = Math.min(this.arity, this.elementsInHeap - iChild);
+            this.comparisons += children - 1;
+            iChild = this.bridge.indexOfMax(iChild, children);
+        }
+        return iChild;
+    }
+    
+    /**
+     * Compares the keys at the two indices, counting the comparison.
+     * @param index1 The index of the first key
+     * @param index2 The index of the second key
+     * @return The result of the comparison
+     */
+    private int compare(int index1, int index2) throws FileNotFoundException, IOException {
+        ++this.comparisons;
+        return this.bridge.compareTo(index1, index2);
+    }
+    
     // =====================================================================
     // = STATIC METHODS                                                    =
     // =====================================================================
@@ -257,14 +434,116 @@ public final class ExternalMaxHeap {
      * @param state The file to write statistics to
      */
     static void sort(File f, int maxBuffers, File stat) throws FileNotFoundException, IOException {
-        long maxSortTime = System.currentTimeMillis();
+        sort(f, maxBuffers, stat, EvictionPolicy.LRU);
+    }
+    
+    /**
+     * Sorts an array using a max heap removal system with a buffer pool that
+     * uses the named eviction policy (or a memory mapping of the file if the
+     * name is MAPPED).
+     * @param f The file to sort
+     * @param maxBuffers The total number of buffers allowed in the sort
+     * @param stat The file to write statistics to
+     * @param policyName The name of the eviction policy of the buffer pool
+     */
+    static void sort(File f, int maxBuffers, File stat, String policyName) throws FileNotFoundException, IOException {
+        sort(f, BufferBridge.create(f, maxBuffers, policyName), stat);
+    }
+    
+    /**
+     * Sorts an array using a max heap removal system through the provided
+     * bridge to the file.
+     * @param f The file to sort
+     * @param bridge The bridge to the file (already configured)
+     * @param stat The file to write statistics to
+     */
+    static void sort(File f, BufferBridge bridge, File stat) throws FileNotFoundException, IOException {
+        sort(f, bridge, new SortStatistics(stat, heapsort.HEAP), 2, false);
+    }
+    
+    /**
+     * Sorts an array using a max heap removal system through the provided
+     * bridge to the file, with each node of the heap having the provided
+     * number of children.
+     * @param f The file to sort
+     * @param bridge The bridge to the file (already configured)
+     * @param stats The statistics to record the phases of the sort in
+     * @param arity The number of children of each node
+     * @param bottomUp Whether or not removals sift down bottom-up
+     */
+    static void sort(File f, BufferBridge bridge, SortStatistics stats, int arity, boolean bottomUp) throws FileNotFoundException, IOException {
+        sort(f, bridge, stats, arity, bottomUp, -1, null, null);
+    }
+    
+    /**
+     * Sorts an array using a max heap removal system through the provided
+     * bridge to the file, taking checkpoints the sort can resume from.
+     * @param f The file to sort
+     * @param bridge The bridge to the file (already configured)
+     * @param stats The statistics to record the phases of the sort in
+     * @param arity The number of children of each node
+     * @param bottomUp Whether or not removals sift down bottom-up
+     * @param checkpoint The checkpoints of the sort (resumed if read)
+     */
+    static void sort(File f, BufferBridge bridge, SortStatistics stats, int arity, boolean bottomUp, SortCheckpoint checkpoint) throws FileNotFoundException, IOException {
+        sort(f, bridge, stats, arity, bottomUp, -1, null, checkpoint);
+    }
+    
+    /**
+     * Partially sorts an array by removing only the provided number of
+     * maximum values from the heap, which places the largest records in
+     * sorted order at the end of the file, and then copies them to the output
+     * file. The rest of the file is left in heap order.
+     * @param f The file to sort
+     * @param bridge The bridge to the file (already configured)
+     * @param stats The statistics to record the phases of the sort in
+     * @param arity The number of children of each node
+     * @param bottomUp Whether or not removals sift down bottom-up
+     * @param count The number of largest records to sort
+     * @param output The file to write the largest records to (smallest first)
+     * @param checkpoint The checkpoints of the sort (or null to take none)
+     */
+    static void partialSort(File f, BufferBridge bridge, SortStatistics stats, int arity, boolean bottomUp, int count, File output, SortCheckpoint checkpoint) throws FileNotFoundException, IOException {
+        sort(f, bridge, stats, arity, bottomUp, Math.max(count, 0), output, checkpoint);
+    }
+    
+    /**
+     * Sorts the provided number of largest records (or all of them if the
+     * number is negative) and writes the results. The phases recorded are
+     * build, extract, flush and (with an output file) copy.
+     * @param f The file to sort
+     * @param bridge The bridge to the file (already configured)
+     * @param stats The statistics to record the phases of the sort in
+     * @param arity The number of children of each node
+     * @param bottomUp Whether or not removals sift down bottom-up
+     * @param count The number of largest records to sort (or -1)
+     * @param output The file to copy the sorted records to (or null)
+     * @param checkpoint The checkpoints of the sort (or null to take none)
+     */
+    private static void sort(File f, BufferBridge bridge, SortStatistics stats, int arity, boolean bottomUp, int count, File output, SortCheckpoint checkpoint) throws FileNotFoundException, IOException {
+        stats.start(f, bridge.getPolicyName(), bridge);
+        stats.phase("build");
         long fSize = f.length();
-        ExternalMaxHeap maxHeap = 
+        int totalRecords = (int) (fSize / bridge.getFormat().getLength());
+        ExternalMaxHeap maxHeap;
+        int removed = 0;
+        if (checkpoint == null) {
+            maxHeap = 
                 new ExternalMaxHeap(
-                        new BufferBridge(f, maxBuffers), 
-                        (int) (fSize / 4), 
-                        (int) (fSize / 4)
+                        bridge, 
+                        totalRecords, 
+                        totalRecords,
+                        arity
                 );
+        } else {
+            totalRecords = checkpoint.getRecords(totalRecords);
+            maxHeap = buildHeap(bridge, totalRecords, arity, checkpoint);
+            removed = checkpoint.getPosition();
+        }
+        int removals = (count < 0) ? totalRecords : Math.min(count, totalRecords);
+        maxHeap.setBottomUp(bottomUp);
+        stats.setComparisons(maxHeap.getComparisons());
+        stats.phase("extract");
         
         // Continuously remove the maximum value from the max heap (the root),
         // which places it at the end of the array
@@ -272,17 +551,128 @@ public final class ExternalMaxHeap {
         // the nth element in the array being the previous maximum element
         // This continues as n-1 becomes n-2 with the n-1 element in the array
         // being the maximum element of the n-1 max heap
-        for (int i = 0; i < (fSize / 4); ++i) {
+        for (int i = removed; i < removals; ++i) {
             maxHeap.removeMax();
+            if (checkpoint != null && (i + 1) % checkpoint.getInterval() == 0 && i + 1 < removals) {
+                checkpoint.save(bridge, SortCheckpoint.EXTRACT, i + 1);
+            }
         }
+        stats.setComparisons(maxHeap.getComparisons());
         
         // Flush to make sure all information has been written
+        stats.phase("flush");
         maxHeap.bridge.flush();
+        if (checkpoint != null) checkpoint.finish(bridge);
         
-        // Update the time
-        maxSortTime = System.currentTimeMillis() - maxSortTime;
+        // Copy the sorted records from the end of the file
+        if (output != null) {
+            stats.phase("copy");
+            int length = bridge.getFormat().getLength();
+            java.io.RandomAccessFile source = new java.io.RandomAccessFile(f, "r");
+            java.io.RandomAccessFile target = new java.io.RandomAccessFile(output, "rw");
+            target.setLength(0);
+            long position = (long) (totalRecords - removals) * length;
+            long remaining = (long) removals * length;
+            while (remaining > 0) {
+                long copied = source.getChannel().transferTo(position, remaining, target.getChannel());
+                position += copied;
+                remaining -= copied;
+            }
+            source.close();
+            target.close();
+            stats.count(0, 0, removals * (long) length, removals * (long) length);
+        }
+        stats.end();
         
         // Print out the keys and values of each block
+        printBlocks((output != null) ? output : f, bridge.getFormat());
+        
+        // Write statistics
+        stats.write();
+    }
+    
+    /**
+     * Builds the heap (or the rest of it when resuming) a checkpoint interval
+     * at a time, taking a checkpoint after each interval. A sort resumed after
+     * the build gets the heap left by the removals already made.
+     * @param bridge The bridge to the file
+     * @param totalRecords The number of records being sorted
+     * @param arity The number of children of each node
+     * @param checkpoint The checkpoints of the sort (resumed if read)
+     * @return The heap, ready for its first removal
+     */
+    private static ExternalMaxHeap buildHeap(BufferBridge bridge, int totalRecords, int arity, SortCheckpoint checkpoint) throws FileNotFoundException, IOException {
+        int removed = SortCheckpoint.EXTRACT.equals(checkpoint.getPhase()) ? checkpoint.getPosition() : 0;
+        ExternalMaxHeap maxHeap = new ExternalMaxHeap(
+                bridge, totalRecords - removed, totalRecords, arity, false);
+        checkpoint.begin(bridge, totalRecords, maxHeap.arity, maxHeap.getLastParentIndex());
+        
+        // Sift down an interval of parents at a time
+        if (SortCheckpoint.BUILD.equals(checkpoint.getPhase())) {
+            int next = checkpoint.getPosition();
+            while (next >= 0) {
+                int last = Math.max(next - checkpoint.getInterval() + 1, 0);
+                maxHeap.buildHeap(next, last);
+                next = last - 1;
+                if (next >= 0) {
+                    checkpoint.save(bridge, SortCheckpoint.BUILD, next);
+                } else {
+                    checkpoint.save(bridge, SortCheckpoint.EXTRACT, 0);
+                }
+            }
+        }
+        return maxHeap;
+    }
+    
+    /**
+     * Returns the number of children of each node that fill a block, so each
+     * level of a sift touches a single block of children (when the records
+     * fill the block exactly, as the groups of children then start on block
+     * boundaries).
+     * @param format The layout of the records
+     * @return The arity (at least 2)
+     */
+    static int blockArity(RecordFormat format) {
+        return Math.max(BufferBridge.BLOCK_SIZE / format.getLength(), 2);
+    }
+    
+    /**
+     * Prints the key of the first record starting in each block of the file,
+     * eight blocks to a line (with the two-byte value as well for the default
+     * record format).
+     * @param f The sorted file
+     * @param format The layout of the records
+     */
+    static void printBlocks(File f, RecordFormat format) throws FileNotFoundException, IOException {
+        if (format.isDefault()) {
+            printBlocks(f);
+            return;
+        }
+        java.io.RandomAccessFile rfAccess = new java.io.RandomAccessFile(f, "r");
+        long totalRecords = rfAccess.length() / format.getLength();
+        java.nio.ByteBuffer key = java.nio.ByteBuffer.allocate(format.getKeyWidth());
+        int count = 0;
+        for (long block = 0; block * 4096 < rfAccess.length(); ++block) {
+            // Find the first record starting in the block
+            long record = (block * 4096 + format.getLength() - 1) / format.getLength();
+            if (record >= totalRecords) break;
+            
+            // Add a new line if necessary
+            if (count++ % 8 == 0) System.out.println();
+            key.clear();
+            rfAccess.getChannel().read(key, record * format.getLength() + format.getKeyOffset());
+            System.out.print(format.keyToString(format.getKey(key, 0)) + "\t");
+        }
+        System.out.println();
+        rfAccess.close();
+    }
+    
+    /**
+     * Prints the key and value of the first record of each block of the
+     * file, eight blocks to a line.
+     * @param f The sorted file
+     */
+    static void printBlocks(File f) throws FileNotFoundException, IOException {
         java.io.FileInputStream fis = new java.io.FileInputStream(f);
         int count = 0;
         byte[] bytes = new byte[4096];
@@ -296,14 +686,37 @@ public final class ExternalMaxHeap {
             System.out.print(key + "\t" + value + "\t");
         }
         System.out.println();
+        fis.close();
+    }
         
-        // Write statistics
+    /**
+     * Appends the statistics of a sort to the statistics file, including the
+     * number of keys compared and the result of verifying the sorted file.
+     * @param stat The file to write statistics to
+     * @param f The sorted file
+     * @param policyName The name of the eviction policy used
+     * @param cacheHits The number of cache hits
+     * @param cacheMisses The number of cache misses
+     * @param diskReads The number of disk reads
+     * @param diskWrites The number of disk writes
+     * @param comparisons The number of keys compared (left out if negative)
+     * @param verified The result of the verification (left out if null)
+     * @param maxSortTime The time taken to sort in milliseconds
+     */
+    static void writeStatistics(File stat, File f, String policyName,
+                                int cacheHits, int cacheMisses,
+                                int diskReads, int diskWrites,
+                                long comparisons, String verified,
+                                long maxSortTime) throws IOException {
         java.io.FileWriter fw = new java.io.FileWriter(stat, true);
         fw.append("File: " + f.getName() + "\n");
-        fw.append("Cache Hits: " + maxHeap.bridge.getCacheHits() + "\n");
-        fw.append("Cache Misses: " + maxHeap.bridge.getCacheMisses() + "\n");
-        fw.append("Disk Reads: " + maxHeap.bridge.getDiskReads() + "\n");
-        fw.append("Disk Writes: " + maxHeap.bridge.getDiskWrites() + "\n");
+        fw.append("Policy: " + policyName + "\n");
+        fw.append("Cache Hits: " + cacheHits + "\n");
+        fw.append("Cache Misses: " + cacheMisses + "\n");
+        fw.append("Disk Reads: " + diskReads + "\n");
+        fw.append("Disk Writes: " + diskWrites + "\n");
+        if (comparisons >= 0) fw.append("Comparisons: " + comparisons + "\n");
+        if (verified != null) fw.append("Verified: " + verified + "\n");
         fw.append("Max Time: " + maxSortTime + " ms\n\n");
         fw.close();
     }
@@ -0,0 +1,287 @@
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents an external merge sort made of two phases. Replacement selection
+ * first reads the file in order through a heap held in memory and writes
+ * sorted runs (about twice the size of the heap on random input) to a run
+ * file. The runs are then merged k at a time, back and forth between the two
+ * files, until a single run is left in the original file. Every run is read
+ * and written from front to back, so the buffer pools only ever see
+ * sequential access. Records are ordered by key and then by value.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public final class ExternalMergeSort {
+    
+    /**
+     * Name used to select this sort in place of the heapsort.
+     */
+    public static final String MERGE = "merge";
+    
+    private BufferBridge bridge; // The bridge to the file being sorted
+    private BufferBridge runBridge; // The bridge to the file holding runs
+    private int totalRecords; // The number of records in the file
+    private int memoryRecords; // The records held by the selection heap
+    private int fanIn; // The most runs merged at once
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new merge sort of the records behind the provided bridge.
+     * @param bridge The bridge to the file being sorted
+     * @param runBridge The bridge to a file of the same size to hold runs
+     * @param totalRecords The number of records in the file
+     * @param maxBuffers The total number of buffers allowed in the sort
+     */
+    public ExternalMergeSort(BufferBridge bridge, BufferBridge runBridge,
+                             int totalRecords, int maxBuffers) {
+        this.bridge = bridge;
+        this.runBridge = runBridge;
+        this.totalRecords = totalRecords;
+        
+        // Hold as many records as the buffers would and keep the current
+        // block of every run being merged in the pool
+        this.memoryRecords = Math.max(maxBuffers, 1) *
+                (BufferBridge.BLOCK_SIZE / BufferBridge.SWAP_SIZE);
+        this.fanIn = Math.max(maxBuffers, 2);
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Sorts the file, leaving the sorted records in the original file.
+     */
+    public void sort() throws IOException {
+        this.merge(this.createRuns());
+    }
+        
+    // =====================================================================
+    // = PRIVATE METHODS                                                   =
+    // =====================================================================
+    
+    /**
+     * Merges the runs of the run file back and forth between the two files
+     * until a single run is left in the original file.
+     * @param starts The index of the first record of each run, then the total
+     */
+    private void merge(List<Integer> starts) throws IOException {
+        BufferBridge source = this.runBridge;
+        BufferBridge target = this.bridge;
+        while (starts.size() > 2 || source != this.bridge) {
+            starts = this.mergePass(source, target, starts);
+            BufferBridge temp = source;
+            source = target;
+            target = temp;
+        }
+    }
+    
+    /**
+     * Reads the file in order through the selection heap and writes sorted
+     * runs to the run file. A record read that precedes the last record
+     * written is held back for the next run.
+     * @return The index of the first record of each run, then the total
+     */
+    private List<Integer> createRuns() throws IOException {
+        List<Integer> starts = new ArrayList<Integer>();
+        long[] heap = new long[Math.min(this.memoryRecords, this.totalRecords)];
+        
+        // Fill the heap with the first records, all in the first run
+        int read = 0;
+        int size = 0;
+        while (size < heap.length) {
+            heap[size++] = runEntry(0, this.bridge.getRecord(read++));
+        }
+        for (int i = size / 2 - 1; i >= 0; --i) {
+            siftDown(heap, size, i);
+        }
+        
+        // Continuously write the smallest record and replace it with the next
+        int written = 0;
+        int currentRun = -1;
+        while (size > 0) {
+            int run = (int) (heap[0] >>> 32);
+            long record = heap[0] & 0xFFFFFFFFL;
+            if (run != currentRun) {
+                currentRun = run;
+                starts.add(written);
+            }
+            this.runBridge.setRecord(written++, (int) record);
+            
+            if (read < this.totalRecords) {
+                int next = this.bridge.getRecord(read++);
+                int nextRun = ((next & 0xFFFFFFFFL) < record) ? run + 1 : run;
+                heap[0] = runEntry(nextRun, next);
+            } else {
+                heap[0] = heap[--size];
+            }
+            siftDown(heap, size, 0);
+        }
+        starts.add(this.totalRecords);
+        return starts;
+    }
+    
+    /**
+     * Merges the runs of the source file a group at a time into the target
+     * file at the same positions.
+     * @param source The bridge to the file holding the runs
+     * @param target The bridge to the file to write the merged runs to
+     * @param starts The index of the first record of each run, then the total
+     * @return The index of the first record of each merged run, then the total
+     */
+    private List<Integer> mergePass(BufferBridge source, BufferBridge target,
+                                    List<Integer> starts) throws IOException {
+        List<Integer> merged = new ArrayList<Integer>();
+        int runs = starts.size() - 1;
+        for (int first = 0; first < runs; first += this.fanIn) {
+            int total = Math.min(this.fanIn, runs - first);
+            merged.add(starts.get(first));
+            this.mergeGroup(source, target, starts, first, total);
+        }
+        merged.add(this.totalRecords);
+        return merged;
+    }
+    
+    /**
+     * Merges the provided group of adjacent runs into a single run.
+     * @param source The bridge to the file holding the runs
+     * @param target The bridge to the file to write the merged run to
+     * @param starts The index of the first record of each run, then the total
+     * @param first The number of the first run of the group
+     * @param total The number of runs in the group
+     */
+    private void mergeGroup(BufferBridge source, BufferBridge target,
+                            List<Integer> starts, int first, int total) throws IOException {
+        int[] next = new int[total]; // Next record to read of each run
+        int[] end = new int[total]; // Index past the last record of each run
+        long[] heap = new long[total];
+        int size = 0;
+        for (int i = 0; i < total; ++i) {
+            next[i] = starts.get(first + i);
+            end[i] = starts.get(first + i + 1);
+            if (next[i] < end[i]) {
+                heap[size++] = mergeEntry(source.getRecord(next[i]++), i);
+            }
+        }
+        for (int i = size / 2 - 1; i >= 0; --i) {
+            siftDown(heap, size, i);
+        }
+        
+        // Continuously write the smallest head of the runs and replace it
+        // with the next record of the same run
+        int written = starts.get(first);
+        while (size > 0) {
+            int run = (int) heap[0];
+            target.setRecord(written++, (int) (heap[0] >>> 32) ^ Integer.MIN_VALUE);
+            if (next[run] < end[run]) {
+                heap[0] = mergeEntry(source.getRecord(next[run]++), run);
+            } else {
+                heap[0] = heap[--size];
+            }
+            siftDown(heap, size, 0);
+        }
+    }
+    
+    // =====================================================================
+    // = STATIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Combines a run number and a record so that entries order by run and
+     * then by record (key first, as the key is in the upper bytes).
+     * @param run The run the record belongs to
+     * @param record The record
+     * @return The heap entry
+     */
+    private static long runEntry(int run, int record) {
+        return ((long) run << 32) | (record & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Combines a record and the run it was read from so that entries order by
+     * record. The sign of the record is flipped so signed order of the entries
+     * matches unsigned order of the records.
+     * @param record The record
+     * @param run The run the record was read from
+     * @return The heap entry
+     */
+    static long mergeEntry(int record, int run) {
+        return ((long) (record ^ Integer.MIN_VALUE) << 32) | run;
+    }
+    
+    /**
+     * Sifts the entry at the specified index down based on the min-heap
+     * structure.
+     * @param heap The entries of the heap
+     * @param size The number of entries in the heap
+     * @param index The index of the entry to sift down
+     */
+    static void siftDown(long[] heap, int size, int index) {
+        long entry = heap[index];
+        int child = 2 * index + 1;
+        while (child < size) {
+            // Use the smaller child
+            if (child + 1 < size && heap[child + 1] < heap[child]) ++child;
+            if (entry <= heap[child]) break;
+            heap[index] = heap[child];
+            index = child;
+            child = 2 * index + 1;
+        }
+        heap[index] = entry;
+    }
+    
+    /**
+     * Creates an empty file the size of the provided file beside it, used to
+     * hold the runs of the sort.
+     * @param f The file to sort
+     * @return The run file
+     */
+    static File createRunFile(File f) throws IOException {
+        File runFile = new File(f.getPath() + ".runs");
+        RandomAccessFile rfAccess = new RandomAccessFile(runFile, "rw");
+        rfAccess.setLength(f.length());
+        rfAccess.close();
+        return runFile;
+    }
+    
+    /**
+     * Sorts a file with replacement selection and k-way merging through the
+     * provided bridges, then prints and writes the same statistics as the
+     * heapsort (counting the accesses of both files).
+     * @param f The file to sort
+     * @param bridge The bridge to the file (already configured)
+     * @param runBridge The bridge to the run file (already configured)
+     * @param maxBuffers The total number of buffers allowed in the sort
+     * @param stats The statistics to record the runs, merge and flush in
+     */
+    static void sort(File f, BufferBridge bridge, BufferBridge runBridge,
+                     int maxBuffers, SortStatistics stats) throws FileNotFoundException, IOException {
+        stats.start(f, bridge.getPolicyName(), bridge, runBridge);
+        stats.phase("runs");
+        ExternalMergeSort sorter =
+                new ExternalMergeSort(bridge, runBridge, (int) (f.length() / 4), maxBuffers);
+        List<Integer> starts = sorter.createRuns();
+        stats.phase("merge");
+        sorter.merge(starts);
+        
+        // Flush to make sure all information has been written
+        stats.phase("flush");
+        bridge.flush();
+        runBridge.close();
+        stats.end();
+        
+        // Print out the keys and values of each block
+        ExternalMaxHeap.printBlocks(f);
+        
+        // Write statistics
+        stats.write();
+    }
+}
@@ -0,0 +1,57 @@
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * Represents the least recently used policy. The block that has gone the
+ * longest without being loaded or accessed is removed first.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public class LRUPolicy extends EvictionPolicy {
+    
+    // Blocks ordered from least to most recently used
+    private LinkedHashSet<Integer> blocks;
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new, empty least recently used policy.
+     */
+    public LRUPolicy() {
+        this.blocks = new LinkedHashSet<Integer>();
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    @Override
+    public String getName() {
+        return LRU;
+    }
+    
+    @Override
+    public void blockAdded(int block) {
+        this.blocks.add(block);
+    }
+    
+    @Override
+    public void blockAccessed(int block) {
+        // Move the block to the most recently used end
+        if (this.blocks.remove(block)) this.blocks.add(block);
+    }
+    
+    @Override
+    public int selectVictim(int incomingBlock) {
+        Iterator<Integer> it = this.blocks.iterator();
+        int victim = it.next();
+        it.remove();
+        return victim;
+    }
+    
+    @Override
+    public void clear() {
+        this.blocks.clear();
+    }
+}
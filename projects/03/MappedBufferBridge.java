@@ -0,0 +1,174 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Represents a buffer bridge that memory maps the whole file instead of
+ * reading blocks into a buffer pool. Records are read and swapped directly in
+ * the mapping, leaving the caching of blocks to the operating system's page
+ * cache. Every access served by the mapping counts as a cache hit, mapping the
+ * file counts as a disk read and forcing it to disk counts as a disk write.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public class MappedBufferBridge extends BufferBridge {
+    
+    /**
+     * Name used to select this bridge in place of an eviction policy.
+     */
+    public static final String MAPPED = "MAPPED";
+    
+    private MappedByteBuffer map; // The mapping of the entire file
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new instance of the mapped buffer bridge class that targets
+     * the specified file.
+     * @param file The file to access
+     */
+    public MappedBufferBridge(File file) throws FileNotFoundException, IOException {
+        this(file, RecordFormat.DEFAULT);
+    }
+    
+    /**
+     * Creates a new instance of the mapped buffer bridge class that targets
+     * the specified file and reads records of the provided format.
+     * @param file The file to access
+     * @param format The layout of the records
+     */
+    public MappedBufferBridge(File file, RecordFormat format) throws FileNotFoundException, IOException {
+        super(file, 0, EvictionPolicy.LRU, format);
+        this.map = this.rfAccess.getChannel().map(
+                FileChannel.MapMode.READ_WRITE, 0, this.rfAccess.length());
+        ++this.diskReads;
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Gets the key of the record at the specified index as an ordered long.
+     * @param index The index of the key to retrieve
+     * @return The key value
+     */
+    @Override
+    public long getKey(int index) {
+        ++this.cacheHits;
+        return this.format.getKey(this.map, index * this.recordLength + this.format.getKeyOffset());
+    }
+    
+    /**
+     * Copies the whole record at the specified index into the array.
+     * @param index The index of the record to copy
+     * @param record The array to copy the record into (a record long)
+     */
+    @Override
+    public void read(int index, byte[] record) {
+        ++this.cacheHits;
+        int position = index * this.recordLength;
+        for (int i = 0; i < this.recordLength; ++i) {
+            record[i] = this.map.get(position + i);
+        }
+    }
+    
+    /**
+     * Gets the whole record (key and value) at the specified index.
+     * @param index The index of the record to retrieve
+     * @return The record
+     */
+    @Override
+    public int getRecord(int index) {
+        ++this.cacheHits;
+        return this.map.getInt(index * SWAP_SIZE);
+    }
+    
+    /**
+     * Sets the whole record (key and value) at the specified index.
+     * @param index The index of the record to set
+     * @param record The new record
+     */
+    @Override
+    public void setRecord(int index, int record) {
+        ++this.cacheHits;
+        this.map.putInt(index * SWAP_SIZE, record);
+    }
+    
+    /**
+     * Returns the index of the largest key in the provided range of records
+     * (the first one if several are equal).
+     * @param index The index of the first record
+     * @param length The total number of records (at least 1)
+     * @return The index of the largest key
+     */
+    @Override
+    public int indexOfMax(int index, int length) {
+        ++this.cacheHits;
+        int largest = index;
+        long largestKey = Long.MIN_VALUE;
+        for (int i = index; i < index + length; ++i) {
+            long key = this.format.getKey(this.map, i * this.recordLength + this.format.getKeyOffset());
+            if (key > largestKey || i == largest) {
+                largestKey = key;
+                largest = i;
+            }
+        }
+        return largest;
+    }
+    
+    /**
+     * Swaps the values at the specified indices.
+     * @param index1 The first index
+     * @param index2 The second index
+     */
+    @Override
+    public void swap(int index1, int index2) {
+        this.cacheHits += 2;
+        ++this.swaps;
+        int position1 = index1 * this.recordLength;
+        int position2 = index2 * this.recordLength;
+        if (this.recordLength == SWAP_SIZE) {
+            int temp = this.map.getInt(position1);
+            this.map.putInt(position1, this.map.getInt(position2));
+            this.map.putInt(position2, temp);
+        } else {
+            for (int i = 0; i < this.recordLength; ++i) {
+                byte temp = this.map.get(position1 + i);
+                this.map.put(position1 + i, this.map.get(position2 + i));
+                this.map.put(position2 + i, temp);
+            }
+        }
+    }
+    
+    /**
+     * Forces all changes made through the mapping to the disk.
+     */
+    @Override
+    public void flush() {
+        this.map.force();
+        ++this.diskWrites;
+    }
+    
+    /**
+     * Does nothing, as the operating system already reads mapped pages ahead
+     * of their use.
+     * @param index The index of the first record
+     * @param length The total number of records
+     */
+    @Override
+    public void prefetch(int index, int length) {
+    }
+    
+    /**
+     * Returns the name used to select this bridge.
+     * @return The String name
+     */
+    @Override
+    public String getPolicyName() {
+        return MAPPED;
+    }
+}
@@ -0,0 +1,411 @@
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Represents an external merge sort that uses every core. The file is split
+ * into chunks that are read, sorted in memory and written to a run file as
+ * tasks of a fork/join pool. The runs are then merged as a tree: every group
+ * of runs on one level of the tree is merged by its own task, back and forth
+ * between the two files, until a single run is left in the original file.
+ * The buffer pool is not used; each task reads and writes whole blocks with
+ * positional channel I/O, which is safe to share between threads. Records
+ * are ordered by key and then by value.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public final class ParallelMergeSort {
+    
+    /**
+     * Name used to select this sort in place of the heapsort.
+     */
+    public static final String PARALLEL = "parallel";
+    
+    // Constants for processing information
+    private static final int BLOCK_SIZE = BufferBridge.BLOCK_SIZE;
+    private static final int RECORD_SIZE = BufferBridge.SWAP_SIZE;
+    private static final int RECORDS_PER_BLOCK = BLOCK_SIZE / RECORD_SIZE;
+    
+    private ForkJoinPool workers;
+    private FileChannel channel; // The channel of the file being sorted
+    private FileChannel runChannel; // The channel of the file holding runs
+    private int totalRecords; // The number of records in the file
+    private int chunkRecords; // The records sorted in memory by each task
+    private int fanIn; // The most runs merged by each task
+    
+    // Statistical information (updated by every task)
+    private AtomicInteger diskReads;
+    private AtomicInteger diskWrites;
+    private AtomicLong bytesRead;
+    private AtomicLong bytesWritten;
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new parallel merge sort of the records of the provided file.
+     * The memory of the buffers is shared by the threads, but every chunk
+     * holds at least a block.
+     * @param channel The channel of the file being sorted
+     * @param runChannel The channel of a file of the same size to hold runs
+     * @param totalRecords The number of records in the file
+     * @param maxBuffers The total number of buffers allowed in the sort
+     * @param threads The number of threads to sort with
+     */
+    public ParallelMergeSort(FileChannel channel, FileChannel runChannel,
+                             int totalRecords, int maxBuffers, int threads) {
+        this.workers = new ForkJoinPool(threads);
+        this.channel = channel;
+        this.runChannel = runChannel;
+        this.totalRecords = totalRecords;
+        this.chunkRecords = Math.max(maxBuffers * RECORDS_PER_BLOCK / threads, 1);
+        this.chunkRecords = ((this.chunkRecords + RECORDS_PER_BLOCK - 1) /
+                RECORDS_PER_BLOCK) * RECORDS_PER_BLOCK;
+        this.fanIn = Math.max(maxBuffers, 2);
+        this.diskReads = new AtomicInteger(0);
+        this.diskWrites = new AtomicInteger(0);
+        this.bytesRead = new AtomicLong(0);
+        this.bytesWritten = new AtomicLong(0);
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Sorts the file, leaving the sorted records in the original file.
+     */
+    public void sort() {
+        try {
+            // Sort every chunk into a run of the run file
+            List<Integer> starts = new ArrayList<Integer>();
+            List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+            for (int first = 0; first < this.totalRecords; first += this.chunkRecords) {
+                int last = Math.min(first + this.chunkRecords, this.totalRecords);
+                starts.add(first);
+                tasks.add(new SortChunk(first, last));
+            }
+            starts.add(this.totalRecords);
+            this.invokeAll(tasks);
+            
+            // Merge every level of the tree until a single run is left in the
+            // original file
+            FileChannel source = this.runChannel;
+            FileChannel target = this.channel;
+            while (starts.size() > 2 || source != this.channel) {
+                List<Integer> merged = new ArrayList<Integer>();
+                tasks.clear();
+                int runs = starts.size() - 1;
+                for (int first = 0; first < runs; first += this.fanIn) {
+                    int last = Math.min(first + this.fanIn, runs);
+                    merged.add(starts.get(first));
+                    tasks.add(new MergeGroup(source, target, starts.subList(first, last + 1)));
+                }
+                merged.add(this.totalRecords);
+                this.invokeAll(tasks);
+                
+                starts = merged;
+                FileChannel temp = source;
+                source = target;
+                target = temp;
+            }
+        } finally {
+            this.workers.shutdown();
+        }
+    }
+    
+    /**
+     * Returns the number of block reads (or partial block reads) made.
+     * @return The integer count
+     */
+    public int getDiskReads() {
+        return this.diskReads.get();
+    }
+    
+    /**
+     * Returns the number of block writes (or partial block writes) made.
+     * @return The integer count
+     */
+    public int getDiskWrites() {
+        return this.diskWrites.get();
+    }
+    
+    /**
+     * Returns the number of bytes read.
+     * @return The long count
+     */
+    public long getBytesRead() {
+        return this.bytesRead.get();
+    }
+    
+    /**
+     * Returns the number of bytes written.
+     * @return The long count
+     */
+    public long getBytesWritten() {
+        return this.bytesWritten.get();
+    }
+    
+    // =====================================================================
+    // = PRIVATE METHODS                                                   =
+    // =====================================================================
+    
+    /**
+     * Runs the tasks on the pool and waits for all of them to finish.
+     * @param tasks The tasks to run
+     */
+    private void invokeAll(final List<RecursiveAction> tasks) {
+        this.workers.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+    }
+    
+    /**
+     * Reads the bytes at the provided position of the file until the buffer
+     * is full (or the file ends), counting a read for each block.
+     * @param source The channel to read from
+     * @param position The byte position to read at
+     * @param target The buffer to fill
+     */
+    private void read(FileChannel source, long position, ByteBuffer target) throws IOException {
+        int bytes = target.remaining();
+        while (target.hasRemaining()) {
+            if (source.read(target, position + bytes - target.remaining()) < 0) break;
+        }
+        this.diskReads.addAndGet((bytes + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        this.bytesRead.addAndGet(bytes - target.remaining());
+    }
+    
+    /**
+     * Writes the bytes to the provided position of the file, counting a
+     * write for each block.
+     * @param target The channel to write to
+     * @param position The byte position to write at
+     * @param source The buffer to write
+     */
+    private void write(FileChannel target, long position, ByteBuffer source) throws IOException {
+        int bytes = source.remaining();
+        while (source.hasRemaining()) {
+            target.write(source, position + bytes - source.remaining());
+        }
+        this.diskWrites.addAndGet((bytes + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        this.bytesWritten.addAndGet(bytes);
+    }
+    
+    // =====================================================================
+    // = STATIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Sorts a file with a fork/join pool of the provided number of threads,
+     * then prints and writes the same statistics as the heapsort (the pool is
+     * not used, so only the disk counts are kept).
+     * @param f The file to sort
+     * @param maxBuffers The total number of buffers allowed in the sort
+     * @param threads The number of threads to sort with
+     * @param stats The statistics to record the sort in (as a single phase)
+     */
+    static void sort(File f, int maxBuffers, int threads, SortStatistics stats) throws FileNotFoundException, IOException {
+        stats.start(f, PARALLEL.toUpperCase());
+        stats.phase("sort");
+        File runFile = ExternalMergeSort.createRunFile(f);
+        RandomAccessFile rfAccess = new RandomAccessFile(f, "rw");
+        RandomAccessFile runAccess = new RandomAccessFile(runFile, "rw");
+        ParallelMergeSort sorter = new ParallelMergeSort(
+                rfAccess.getChannel(),
+                runAccess.getChannel(),
+                (int) (f.length() / RECORD_SIZE),
+                maxBuffers,
+                threads
+        );
+        try {
+            sorter.sort();
+        } catch (RuntimeException ex) {
+            // Pass on the I/O errors of the tasks (which the pool may wrap)
+            for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) throw (IOException) cause;
+            }
+            throw ex;
+        } finally {
+            rfAccess.close();
+            runAccess.close();
+            runFile.delete();
+        }
+        stats.count(sorter.getDiskReads(), sorter.getDiskWrites(),
+                    sorter.getBytesRead(), sorter.getBytesWritten());
+        stats.end();
+        
+        // Print out the keys and values of each block
+        ExternalMaxHeap.printBlocks(f);
+        
+        // Write statistics
+        stats.write();
+    }
+    
+    // =====================================================================
+    // = INNER CLASSES                                                     =
+    // =====================================================================
+    
+    /**
+     * A task that reads a chunk of the file, sorts it in memory and writes it
+     * to the same position of the run file.
+     */
+    private class SortChunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private int first; // Index of the first record of the chunk
+        private int last; // Index past the last record of the chunk
+        
+        /**
+         * Creates a new task sorting the provided range of records.
+         * @param first The index of the first record
+         * @param last The index past the last record
+         */
+        public SortChunk(int first, int last) {
+            this.first = first;
+            this.last = last;
+        }
+        
+        /**
+         * Sorts the chunk.
+         */
+        @Override
+        protected void compute() {
+            try {
+                ByteBuffer bytes = ByteBuffer.allocate((this.last - this.first) * RECORD_SIZE);
+                read(channel, (long) this.first * RECORD_SIZE, bytes);
+                bytes.flip();
+                
+                // Sort the records as unsigned values (key in the upper bytes)
+                int[] records = new int[this.last - this.first];
+                IntBuffer view = bytes.asIntBuffer();
+                view.get(records);
+                for (int i = 0; i < records.length; ++i) records[i] ^= Integer.MIN_VALUE;
+                Arrays.sort(records);
+                for (int i = 0; i < records.length; ++i) records[i] ^= Integer.MIN_VALUE;
+                view.clear();
+                view.put(records);
+                
+                write(runChannel, (long) this.first * RECORD_SIZE, bytes);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+    
+    /**
+     * A task that merges a group of adjacent runs of one file into a single
+     * run at the same position of the other file, reading and writing a block
+     * at a time.
+     */
+    private class MergeGroup extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private FileChannel source; // The file holding the runs
+        private FileChannel target; // The file to write the merged run to
+        private int[] starts; // The first record of each run, then the end
+        
+        /**
+         * Creates a new task merging the provided runs.
+         * @param source The channel of the file holding the runs
+         * @param target The channel of the file to write the merged run to
+         * @param starts The index of the first record of each run, then the
+         *               index past the last record
+         */
+        public MergeGroup(FileChannel source, FileChannel target, List<Integer> starts) {
+            this.source = source;
+            this.target = target;
+            this.starts = new int[starts.size()];
+            for (int i = 0; i < this.starts.length; ++i) {
+                this.starts[i] = starts.get(i);
+            }
+        }
+        
+        /**
+         * Merges the runs.
+         */
+        @Override
+        protected void compute() {
+            try {
+                int total = this.starts.length - 1;
+                int[] next = new int[total]; // Next record to read of each run
+                ByteBuffer[] blocks = new ByteBuffer[total];
+                long[] heap = new long[total];
+                int size = 0;
+                for (int i = 0; i < total; ++i) {
+                    next[i] = this.starts[i];
+                    blocks[i] = ByteBuffer.allocate(BLOCK_SIZE);
+                    blocks[i].limit(0);
+                    if (next[i] < this.starts[i + 1]) {
+                        heap[size++] = ExternalMergeSort.mergeEntry(this.nextRecord(i, next, blocks), i);
+                    }
+                }
+                for (int i = size / 2 - 1; i >= 0; --i) {
+                    ExternalMergeSort.siftDown(heap, size, i);
+                }
+                
+                // Continuously write the smallest head of the runs and
+                // replace it with the next record of the same run
+                ByteBuffer out = ByteBuffer.allocate(BLOCK_SIZE);
+                long position = (long) this.starts[0] * RECORD_SIZE;
+                while (size > 0) {
+                    int run = (int) heap[0];
+                    out.putInt((int) (heap[0] >>> 32) ^ Integer.MIN_VALUE);
+                    if (!out.hasRemaining()) {
+                        out.flip();
+                        write(this.target, position, out);
+                        position += BLOCK_SIZE;
+                        out.clear();
+                    }
+                    if (next[run] < this.starts[run + 1]) {
+                        heap[0] = ExternalMergeSort.mergeEntry(this.nextRecord(run, next, blocks), run);
+                    } else {
+                        heap[0] = heap[--size];
+                    }
+                    ExternalMergeSort.siftDown(heap, size, 0);
+                }
+                if (out.position() > 0) {
+                    out.flip();
+                    write(this.target, position, out);
+                }
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+        
+        /**
+         * Returns the next record of the run, reading its next block (or the
+         * rest of the run) once the current one is used up.
+         * @param run The number of the run within the group
+         * @param next The next record to read of each run
+         * @param blocks The current block of each run
+         * @return The record
+         */
+        private int nextRecord(int run, int[] next, ByteBuffer[] blocks) throws IOException {
+            ByteBuffer block = blocks[run];
+            if (!block.hasRemaining()) {
+                int records = Math.min(RECORDS_PER_BLOCK, this.starts[run + 1] - next[run]);
+                block.clear();
+                block.limit(records * RECORD_SIZE);
+                read(this.source, (long) next[run] * RECORD_SIZE, block);
+                block.flip();
+            }
+            ++next[run];
+            return block.getInt();
+        }
+    }
+}
@@ -0,0 +1,368 @@
+
+import java.nio.ByteBuffer;
+
+/**
+ * Represents the layout of the records of a file being sorted: the length of
+ * each record and the offset, width and signedness of the big-endian key
+ * within it. Keys are read as ordered longs (signed keys are sign extended,
+ * unsigned keys are zero extended, and unsigned eight-byte keys have their
+ * sign bit flipped), so any two keys compare as plain longs. Two, four and
+ * eight-byte keys are read by their own subclasses; any other width up to
+ * eight bytes is read a byte at a time.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public abstract class RecordFormat {
+    
+    /**
+     * The layout of the course's files: four-byte records with an unsigned
+     * two-byte key at the start.
+     */
+    public static final RecordFormat DEFAULT = create(0, 2, false, 4);
+    
+    private static final int MAX_KEY_WIDTH = 8;
+    
+    protected int keyOffset; // Position of the key within the record
+    protected int keyWidth; // Size of the key in bytes
+    protected boolean signed; // Whether the key is two's complement
+    protected int length; // Size of the whole record in bytes
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new record format.
+     * @param keyOffset The position of the key within the record
+     * @param keyWidth The size of the key in bytes
+     * @param signed Whether or not the key is signed
+     * @param length The size of the whole record in bytes
+     */
+    protected RecordFormat(int keyOffset, int keyWidth, boolean signed, int length) {
+        this.keyOffset = keyOffset;
+        this.keyWidth = keyWidth;
+        this.signed = signed;
+        this.length = length;
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Reads the key starting at the provided position of the array.
+     * @param bytes The bytes holding the key
+     * @param position The position of the first byte of the key
+     * @return The ordered key
+     */
+    public abstract long getKey(byte[] bytes, int position);
+    
+    /**
+     * Reads the key starting at the provided position of the buffer.
+     * @param bytes The buffer holding the key
+     * @param position The position of the first byte of the key
+     * @return The ordered key
+     */
+    public abstract long getKey(ByteBuffer bytes, int position);
+    
+    /**
+     * Returns the key as it would be written (undoing the flipped sign bit of
+     * unsigned eight-byte keys).
+     * @param key The ordered key
+     * @return The String key
+     */
+    public String keyToString(long key) {
+        return Long.toString(key);
+    }
+    
+    /**
+     * Returns the position of the key within the record.
+     * @return The offset in bytes
+     */
+    public int getKeyOffset() {
+        return this.keyOffset;
+    }
+    
+    /**
+     * Returns the size of the key.
+     * @return The width in bytes
+     */
+    public int getKeyWidth() {
+        return this.keyWidth;
+    }
+    
+    /**
+     * Returns whether or not the key is signed.
+     * @return Whether the key is signed
+     */
+    public boolean isSigned() {
+        return this.signed;
+    }
+    
+    /**
+     * Returns the size of each record.
+     * @return The length in bytes
+     */
+    public int getLength() {
+        return this.length;
+    }
+    
+    /**
+     * Returns whether or not this is the layout of the course's files.
+     * @return Whether this layout equals the default
+     */
+    public boolean isDefault() {
+        return this.keyOffset == DEFAULT.keyOffset && this.keyWidth == DEFAULT.keyWidth &&
+               this.signed == DEFAULT.signed && this.length == DEFAULT.length;
+    }
+    
+    /**
+     * Returns the layout in the form accepted by parse.
+     * @return The String layout
+     */
+    @Override
+    public String toString() {
+        return this.keyOffset + ":" + this.keyWidth + ":" +
+               (this.signed ? "signed" : "unsigned") + ":" + this.length;
+    }
+    
+    // =====================================================================
+    // = STATIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Creates the record format for the provided layout, using a specialized
+     * reader for two, four and eight-byte keys.
+     * @param keyOffset The position of the key within the record
+     * @param keyWidth The size of the key in bytes (1 through 8)
+     * @param signed Whether or not the key is signed
+     * @param length The size of the whole record in bytes
+     * @return The new record format
+     */
+    public static RecordFormat create(int keyOffset, int keyWidth, boolean signed, int length) {
+        if (keyWidth < 1 || keyWidth > MAX_KEY_WIDTH) {
+            throw new IllegalArgumentException("Key width must be 1 through " + MAX_KEY_WIDTH);
+        }
+        if (keyOffset < 0 || keyOffset + keyWidth > length) {
+            throw new IllegalArgumentException("Key must lie within the record");
+        }
+        switch (keyWidth) {
+            case 2:
+                return new ShortKey(keyOffset, signed, length);
+            case 4:
+                return new IntKey(keyOffset, signed, length);
+            case 8:
+                return new LongKey(keyOffset, signed, length);
+            default:
+                return new AnyKey(keyOffset, keyWidth, signed, length);
+        }
+    }
+    
+    /**
+     * Creates the record format described as
+     * "key-offset:key-width:signed|unsigned:record-length" (for example the
+     * default is "0:2:unsigned:4").
+     * @param layout The String layout
+     * @return The new record format
+     */
+    public static RecordFormat parse(String layout) {
+        String[] parts = layout.split(":");
+        if (parts.length != 4 ||
+            !(parts[2].equalsIgnoreCase("signed") || parts[2].equalsIgnoreCase("unsigned"))) {
+            throw new IllegalArgumentException(
+                    "Expected <key-offset>:<key-width>:<signed|unsigned>:<record-length>");
+        }
+        try {
+            return create(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                          parts[2].equalsIgnoreCase("signed"), Integer.parseInt(parts[3]));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Offsets, widths and lengths must be numbers");
+        }
+    }
+    
+    // =====================================================================
+    // = INNER CLASSES                                                     =
+    // =====================================================================
+    
+    /**
+     * Reads two-byte keys.
+     */
+    private static final class ShortKey extends RecordFormat {
+        
+        /**
+         * Creates a new format of records with two-byte keys.
+         * @param keyOffset The position of the key within the record
+         * @param signed Whether or not the key is signed
+         * @param length The size of the whole record in bytes
+         */
+        public ShortKey(int keyOffset, boolean signed, int length) {
+            super(keyOffset, 2, signed, length);
+        }
+        
+        /**
+         * Reads the key starting at the provided position of the array.
+         * @param bytes The bytes holding the key
+         * @param position The position of the first byte of the key
+         * @return The ordered key
+         */
+        @Override
+        public long getKey(byte[] bytes, int position) {
+            int key = (bytes[position] << 8) | (bytes[position + 1] & 0xFF);
+            return this.signed ? key : (key & 0xFFFF);
+        }
+        
+        /**
+         * Reads the key starting at the provided position of the buffer.
+         * @param bytes The buffer holding the key
+         * @param position The position of the first byte of the key
+         * @return The ordered key
+         */
+        @Override
+        public long getKey(ByteBuffer bytes, int position) {
+            short key = bytes.getShort(position);
+            return this.signed ? key : (key & 0xFFFF);
+        }
+    }
+    
+    /**
+     * Reads four-byte keys.
+     */
+    private static final class IntKey extends RecordFormat {
+        
+        /**
+         * Creates a new format of records with four-byte keys.
+         * @param keyOffset The position of the key within the record
+         * @param signed Whether or not the key is signed
+         * @param length The size of the whole record in bytes
+         */
+        public IntKey(int keyOffset, boolean signed, int length) {
+            super(keyOffset, 4, signed, length);
+        }
+        
+        /**
+         * Reads the key starting at the provided position of the array.
+         * @param bytes The bytes holding the key
+         * @param position The position of the first byte of the key
+         * @return The ordered key
+         */
+        @Override
+        public long getKey(byte[] bytes, int position) {
+            int key = (bytes[position] << 24) |
+                      (bytes[position + 1] & 0xFF) << 16 |
+                      (bytes[position + 2] & 0xFF) << 8 |
+                      (bytes[position + 3] & 0xFF);
+            return this.signed ? key : (key & 0xFFFFFFFFL);
+        }
+        
+        /**
+         * Reads the key starting at the provided position of the buffer.
+         * @param bytes The buffer holding the key
+         * @param position The position of the first byte of the key
+         * @return The ordered key
+         */
+        @Override
+        public long getKey(ByteBuffer bytes, int position) {
+            int key = bytes.getInt(position);
+            return this.signed ? key : (key & 0xFFFFFFFFL);
+        }
+    }
+    
+    /**
+     * Reads eight-byte keys.
+     */
+    private static final class LongKey extends RecordFormat {
+        
+        /**
+         * Creates a new format of records with eight-byte keys.
+         * @param keyOffset The position of the key within the record
+         * @param signed Whether or not the key is signed
+         * @param length The size of the whole record in bytes
+         */
+        public LongKey(int keyOffset, boolean signed, int length) {
+            super(keyOffset, 8, signed, length);
+        }
+        
+        /**
+         * Reads the key starting at the provided position of the array.
+         * @param bytes The bytes holding the key
+         * @param position The position of the first byte of the key
+         * @return The ordered key
+         */
+        @Override
+        public long getKey(byte[] bytes, int position) {
+            long key = 0;
+            for (int i = 0; i < 8; ++i) {
+                key = (key << 8) | (bytes[position + i] & 0xFF);
+            }
+            return this.signed ? key : (key ^ Long.MIN_VALUE);
+        }
+        
+        /**
+         * Reads the key starting at the provided position of the buffer.
+         * @param bytes The buffer holding the key
+         * @param position The position of the first byte of the key
+         * @return The ordered key
+         */
+        @Override
+        public long getKey(ByteBuffer bytes, int position) {
+            long key = bytes.getLong(position);
+            return this.signed ? key : (key ^ Long.MIN_VALUE);
+        }
+        
+        /**
+         * Returns the key as it would be written.
+         * @param key The ordered key
+         * @return The String key
+         */
+        @Override
+        public String keyToString(long key) {
+            return this.signed ? Long.toString(key) : Long.toUnsignedString(key ^ Long.MIN_VALUE);
+        }
+    }
+    
+    /**
+     * Reads keys of any other width a byte at a time.
+     */
+    private static final class AnyKey extends RecordFormat {
+        
+        /**
+         * Creates a new format of records with keys of the provided width.
+         * @param keyOffset The position of the key within the record
+         * @param keyWidth The size of the key in bytes
+         * @param signed Whether or not the key is signed
+         * @param length The size of the whole record in bytes
+         */
+        public AnyKey(int keyOffset, int keyWidth, boolean signed, int length) {
+            super(keyOffset, keyWidth, signed, length);
+        }
+        
+        /**
+         * Reads the key starting at the provided position of the array.
+         * @param bytes The bytes holding the key
+         * @param position The position of the first byte of the key
+         * @return The ordered key
+         */
+        @Override
+        public long getKey(byte[] bytes, int position) {
+            long key = this.signed ? bytes[position] : (bytes[position] & 0xFF);
+            for (int i = 1; i < this.keyWidth; ++i) {
+                key = (key << 8) | (bytes[position + i] & 0xFF);
+            }
+            return key;
+        }
+        
+        /**
+         * Reads the key starting at the provided position of the buffer.
+         * @param bytes The buffer holding the key
+         * @param position The position of the first byte of the key
+         * @return The ordered key
+         */
+        @Override
+        public long getKey(ByteBuffer bytes, int position) {
+            long key = this.signed ? bytes.get(position) : (bytes.get(position) & 0xFF);
+            for (int i = 1; i < this.keyWidth; ++i) {
+                key = (key << 8) | (bytes.get(position + i) & 0xFF);
+            }
+            return key;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Represents the checkpoints of an in-place heapsort, so a sort stopped by a
+ * crash can resume instead of starting over. At each checkpoint the bridge
+ * is flushed and the file forced to the disk, then the phase of the sort
+ * (build or extract) and its position are written to a sidecar file beside
+ * the data file (<file>.ckpt). As blocks written after a checkpoint would
+ * leave the file between two states if the sort stopped, their old contents
+ * are kept in an undo log (<file>.undo) first. Resuming writes the log back,
+ * which returns the file to the last checkpoint, and continues from there.
+ * The sidecar and the log are deleted once the sort finishes.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public final class SortCheckpoint {
+    
+    /**
+     * Phase of the sort building the heap (the position is the next parent
+     * to sift down).
+     */
+    public static final String BUILD = "build";
+    
+    /**
+     * Phase of the sort removing the maximums (the position is the number of
+     * records removed).
+     */
+    public static final String EXTRACT = "extract";
+    
+    /**
+     * Records sifted or removed between checkpoints unless another interval
+     * is provided.
+     */
+    public static final int DEFAULT_INTERVAL = 1 << 20;
+    
+    private File data; // The file being sorted
+    private File sidecar; // The file holding the last checkpoint
+    private File undo; // The file holding the undo log
+    private RecordFormat format; // The layout of the records
+    private int interval; // Records sifted or removed between checkpoints
+    private UndoLog log; // The log of the blocks changed (null until begun)
+    
+    // The last checkpoint
+    private long sequence; // The number of the checkpoint
+    private String phase; // The phase of the sort
+    private int position; // The position within the phase
+    private int records; // The number of records being sorted
+    private int arity; // The number of children of each node
+    private long length; // The length of the data file
+    private boolean resumed; // Whether the checkpoint was read from the sidecar
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates new checkpoints of the sort of the provided file.
+     * @param data The file being sorted
+     * @param format The layout of the records
+     * @param interval The records sifted or removed between checkpoints
+     */
+    public SortCheckpoint(File data, RecordFormat format, int interval) {
+        this.data = data;
+        this.sidecar = new File(data.getPath() + ".ckpt");
+        this.undo = new File(data.getPath() + ".undo");
+        this.format = format;
+        this.interval = Math.max(interval, 1);
+        this.log = null;
+        this.sequence = 0;
+        this.phase = BUILD;
+        this.position = -1;
+        this.records = -1;
+        this.arity = 0;
+        this.length = 0;
+        this.resumed = false;
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Returns whether or not a sort of the file stopped before finishing.
+     * @return Whether the sidecar exists
+     */
+    public boolean exists() {
+        return this.sidecar.exists();
+    }
+    
+    /**
+     * Reads the last checkpoint and returns the file to it by writing back
+     * the blocks of the undo log.
+     * @return The number of blocks written back
+     */
+    public int resume() throws IOException {
+        Properties properties = new Properties();
+        FileInputStream in = new FileInputStream(this.sidecar);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        if (!this.format.toString().equals(properties.getProperty("format"))) {
+            throw new IOException("The checkpoint was taken with -format=" +
+                                  properties.getProperty("format"));
+        }
+        try {
+            this.sequence = Long.parseLong(properties.getProperty("sequence"));
+            this.phase = properties.getProperty("phase");
+            this.position = Integer.parseInt(properties.getProperty("position"));
+            this.records = Integer.parseInt(properties.getProperty("records"));
+            this.arity = Integer.parseInt(properties.getProperty("arity"));
+            this.length = Long.parseLong(properties.getProperty("length"));
+        } catch (NumberFormatException ex) {
+            throw new IOException("The checkpoint " + this.sidecar.getName() + " is damaged");
+        }
+        if (!BUILD.equals(this.phase) && !EXTRACT.equals(this.phase)) {
+            throw new IOException("The checkpoint " + this.sidecar.getName() + " is damaged");
+        }
+        
+        // Undo the writes made after the checkpoint
+        RandomAccessFile rfAccess = new RandomAccessFile(this.data, "rw");
+        try {
+            int restored = UndoLog.rollback(this.undo, this.sequence, rfAccess, BufferBridge.BLOCK_SIZE);
+            rfAccess.setLength(this.length);
+            this.resumed = true;
+            return restored;
+        } finally {
+            rfAccess.close();
+        }
+    }
+    
+    /**
+     * Returns whether or not the sort continues from a checkpoint.
+     * @return Whether the checkpoint was resumed
+     */
+    public boolean isResumed() {
+        return this.resumed;
+    }
+    
+    /**
+     * Returns the number of records being sorted when resuming (which the
+     * length of the file may no longer show, as the sorts pad it to whole
+     * blocks), else the provided number.
+     * @param records The number of records in the file
+     * @return The number of records to sort
+     */
+    public int getRecords(int records) {
+        return this.resumed ? this.records : records;
+    }
+    
+    /**
+     * Returns the phase of the last checkpoint.
+     * @return BUILD or EXTRACT
+     */
+    public String getPhase() {
+        return this.phase;
+    }
+    
+    /**
+     * Returns the position within the phase of the last checkpoint.
+     * @return The next parent to sift down, or the records removed
+     */
+    public int getPosition() {
+        return this.position;
+    }
+    
+    /**
+     * Returns the number of children of each node of the heap being sorted.
+     * @return The arity
+     */
+    public int getArity() {
+        return this.arity;
+    }
+    
+    /**
+     * Returns the records sifted or removed between checkpoints.
+     * @return The interval
+     */
+    public int getInterval() {
+        return this.interval;
+    }
+    
+    /**
+     * Starts taking checkpoints of the sort through the provided bridge. A
+     * new sort starts at the provided parent of the build phase; a resumed
+     * sort must use the same arity as before.
+     * @param bridge The bridge to the file
+     * @param records The number of records being sorted
+     * @param arity The number of children of each node
+     * @param start The first parent to sift down
+     */
+    public void begin(BufferBridge bridge, int records, int arity, int start) throws IOException {
+        if (this.resumed && this.arity != arity) {
+            throw new IOException("The checkpoint was taken with an arity of " + this.arity);
+        }
+        if (!this.resumed) {
+            this.phase = BUILD;
+            this.position = start;
+        }
+        this.records = records;
+        this.arity = arity;
+        this.log = new UndoLog(this.undo, BufferBridge.BLOCK_SIZE);
+        this.save(bridge, this.phase, this.position);
+    }
+    
+    /**
+     * Takes a checkpoint: flushes the bridge, forces the file to the disk,
+     * replaces the sidecar and starts a new undo log.
+     * @param bridge The bridge to the file
+     * @param phase The phase of the sort
+     * @param position The position within the phase
+     */
+    public void save(BufferBridge bridge, String phase, int position) throws IOException {
+        bridge.sync();
+        this.phase = phase;
+        this.position = position;
+        this.length = this.data.length();
+        ++this.sequence;
+        
+        // Replace the sidecar in a single step, so it is never half written
+        Properties properties = new Properties();
+        properties.setProperty("sequence", Long.toString(this.sequence));
+        properties.setProperty("phase", this.phase);
+        properties.setProperty("position", Integer.toString(this.position));
+        properties.setProperty("records", Integer.toString(this.records));
+        properties.setProperty("arity", Integer.toString(this.arity));
+        properties.setProperty("format", this.format.toString());
+        properties.setProperty("length", Long.toString(this.length));
+        File temp = new File(this.sidecar.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            properties.store(out, "Checkpoint of the heapsort of " + this.data.getName());
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        Files.move(temp.toPath(), this.sidecar.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        
+        // Log the blocks changed from here on
+        this.log.start(this.sequence);
+        bridge.setUndoLog(this.log);
+    }
+    
+    /**
+     * Stops taking checkpoints once the sort has been flushed, deleting the
+     * sidecar and the undo log.
+     * @param bridge The bridge to the file
+     */
+    public void finish(BufferBridge bridge) throws IOException {
+        bridge.sync();
+        bridge.setUndoLog(null);
+        this.sidecar.delete();
+        if (this.log != null) this.log.delete();
+    }
+}
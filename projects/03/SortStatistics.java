@@ -0,0 +1,446 @@
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Represents the statistics of a single sort, split into named phases (such
+ * as building the heap, removing the maximums and flushing the pool). At the
+ * start of each phase the counters of the bridges are read, so each phase
+ * holds the difference since the last one; nothing is counted while a phase
+ * runs beyond what the bridges already count. The totals are appended to the
+ * statistics file in the usual text form, and the totals and every phase can
+ * also be appended as a JSON line and as CSV rows for other programs to read.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public final class SortStatistics {
+    
+    /**
+     * Columns of the CSV rows, written once at the top of a new file.
+     */
+    public static final String CSV_HEADER =
+            "file,engine,policy,phase,time_ms,cache_hits,cache_misses," +
+            "disk_reads,disk_writes,bytes_read,bytes_written,comparisons," +
+            "swaps,peak_buffers";
+    
+    private File stat; // The file to append the text statistics to
+    private File json; // The file to append JSON lines to (or null)
+    private File csv; // The file to append CSV rows to (or null)
+    private String engine; // The name of the sort engine
+    private SortVerifier verifier; // Checks the sorted file (or null)
+    private File verified; // The file the verifier checks
+    
+    private File file; // The file being sorted
+    private String policyName; // The name of the eviction policy
+    private BufferBridge[] bridges; // The bridges whose counters are read
+    private List<Phase> phases; // The phases finished so far
+    private Phase current; // The phase running (or null)
+    private long comparisons; // The keys compared so far
+    private boolean counted; // Whether comparisons were counted
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates new statistics for a sort by the named engine, written to the
+     * provided statistics file.
+     * @param stat The file to append the text statistics to
+     * @param engine The name of the sort engine
+     */
+    public SortStatistics(File stat, String engine) {
+        this.stat = stat;
+        this.json = null;
+        this.csv = null;
+        this.engine = engine;
+        this.verifier = null;
+        this.verified = null;
+        this.file = null;
+        this.policyName = "";
+        this.bridges = new BufferBridge[0];
+        this.phases = new ArrayList<Phase>();
+        this.current = null;
+        this.comparisons = 0;
+        this.counted = false;
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Sets the file to append a JSON line to for each sort.
+     * @param json The file (or null to write none)
+     */
+    public void setJsonFile(File json) {
+        this.json = json;
+    }
+    
+    /**
+     * Sets the file to append a CSV row to for each phase and for the total.
+     * @param csv The file (or null to write none)
+     */
+    public void setCsvFile(File csv) {
+        this.csv = csv;
+    }
+    
+    /**
+     * Sets the verifier that checks the sorted file as the last phase of the
+     * sort (named verify) before the statistics are written.
+     * @param verifier The verifier (or null to check nothing)
+     * @param verified The file to check
+     */
+    public void setVerifier(SortVerifier verifier, File verified) {
+        this.verifier = verifier;
+        this.verified = verified;
+    }
+    
+    /**
+     * Starts the statistics of a sort of the provided file through the
+     * provided bridges (none if the sort does its own I/O).
+     * @param file The file being sorted
+     * @param policyName The name of the eviction policy used
+     * @param bridges The bridges whose counters are read
+     */
+    public void start(File file, String policyName, BufferBridge... bridges) {
+        this.file = file;
+        this.policyName = policyName;
+        this.bridges = bridges;
+        this.phases.clear();
+        this.current = null;
+        this.comparisons = 0;
+        this.counted = false;
+    }
+    
+    /**
+     * Ends the phase running (if any) and starts the named phase. The first
+     * phase also holds whatever the bridges counted before it (such as
+     * mapping the file), so the totals match the counters of the bridges.
+     * @param name The name of the new phase
+     */
+    public void phase(String name) {
+        this.end();
+        this.current = new Phase(name);
+        this.current.begin(this.phases.isEmpty());
+    }
+    
+    /**
+     * Ends the phase running (if any).
+     */
+    public void end() {
+        if (this.current == null) return;
+        this.current.finish();
+        this.phases.add(this.current);
+        this.current = null;
+    }
+    
+    /**
+     * Sets the total number of keys compared so far, which is split between
+     * the phases as they end.
+     * @param comparisons The count
+     */
+    public void setComparisons(long comparisons) {
+        this.comparisons = comparisons;
+        this.counted = true;
+    }
+    
+    /**
+     * Adds disk counts kept outside of any bridge to the phase running.
+     * @param diskReads The number of disk reads
+     * @param diskWrites The number of disk writes
+     * @param bytesRead The number of bytes read
+     * @param bytesWritten The number of bytes written
+     */
+    public void count(int diskReads, int diskWrites, long bytesRead, long bytesWritten) {
+        if (this.current == null) return;
+        this.current.diskReads += diskReads;
+        this.current.diskWrites += diskWrites;
+        this.current.bytesRead += bytesRead;
+        this.current.bytesWritten += bytesWritten;
+    }
+    
+    /**
+     * Returns the phases finished so far.
+     * @return The list of phases
+     */
+    public List<Phase> getPhases() {
+        return this.phases;
+    }
+    
+    /**
+     * Adds up every phase finished so far.
+     * @return The totals (named total)
+     */
+    public Phase getTotal() {
+        Phase total = new Phase("total");
+        for (Phase phase : this.phases) {
+            total.add(phase);
+        }
+        return total;
+    }
+    
+    /**
+     * Ends the phase running, checks the sorted file if a verifier is set,
+     * and appends the totals to the statistics file, then the JSON line and
+     * CSV rows if their files are set.
+     */
+    public void write() throws IOException {
+        this.end();
+        String result = null;
+        if (this.verifier != null) {
+            this.phase("verify");
+            long bytesRead = this.verifier.getBytesRead();
+            if (!this.verifier.verify(this.verified)) {
+                System.err.println("ERROR: Verification of " + this.verified.getName() +
+                                   " failed: " + this.verifier.getResult());
+            }
+            this.count(0, 0, this.verifier.getBytesRead() - bytesRead, 0);
+            this.end();
+            result = this.verifier.getResult();
+        }
+        Phase total = this.getTotal();
+        
+        // Write the text statistics as the sorts always have
+        ExternalMaxHeap.writeStatistics(
+                this.stat, this.file, this.policyName,
+                (int) total.cacheHits, (int) total.cacheMisses,
+                (int) total.diskReads, (int) total.diskWrites,
+                this.counted ? total.comparisons : -1, result, total.getMillis());
+        
+        if (this.json != null) {
+            FileWriter fw = new FileWriter(this.json, true);
+            fw.append(this.toJson(total)).append('\n');
+            fw.close();
+        }
+        
+        if (this.csv != null) {
+            boolean header = this.csv.length() == 0;
+            FileWriter fw = new FileWriter(this.csv, true);
+            if (header) fw.append(CSV_HEADER).append('\n');
+            for (Phase phase : this.phases) {
+                fw.append(this.toCsv(phase)).append('\n');
+            }
+            fw.append(this.toCsv(total)).append('\n');
+            fw.close();
+        }
+    }
+    
+    // =====================================================================
+    // = PRIVATE METHODS                                                   =
+    // =====================================================================
+    
+    /**
+     * Returns the totals and every phase as a single line of JSON.
+     * @param total The totals of every phase
+     * @return The String JSON object
+     */
+    private String toJson(Phase total) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"file\":").append(quote(this.file.getName()));
+        sb.append(",\"engine\":").append(quote(this.engine));
+        sb.append(",\"policy\":").append(quote(this.policyName));
+        total.appendJson(sb, this.counted);
+        if (this.verifier != null) {
+            sb.append(",\"sorted\":").append(this.verifier.isSorted());
+            sb.append(",\"complete\":").append(this.verifier.isComplete());
+            sb.append(",\"verified\":").append(quote(this.verifier.getResult()));
+        }
+        sb.append(",\"phases\":[");
+        for (int i = 0; i < this.phases.size(); ++i) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"name\":").append(quote(this.phases.get(i).name));
+            this.phases.get(i).appendJson(sb, this.counted);
+            sb.append('}');
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+    
+    /**
+     * Returns the phase as a row of CSV.
+     * @param phase The phase
+     * @return The String row
+     */
+    private String toCsv(Phase phase) {
+        return csvField(this.file.getName()) + "," + csvField(this.engine) + "," +
+               csvField(this.policyName) + "," + csvField(phase.name) + "," +
+               formatMillis(phase.nanos) + "," + phase.cacheHits + "," +
+               phase.cacheMisses + "," + phase.diskReads + "," + phase.diskWrites + "," +
+               phase.bytesRead + "," + phase.bytesWritten + "," +
+               (this.counted ? Long.toString(phase.comparisons) : "") + "," +
+               phase.swaps + "," + phase.peakBuffers;
+    }
+    
+    // =====================================================================
+    // = STATIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Returns the time in milliseconds with three decimal places.
+     * @param nanos The time in nanoseconds
+     * @return The String time
+     */
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1000000.0);
+    }
+    
+    /**
+     * Returns the String as a quoted JSON string.
+     * @param s The String
+     * @return The quoted String
+     */
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+    
+    /**
+     * Returns the String as a CSV field, quoted if it holds a comma, quote or
+     * line break.
+     * @param s The String
+     * @return The field
+     */
+    private static String csvField(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 &&
+            s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+            return s;
+        }
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+    
+    // =====================================================================
+    // = INNER CLASSES                                                     =
+    // =====================================================================
+    
+    /**
+     * Represents the counts of a single phase of a sort (or the totals).
+     */
+    public final class Phase {
+        private String name; // The name of the phase
+        private long nanos; // The time taken
+        private long cacheHits;
+        private long cacheMisses;
+        private long diskReads;
+        private long diskWrites;
+        private long bytesRead;
+        private long bytesWritten;
+        private long comparisons;
+        private long swaps;
+        private int peakBuffers; // The most buffers of a pool in use
+        
+        /**
+         * Creates a new phase with every count at zero.
+         * @param name The name of the phase
+         */
+        public Phase(String name) {
+            this.name = name;
+        }
+        
+        /**
+         * Returns the name of the phase.
+         * @return The String name
+         */
+        public String getName() {
+            return this.name;
+        }
+        
+        /**
+         * Returns the time taken by the phase in whole milliseconds.
+         * @return The time
+         */
+        public long getMillis() {
+            return this.nanos / 1000000;
+        }
+        
+        /**
+         * Reads the counters of the bridges at the start of the phase (as
+         * negative counts, so finish leaves the difference).
+         * @param first Whether this is the first phase (which starts from zero)
+         */
+        private void begin(boolean first) {
+            for (BufferBridge bridge : SortStatistics.this.bridges) {
+                bridge.resetPeakBuffers();
+            }
+            if (!first) this.take(-1);
+            this.comparisons = -SortStatistics.this.comparisons;
+            this.nanos = -System.nanoTime();
+        }
+        
+        /**
+         * Reads the counters of the bridges at the end of the phase.
+         */
+        private void finish() {
+            this.nanos += System.nanoTime();
+            this.comparisons += SortStatistics.this.comparisons;
+            this.take(1);
+            for (BufferBridge bridge : SortStatistics.this.bridges) {
+                this.peakBuffers += bridge.getPeakBuffers();
+            }
+        }
+        
+        /**
+         * Adds the counters of every bridge times the provided sign.
+         * @param sign 1 to add the counters, -1 to subtract them
+         */
+        private void take(int sign) {
+            for (BufferBridge bridge : SortStatistics.this.bridges) {
+                this.cacheHits += sign * (long) bridge.getCacheHits();
+                this.cacheMisses += sign * (long) bridge.getCacheMisses();
+                this.diskReads += sign * (long) bridge.getDiskReads();
+                this.diskWrites += sign * (long) bridge.getDiskWrites();
+                this.bytesRead += sign * bridge.getBytesRead();
+                this.bytesWritten += sign * bridge.getBytesWritten();
+                this.swaps += sign * bridge.getSwaps();
+            }
+        }
+        
+        /**
+         * Adds the counts of another phase to this one, keeping the larger
+         * peak.
+         * @param other The other phase
+         */
+        private void add(Phase other) {
+            this.nanos += other.nanos;
+            this.cacheHits += other.cacheHits;
+            this.cacheMisses += other.cacheMisses;
+            this.diskReads += other.diskReads;
+            this.diskWrites += other.diskWrites;
+            this.bytesRead += other.bytesRead;
+            this.bytesWritten += other.bytesWritten;
+            this.comparisons += other.comparisons;
+            this.swaps += other.swaps;
+            this.peakBuffers = Math.max(this.peakBuffers, other.peakBuffers);
+        }
+        
+        /**
+         * Appends the counts as JSON members (each preceded by a comma).
+         * @param sb The builder to append to
+         * @param comparisons Whether or not to include the comparisons
+         */
+        private void appendJson(StringBuilder sb, boolean comparisons) {
+            sb.append(",\"timeMs\":").append(formatMillis(this.nanos));
+            sb.append(",\"cacheHits\":").append(this.cacheHits);
+            sb.append(",\"cacheMisses\":").append(this.cacheMisses);
+            sb.append(",\"diskReads\":").append(this.diskReads);
+            sb.append(",\"diskWrites\":").append(this.diskWrites);
+            sb.append(",\"bytesRead\":").append(this.bytesRead);
+            sb.append(",\"bytesWritten\":").append(this.bytesWritten);
+            if (comparisons) sb.append(",\"comparisons\":").append(this.comparisons);
+            sb.append(",\"swaps\":").append(this.swaps);
+            sb.append(",\"peakBuffers\":").append(this.peakBuffers);
+        }
+    }
+}
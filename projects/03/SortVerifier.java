@@ -0,0 +1,338 @@
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Represents a check that a sorted file holds the same records as the file
+ * did before it was sorted, in order. The file is split into chunks that are
+ * memory mapped and checked by the tasks of a fork/join pool: each task
+ * checks the order of the records within its chunk and adds up a hash of
+ * each record. The chunks are then joined in order, checking that the last
+ * key of each chunk is not larger than the first key of the next. As the
+ * sum of the hashes does not depend on the order of the records, comparing
+ * the sums taken before and after the sort finds lost or duplicated records.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public final class SortVerifier {
+    
+    // Bytes checked by each task (rounded down to whole records)
+    private static final int CHUNK_SIZE = 1 << 22;
+    
+    private RecordFormat format; // The layout of the records
+    private int threads; // The number of threads to check with
+    private long inputRecords; // Records of the file before the sort (or -1)
+    private long inputChecksum; // Sum of the hashes of the records before
+    
+    // Results of the last check
+    private long records; // The number of records checked
+    private long checksum; // The sum of the hashes of the records
+    private long firstUnsorted; // The first record larger than the next (or -1)
+    private long bytesRead; // The number of bytes read by all checks
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new verifier of files of the provided record format.
+     * @param format The layout of the records
+     * @param threads The number of threads to check with
+     */
+    public SortVerifier(RecordFormat format, int threads) {
+        this.format = format;
+        this.threads = Math.max(threads, 1);
+        this.inputRecords = -1;
+        this.inputChecksum = 0;
+        this.records = 0;
+        this.checksum = 0;
+        this.firstUnsorted = -1;
+        this.bytesRead = 0;
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Adds up the hashes of the records of the file before it is sorted, so
+     * the sorted file can be compared with it.
+     * @param f The file about to be sorted
+     */
+    public void readInput(File f) throws IOException {
+        this.readInput(f, f.length() / this.format.getLength());
+    }
+    
+    /**
+     * Adds up the hashes of the provided number of records at the start of
+     * the file before it is sorted.
+     * @param f The file about to be sorted
+     * @param total The number of records to be sorted
+     */
+    public void readInput(File f, long total) throws IOException {
+        Chunk result = this.check(f, total);
+        this.inputRecords = result.records;
+        this.inputChecksum = result.checksum;
+    }
+    
+    /**
+     * Checks that the records of the sorted file are in order and, if the
+     * input was read, that they are the records of the input. Only as many
+     * records as the input held are checked (the sorts may pad the file).
+     * @param f The sorted file
+     * @return Whether or not the file passed every check
+     */
+    public boolean verify(File f) throws IOException {
+        long total = f.length() / this.format.getLength();
+        if (this.inputRecords >= 0) total = Math.min(total, this.inputRecords);
+        Chunk result = this.check(f, total);
+        this.records = result.records;
+        this.checksum = result.checksum;
+        this.firstUnsorted = result.firstUnsorted;
+        return this.isSorted() && this.isComplete();
+    }
+    
+    /**
+     * Returns whether or not the records of the last check were in order.
+     * @return Whether the file is sorted
+     */
+    public boolean isSorted() {
+        return this.firstUnsorted < 0;
+    }
+    
+    /**
+     * Returns whether or not the last check found the same number of records
+     * and the same checksum as the input (true if the input was not read).
+     * @return Whether no record was lost or duplicated
+     */
+    public boolean isComplete() {
+        return this.inputRecords < 0 ||
+               (this.records == this.inputRecords && this.checksum == this.inputChecksum);
+    }
+    
+    /**
+     * Returns the index of the first record whose key is larger than the key
+     * of the next record, or -1 if the file is sorted.
+     * @return The index
+     */
+    public long getFirstUnsorted() {
+        return this.firstUnsorted;
+    }
+    
+    /**
+     * Returns the number of bytes read by every check so far.
+     * @return The long count
+     */
+    public long getBytesRead() {
+        return this.bytesRead;
+    }
+    
+    /**
+     * Describes the result of the last check in a single line.
+     * @return The String result
+     */
+    public String getResult() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(this.isSorted() ? "sorted" : "NOT sorted at record " + this.firstUnsorted);
+        sb.append(", ").append(this.records).append(" records, checksum ");
+        sb.append(String.format("%016x", this.checksum));
+        if (this.inputRecords >= 0) {
+            sb.append(this.isComplete() ? " matches input" :
+                      " DIFFERS from input (" + this.inputRecords + " records, checksum " +
+                      String.format("%016x", this.inputChecksum) + ")");
+        }
+        return sb.toString();
+    }
+    
+    // =====================================================================
+    // = PRIVATE METHODS                                                   =
+    // =====================================================================
+    
+    /**
+     * Checks the provided number of records at the start of the file, a chunk
+     * to each task, and joins the chunks in order.
+     * @param f The file to check
+     * @param total The number of records to check
+     * @return The result of the whole file
+     */
+    private Chunk check(File f, long total) throws IOException {
+        long chunkRecords = Math.max(CHUNK_SIZE / this.format.getLength(), 2);
+        RandomAccessFile rfAccess = new RandomAccessFile(f, "r");
+        ForkJoinPool workers = new ForkJoinPool(this.threads);
+        try {
+            List<CheckChunk> tasks = new ArrayList<CheckChunk>();
+            for (long first = 0; first < total; first += chunkRecords) {
+                CheckChunk task = new CheckChunk(
+                        rfAccess.getChannel(), first, Math.min(first + chunkRecords, total));
+                tasks.add(task);
+                workers.execute(task);
+            }
+            
+            // Join the chunks, checking the keys on either side of each
+            // boundary
+            Chunk result = new Chunk(0);
+            for (CheckChunk task : tasks) {
+                result.join(joinTask(task));
+            }
+            this.bytesRead += total * this.format.getLength();
+            return result;
+        } finally {
+            workers.shutdown();
+            rfAccess.close();
+        }
+    }
+    
+    // =====================================================================
+    // = STATIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Waits for the task and returns its result, passing on its I/O errors.
+     * @param task The task
+     * @return The result of the task
+     */
+    private static Chunk joinTask(CheckChunk task) throws IOException {
+        try {
+            return task.join();
+        } catch (RuntimeException ex) {
+            for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) throw (IOException) cause;
+            }
+            throw ex;
+        }
+    }
+    
+    /**
+     * Mixes the bits of the value (the finalizer of SplitMix64), so that
+     * similar records have unrelated hashes.
+     * @param value The value to mix
+     * @return The mixed value
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+    
+    // =====================================================================
+    // = INNER CLASSES                                                     =
+    // =====================================================================
+    
+    /**
+     * Represents the result of checking a run of adjacent records.
+     */
+    private static final class Chunk {
+        private long first; // The index of the first record
+        private long records; // The number of records
+        private long firstKey; // The key of the first record
+        private long lastKey; // The key of the last record
+        private long checksum; // The sum of the hashes of the records
+        private long firstUnsorted; // The first record out of order (or -1)
+        
+        /**
+         * Creates the result of an empty run starting at the provided record.
+         * @param first The index of the first record
+         */
+        public Chunk(long first) {
+            this.first = first;
+            this.records = 0;
+            this.checksum = 0;
+            this.firstUnsorted = -1;
+        }
+        
+        /**
+         * Appends the result of the run that follows this one.
+         * @param next The result of the next run
+         */
+        public void join(Chunk next) {
+            if (next.records == 0) return;
+            if (this.records == 0) {
+                this.firstKey = next.firstKey;
+            } else if (this.firstUnsorted < 0 && this.lastKey > next.firstKey) {
+                this.firstUnsorted = next.first - 1;
+            }
+            if (this.firstUnsorted < 0) this.firstUnsorted = next.firstUnsorted;
+            this.lastKey = next.lastKey;
+            this.records += next.records;
+            this.checksum += next.checksum;
+        }
+    }
+    
+    /**
+     * Represents the task checking a chunk of the file through its own
+     * mapping of the chunk.
+     */
+    private final class CheckChunk extends RecursiveTask<Chunk> {
+        private static final long serialVersionUID = 1L;
+        private FileChannel channel; // The channel of the file being checked
+        private long first; // The index of the first record of the chunk
+        private long last; // The index past the last record of the chunk
+        
+        /**
+         * Creates a new task checking the records in the provided range.
+         * @param channel The channel of the file being checked
+         * @param first The index of the first record
+         * @param last The index past the last record
+         */
+        public CheckChunk(FileChannel channel, long first, long last) {
+            this.channel = channel;
+            this.first = first;
+            this.last = last;
+        }
+        
+        /**
+         * Maps the chunk and checks its records in order.
+         * @return The result of the chunk
+         */
+        @Override
+        protected Chunk compute() {
+            int length = SortVerifier.this.format.getLength();
+            int keyOffset = SortVerifier.this.format.getKeyOffset();
+            Chunk chunk = new Chunk(this.first);
+            MappedByteBuffer map;
+            try {
+                map = this.channel.map(FileChannel.MapMode.READ_ONLY,
+                        this.first * length, (this.last - this.first) * length);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+            
+            long previous = 0;
+            int total = (int) (this.last - this.first);
+            for (int i = 0; i < total; ++i) {
+                int position = i * length;
+                long key = SortVerifier.this.format.getKey(map, position + keyOffset);
+                if (i == 0) {
+                    chunk.firstKey = key;
+                } else if (chunk.firstUnsorted < 0 && previous > key) {
+                    chunk.firstUnsorted = this.first + i - 1;
+                }
+                previous = key;
+                
+                // Hash the record eight bytes at a time, then the rest
+                long hash = length;
+                int j = 0;
+                for (; j + 8 <= length; j += 8) {
+                    hash = mix(hash + map.getLong(position + j));
+                }
+                if (j < length) {
+                    long tail = 0;
+                    for (; j < length; ++j) {
+                        tail = (tail << 8) | (map.get(position + j) & 0xFF);
+                    }
+                    hash = mix(hash + tail);
+                }
+                chunk.checksum += hash;
+            }
+            chunk.lastKey = previous;
+            chunk.records = total;
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Represents a selection of the largest records of a file in a single pass.
+ * The file is read in order while a min-heap held in memory keeps the largest
+ * records seen so far; a record only replaces the root (the smallest of them)
+ * if its key is larger. The records kept are then written smallest first, so
+ * the output matches the end of the fully sorted file. The file itself is
+ * not modified.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public final class TopKSelector {
+    
+    private BufferBridge bridge; // The bridge to the file being read
+    private long[] keys; // The keys of the heap
+    private byte[][] records; // The records of the heap, beside their keys
+    private int size; // The number of records in the heap
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new selection of the provided number of largest records of
+     * the file behind the bridge.
+     * @param bridge The bridge to the file being read
+     * @param k The number of records to keep
+     */
+    public TopKSelector(BufferBridge bridge, int k) {
+        int length = bridge.getFormat().getLength();
+        this.bridge = bridge;
+        this.keys = new long[k];
+        this.records = new byte[k][length];
+        this.size = 0;
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Reads the provided number of records in order, keeping the largest.
+     * @param totalRecords The number of records in the file
+     */
+    public void select(int totalRecords) throws IOException {
+        int capacity = this.keys.length;
+        for (int i = 0; i < totalRecords; ++i) {
+            long key = this.bridge.getKey(i);
+            if (this.size < capacity) {
+                // Fill the heap, placing the new record at its end
+                this.keys[this.size] = key;
+                this.bridge.read(i, this.records[this.size]);
+                this.siftUp(this.size++);
+            } else if (capacity > 0 && key > this.keys[0]) {
+                // Replace the smallest record kept
+                this.keys[0] = key;
+                this.bridge.read(i, this.records[0]);
+                this.siftDown(0);
+            }
+        }
+    }
+    
+    /**
+     * Writes the records kept to the file, smallest first. The heap is empty
+     * afterwards.
+     * @param output The file to write to
+     */
+    public void write(File output) throws IOException {
+        // Remove the smallest record repeatedly, placing each one after the
+        // end of the shrinking heap so the records end up largest first
+        int total = this.size;
+        while (this.size > 1) {
+            this.swap(0, --this.size);
+            this.siftDown(0);
+        }
+        this.size = 0;
+        
+        BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(output));
+        for (int i = total - 1; i >= 0; --i) {
+            out.write(this.records[i]);
+        }
+        out.close();
+    }
+    
+    // =====================================================================
+    // = PRIVATE METHODS                                                   =
+    // =====================================================================
+    
+    /**
+     * Moves the record at the specified index up until its parent is not
+     * larger.
+     * @param index The index of the record
+     */
+    private void siftUp(int index) {
+        while (index > 0 && this.keys[(index - 1) / 2] > this.keys[index]) {
+            this.swap(index, (index - 1) / 2);
+            index = (index - 1) / 2;
+        }
+    }
+    
+    /**
+     * Moves the record at the specified index down until neither child is
+     * smaller.
+     * @param index The index of the record
+     */
+    private void siftDown(int index) {
+        int child = 2 * index + 1;
+        while (child < this.size) {
+            // Use the smaller child
+            if (child + 1 < this.size && this.keys[child + 1] < this.keys[child]) ++child;
+            if (this.keys[index] <= this.keys[child]) return;
+            this.swap(index, child);
+            index = child;
+            child = 2 * index + 1;
+        }
+    }
+    
+    /**
+     * Swaps the records (and keys) at the two indices of the heap.
+     * @param index1 The first index
+     * @param index2 The second index
+     */
+    private void swap(int index1, int index2) {
+        long key = this.keys[index1];
+        this.keys[index1] = this.keys[index2];
+        this.keys[index2] = key;
+        byte[] record = this.records[index1];
+        this.records[index1] = this.records[index2];
+        this.records[index2] = record;
+    }
+    
+    // =====================================================================
+    // = STATIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Writes the provided number of largest records of a file to the output
+     * file (smallest first), then prints its blocks and writes the same
+     * statistics as the heapsort.
+     * @param f The file to read
+     * @param bridge The bridge to the file (already configured)
+     * @param k The number of records to keep
+     * @param output The file to write the records to
+     * @param stats The statistics to record the select and write in
+     */
+    static void select(File f, BufferBridge bridge, int k, File output, SortStatistics stats) throws FileNotFoundException, IOException {
+        stats.start(f, bridge.getPolicyName(), bridge);
+        stats.phase("select");
+        int totalRecords = (int) (f.length() / bridge.getFormat().getLength());
+        TopKSelector selector = new TopKSelector(bridge, Math.max(Math.min(k, totalRecords), 0));
+        selector.select(totalRecords);
+        stats.phase("write");
+        selector.write(output);
+        bridge.flush();
+        stats.count(0, 0, 0, selector.keys.length * (long) bridge.getFormat().getLength());
+        stats.end();
+        
+        // Print out the keys and values of each block
+        ExternalMaxHeap.printBlocks(output, bridge.getFormat());
+        
+        // Write statistics
+        stats.write();
+    }
+}
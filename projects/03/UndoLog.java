@@ -0,0 +1,141 @@
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Represents a log of the contents blocks had at the last checkpoint of a
+ * sort, so the file can be returned to that checkpoint after a crash. The
+ * first time a block is written after a checkpoint, its old contents are
+ * read from the file and appended to the log, and the log is forced to the
+ * disk before the block is overwritten. Later writes of the same block are
+ * not logged again until the next checkpoint. The log starts with the number
+ * of its checkpoint, so a log left from an earlier checkpoint is ignored.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public final class UndoLog {
+    
+    private File file; // The file holding the log
+    private RandomAccessFile log; // The log opened for appending
+    private int blockSize; // The size of each block in bytes
+    private BitSet saved; // The blocks logged since the checkpoint
+    private byte[] image; // The old contents of the block being logged
+    private int entries; // The blocks logged since the checkpoint
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new undo log kept in the provided file.
+     * @param file The file to hold the log
+     * @param blockSize The size of each block in bytes
+     */
+    public UndoLog(File file, int blockSize) throws IOException {
+        this.file = file;
+        this.log = new RandomAccessFile(file, "rw");
+        this.blockSize = blockSize;
+        this.saved = new BitSet();
+        this.image = new byte[blockSize];
+        this.entries = 0;
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Empties the log and starts logging the blocks changed after the
+     * checkpoint with the provided number.
+     * @param sequence The number of the checkpoint
+     */
+    public void start(long sequence) throws IOException {
+        this.log.setLength(0);
+        this.log.writeLong(sequence);
+        this.log.getChannel().force(true);
+        this.saved.clear();
+        this.entries = 0;
+    }
+    
+    /**
+     * Logs the contents the block at the provided position has in the file,
+     * unless it was already logged since the checkpoint. Returns once the log
+     * is on the disk, so the block may then be overwritten.
+     * @param position The byte position of the block
+     * @param data The file holding the block
+     */
+    public void save(int position, RandomAccessFile data) throws IOException {
+        int block = position / this.blockSize;
+        if (this.saved.get(block)) return;
+        this.saved.set(block);
+        
+        // Read the old contents (zeros past the end of the file)
+        data.seek(position);
+        int total = 0;
+        while (total < this.image.length) {
+            int read = data.read(this.image, total, this.image.length - total);
+            if (read < 0) break;
+            total += read;
+        }
+        Arrays.fill(this.image, total, this.image.length, (byte) 0);
+        
+        this.log.seek(this.log.length());
+        this.log.writeInt(position);
+        this.log.write(this.image);
+        this.log.getChannel().force(false);
+        ++this.entries;
+    }
+    
+    /**
+     * Returns the number of blocks logged since the checkpoint.
+     * @return The integer count
+     */
+    public int getEntries() {
+        return this.entries;
+    }
+    
+    /**
+     * Closes the log and deletes its file.
+     */
+    public void delete() throws IOException {
+        this.log.close();
+        this.file.delete();
+    }
+    
+    // =====================================================================
+    // = STATIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Writes the blocks of the log in the provided file back to the data
+     * file if the log belongs to the checkpoint with the provided number. An
+     * entry cut short by a crash is ignored, as its block was never written.
+     * @param file The file holding the log
+     * @param sequence The number of the checkpoint to return to
+     * @param data The file to write the blocks to
+     * @param blockSize The size of each block in bytes
+     * @return The number of blocks written back
+     */
+    public static int rollback(File file, long sequence, RandomAccessFile data, int blockSize) throws IOException {
+        if (!file.exists()) return 0;
+        RandomAccessFile log = new RandomAccessFile(file, "r");
+        try {
+            if (log.length() < 8 || log.readLong() != sequence) return 0;
+            byte[] image = new byte[blockSize];
+            int restored = 0;
+            while (log.getFilePointer() + 4 + blockSize <= log.length()) {
+                int position = log.readInt();
+                log.readFully(image);
+                data.seek(position);
+                data.write(image);
+                ++restored;
+            }
+            data.getChannel().force(true);
+            return restored;
+        } finally {
+            log.close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Represents a background writer that takes block writes off the thread using
+ * the buffer bridge. Writes are performed in the order they were scheduled on
+ * a single daemon thread using positional channel writes, so they never move
+ * the file pointer used by the bridge for reads. Until a write has reached the
+ * file its bytes are kept as pending so that a read of the same block sees
+ * the newest contents. Scheduled bytes are copied into arrays that are
+ * recycled once their write finishes, so callers may reuse their own arrays
+ * right away and a steady stream of writes allocates no new arrays.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public class WriteBehind {
+    
+    private ExecutorService writer;
+    private ConcurrentHashMap<Integer, byte[]> pending; // Position to bytes
+    private ArrayBlockingQueue<byte[]> spares; // Arrays of finished writes
+    private volatile IOException failure; // The first failed write (if any)
+    
+    // The most arrays kept for reuse once their writes finish
+    private static final int MAX_SPARES = 64;
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new background writer with its own daemon thread.
+     */
+    public WriteBehind() {
+        this.pending = new ConcurrentHashMap<Integer, byte[]>();
+        this.spares = new ArrayBlockingQueue<byte[]>(MAX_SPARES);
+        this.failure = null;
+        this.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "write-behind");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Schedules a copy of the bytes to be written at the provided position.
+     * @param channel The channel of the file to write to
+     * @param position The byte position to write at
+     * @param source The bytes to write
+     */
+    public void schedule(final FileChannel channel, final int position, byte[] source) {
+        // Copy into the array of a finished write if one of the size is free
+        byte[] spare = this.spares.poll();
+        if (spare == null || spare.length != source.length) {
+            spare = new byte[source.length];
+        }
+        System.arraycopy(source, 0, spare, 0, source.length);
+        
+        final byte[] bytes = spare;
+        this.pending.put(position, bytes);
+        this.writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ByteBuffer source = ByteBuffer.wrap(bytes);
+                    while (source.hasRemaining()) {
+                        channel.write(source, position + source.position());
+                    }
+                } catch (IOException ex) {
+                    if (failure == null) failure = ex;
+                }
+                
+                // Only forget the bytes if no newer write replaced them
+                pending.remove(position, bytes);
+                
+                // Recycle the array (dropped if enough are already spare)
+                spares.offer(bytes);
+            }
+        });
+    }
+    
+    /**
+     * Copies the bytes still waiting to be written at the provided position
+     * into the provided array. Returns false (copying nothing) if there are
+     * none.
+     * @param position The byte position of the block
+     * @param target The array to copy the bytes into
+     * @return Whether or not any bytes were pending
+     */
+    public boolean readPending(int position, byte[] target) {
+        byte[] bytes = this.pending.get(position);
+        if (bytes == null) return false;
+        System.arraycopy(bytes, 0, target, 0, bytes.length);
+        return true;
+    }
+    
+    /**
+     * Returns whether or not a write is still waiting at the provided position.
+     * @param position The byte position of the block
+     * @return Whether or not a write is pending
+     */
+    public boolean isPending(int position) {
+        return this.pending.containsKey(position);
+    }
+    
+    /**
+     * Waits until every scheduled write has reached the file. Reports the
+     * first write that failed since the last wait.
+     */
+    public void drain() throws IOException {
+        try {
+            this.writer.submit(new Runnable() {
+                @Override
+                public void run() { /* Marks the end of the queue */ }
+            }).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for writes", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        }
+        
+        // Report any failed write
+        IOException ex = this.failure;
+        this.failure = null;
+        if (ex != null) throw ex;
+    }
+}
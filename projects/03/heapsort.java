@@ -29,6 +29,22 @@ import java.io.IOException;
  */
 public class heapsort {
     
+    /**
+     * Name used to select the in-place heapsort.
+     */
+    public static final String HEAP = "heap";
+    
+    // The options accepted, by the kind of value they take (checkpoint is
+    // both, as its interval may be left out)
+    private static final String[] FLAG_OPTIONS = {
+        "bottomup", "verify", "resume", "checkpoint"
+    };
+    private static final String[] NUMERIC_OPTIONS = {
+        "writebehind", "readahead", "monitor", "arity", "topk", "partial",
+        "threads", "checkpoint"
+    };
+    private static final String[] TEXT_OPTIONS = { "engine", "output", "format", "json", "csv" };
+    
     /**
      * Completed: 11/02/2011
      * Compiler: Java 6 through Netbeans 7.0.1
@@ -36,22 +52,236 @@ public class heapsort {
      * 
      * The main executing method run when the program starts.
      * Format is java heapsort <data-file-name> <numb-buffers> <stat-file-name>
+     * [<policy>] [<options>], where the policy is one of LRU (default), CLOCK,
+     * 2Q, ARC or LFU, or MAPPED to memory map the file instead of using a
+     * buffer pool. The options are:
+     *   -writebehind=<n>  Write dirty buffers in the background once more
+     *                     than n buffers are dirty
+     *   -readahead=<n>    Read n blocks at a time in the background once
+     *                     misses walk the file sequentially
+     *   -monitor=<n>      Publish buffer statistics through JMX, print them
+     *                     every n seconds (if n > 0) and once at the end
+     *   -engine=<name>    Sort with heap (default), dary for a heap whose
+     *                     nodes have a block of children, merge for replacement
+     *                     selection runs and a k-way merge, or parallel to
+     *                     sort and merge runs on a fork/join pool, or
+     *                     counting for a counting sort by key
+     *   -arity=<n>        Children of each node of the dary engine
+     *   -bottomup         Sift down bottom-up when the heap or dary engine
+     *                     removes the maximum
+     *   -topk=<k>         Write the k largest records to the output file with
+     *                     one pass over the data file instead of sorting
+     *   -partial=<n>      Stop the heap or dary engine after the n largest
+     *                     records and write them to the output file
+     *   -output=<file>    Output file of -topk and -partial (default: the
+     *                     data file name followed by .out)
+     *   -format=<layout>  Record layout for the heap and dary engines, as
+     *                     key-offset:key-width:signed|unsigned:length
+     *                     (default 0:2:unsigned:4)
+     *   -threads=<n>      Threads of the parallel engine and of -verify
+     *                     (default: one for each processor)
+     *   -verify           Check that the sorted file is in order and holds
+     *                     the records of the input (by checksum)
+     *   -checkpoint[=<n>] Take a checkpoint of the heap or dary engine every
+     *                     n records sifted or removed (default 1048576)
+     *   -resume           Resume the sort from its last checkpoint
+     *   -json=<file>      Append the statistics and those of each phase of
+     *                     the sort to the file as a line of JSON
+     *   -csv=<file>       Append a row of CSV to the file for each phase of
+     *                     the sort and one for the total
      * @param args The commandline arguments passed to the program
      */
     public static void main(String[] args) throws FileNotFoundException, IOException {
+        Arguments arguments = new Arguments(args);
+        
         // Check for the proper number of arguments
-        if (args.length != 3) {
+        if (arguments.getPositionalCount() != 3 && arguments.getPositionalCount() != 4) {
             System.err.println("ERROR: Format should be\n" + 
                                 "'heapsort <data-file-name> <numb-buffers> " +
-                                "<stat-file-name>'");
+                                "<stat-file-name> [<policy>] [<options>]'");
+            return;
+        }
+        
+        // Check that the options exist and have proper values
+        String problem = arguments.check(FLAG_OPTIONS, NUMERIC_OPTIONS, TEXT_OPTIONS);
+        if (problem != null) {
+            System.err.println("ERROR: " + problem);
+            return;
+        }
+        
+        // Check that the eviction policy exists
+        String policyName = (arguments.getPositionalCount() == 4) ?
+                arguments.getPositional(3) : EvictionPolicy.LRU;
+        if (!EvictionPolicy.isSupported(policyName) &&
+            !policyName.equalsIgnoreCase(MappedBufferBridge.MAPPED)) {
+            System.err.println("ERROR: Unknown policy '" + policyName + "', " +
+                               "expected LRU, CLOCK, 2Q, ARC, LFU or MAPPED");
+            return;
+        }
+        
+        // Check that the sort engine exists
+        String engine = arguments.getOption("engine", HEAP);
+        if (!engine.equalsIgnoreCase(HEAP) &&
+            !engine.equalsIgnoreCase(ExternalMaxHeap.DARY) &&
+            !engine.equalsIgnoreCase(ExternalMergeSort.MERGE) &&
+            !engine.equalsIgnoreCase(ParallelMergeSort.PARALLEL) &&
+            !engine.equalsIgnoreCase(CountingSort.COUNTING)) {
+            System.err.println("ERROR: Unknown engine '" + engine + "', " +
+                               "expected heap, dary, merge, parallel or counting");
+            return;
+        }
+        
+        // Check the record layout (only the heap engines read other layouts)
+        RecordFormat format = RecordFormat.DEFAULT;
+        if (arguments.hasOption("format")) {
+            try {
+                format = RecordFormat.parse(arguments.getOption("format", ""));
+            } catch (IllegalArgumentException ex) {
+                System.err.println("ERROR: Invalid format '" +
+                                   arguments.getOption("format", "") + "': " + ex.getMessage());
+                return;
+            }
+        }
+        if (!format.isDefault() && !engine.equalsIgnoreCase(HEAP) &&
+            !engine.equalsIgnoreCase(ExternalMaxHeap.DARY)) {
+            System.err.println("ERROR: The " + engine + " engine only sorts the " +
+                               "default format " + RecordFormat.DEFAULT);
+            return;
+        }
+        
+        // Check the modes that keep only the largest records
+        boolean heapEngine = engine.equalsIgnoreCase(HEAP) ||
+                             engine.equalsIgnoreCase(ExternalMaxHeap.DARY);
+        if (arguments.hasOption("topk") && arguments.hasOption("partial")) {
+            System.err.println("ERROR: Only one of -topk and -partial may be given");
+            return;
+        }
+        if ((arguments.hasOption("topk") || arguments.hasOption("partial")) && !heapEngine) {
+            System.err.println("ERROR: -topk and -partial are not supported by the " +
+                               engine + " engine");
             return;
         }
+        File output = new File(arguments.getOption(
+                "output", arguments.getPositional(0) + ".out"));
+        
+        // Check the checkpoints (only the in-place heap engines take them)
+        boolean checkpointed = arguments.hasOption("checkpoint") || arguments.hasOption("resume");
+        if (checkpointed && (!heapEngine || arguments.hasOption("topk") ||
+                             policyName.equalsIgnoreCase(MappedBufferBridge.MAPPED))) {
+            System.err.println("ERROR: -checkpoint and -resume need the heap or dary " +
+                               "engine with a buffer pool (and no -topk)");
+            return;
+        }
+        
+        // The parallel engine reads and writes the files without a bridge
+        File file = new File(arguments.getPositional(0));
+        int maxBuffers = Integer.parseInt(arguments.getPositional(1));
+        File stat = new File(arguments.getPositional(2));
+        SortStatistics stats = new SortStatistics(stat, engine.toLowerCase());
+        if (arguments.hasOption("json")) {
+            stats.setJsonFile(new File(arguments.getOption("json", "")));
+        }
+        if (arguments.hasOption("csv")) {
+            stats.setCsvFile(new File(arguments.getOption("csv", "")));
+        }
+        int threads = arguments.getIntOption(
+                "threads", Runtime.getRuntime().availableProcessors());
+        
+        // Return the file to its last checkpoint before anything reads it
+        int arity = engine.equalsIgnoreCase(HEAP) ? 2 :
+                arguments.getIntOption("arity", ExternalMaxHeap.blockArity(format));
+        SortCheckpoint checkpoint = null;
+        if (checkpointed) {
+            checkpoint = new SortCheckpoint(file, format, arguments.getIntOption(
+                    "checkpoint", SortCheckpoint.DEFAULT_INTERVAL));
+            if (checkpoint.exists() && !arguments.hasOption("resume")) {
+                System.err.println("ERROR: " + file.getName() + " has an unfinished " +
+                                   "checkpointed sort, use -resume to continue it");
+                return;
+            }
+            if (checkpoint.exists()) {
+                try {
+                    checkpoint.resume();
+                } catch (IOException ex) {
+                    System.err.println("ERROR: Unable to resume: " + ex.getMessage());
+                    return;
+                }
+                if (checkpoint.getArity() != Math.max(arity, 2)) {
+                    System.err.println("ERROR: Unable to resume: The checkpoint was " +
+                                       "taken with -arity=" + checkpoint.getArity());
+                    return;
+                }
+            }
+        }
+        
+        // Read the input before it is sorted in place so the output can be
+        // checked against it (-topk and -partial only check the order)
+        if (arguments.hasOption("verify")) {
+            SortVerifier verifier = new SortVerifier(format, threads);
+            if (arguments.hasOption("topk") || arguments.hasOption("partial")) {
+                stats.setVerifier(verifier, output);
+            } else {
+                int records = (int) (file.length() / format.getLength());
+                verifier.readInput(file, (checkpoint != null) ? checkpoint.getRecords(records) : records);
+                stats.setVerifier(verifier, file);
+            }
+        }
+        if (engine.equalsIgnoreCase(ParallelMergeSort.PARALLEL)) {
+            ParallelMergeSort.sort(file, maxBuffers, Math.max(threads, 1), stats);
+            return;
+        }
+        
+        // Create the bridge to the file and apply the options
+        BufferBridge bridge = BufferBridge.create(file, maxBuffers, policyName, format);
+        applyOptions(bridge, arguments);
+        BridgeMonitor monitor = null;
+        if (arguments.hasOption("monitor")) {
+            monitor = bridge.enableMonitor();
+            monitor.startDumps(arguments.getIntOption("monitor", 0), System.err);
+        }
         
         // Sort the file
-        ExternalMaxHeap.sort(
-                new File(args[0]), 
-                Integer.parseInt(args[1]), 
-                new File(args[2])
-        );
+        if (arguments.hasOption("topk")) {
+            TopKSelector.select(file, bridge, arguments.getIntOption("topk", 0), output, stats);
+        } else if (heapEngine) {
+            boolean bottomUp = arguments.hasOption("bottomup");
+            if (arguments.hasOption("partial")) {
+                ExternalMaxHeap.partialSort(file, bridge, stats, arity, bottomUp,
+                                            arguments.getIntOption("partial", 0), output,
+                                            checkpoint);
+            } else {
+                ExternalMaxHeap.sort(file, bridge, stats, arity, bottomUp, checkpoint);
+            }
+        } else {
+            File runFile = ExternalMergeSort.createRunFile(file);
+            BufferBridge runBridge = BufferBridge.create(runFile, maxBuffers, policyName);
+            applyOptions(runBridge, arguments);
+            if (engine.equalsIgnoreCase(CountingSort.COUNTING)) {
+                CountingSort.sort(file, bridge, runBridge, maxBuffers, stats);
+            } else {
+                ExternalMergeSort.sort(file, bridge, runBridge, maxBuffers, stats);
+            }
+            runFile.delete();
+        }
+        
+        // Print the final statistics of the monitor
+        if (monitor != null) {
+            monitor.stop();
+            System.err.print(monitor.dump());
+        }
+    }
+    
+    /**
+     * Applies the write-behind and read-ahead options to the bridge.
+     * @param bridge The bridge to configure
+     * @param arguments The commandline arguments
+     */
+    private static void applyOptions(BufferBridge bridge, Arguments arguments) {
+        if (arguments.hasOption("writebehind")) {
+            bridge.enableWriteBehind(arguments.getIntOption("writebehind", 0));
+        }
+        if (arguments.hasOption("readahead")) {
+            bridge.enableReadAhead(arguments.getIntOption("readahead", 0));
+        }
     }
 }
@@ -105,6 +105,17 @@ class BST<Key extends Comparable<? super Key>, E extends SerialNode>
       return elements;
   }
 
+  /**
+   * Returns every node of the tree in order, so the handles they hold can be
+   * looked up (and replaced once their records are moved in memory).
+   * @return The list of nodes
+   */
+  public List<BSTNode<Key,E>> nodes() {
+      LinkedList<BSTNode<Key,E>> nodes = new LinkedList<BSTNode<Key,E>>();
+      nodeshelp(root, nodes);
+      return nodes;
+  }
+
   /** @return The number of records in the dictionary. */
     @Override
   public int size() { return nodecount; }
@@ -141,9 +152,7 @@ private void findhelpall(BSTNode<Key,E> rt, Key k, List<E> elements) throws File
 private BSTNode<Key,E> inserthelp(BSTNode<Key,E> rt,
                                   int k, int e) throws FileNotFoundException, IOException {
   if (rt == null) return new BSTNode<Key,E>(memPool, k, e);
-  byte[] temp = new byte[256];
-  int tempSize = memPool.get(temp, k, 256);
-  Comparable oKey = new String(temp, 0, tempSize);
+  Comparable oKey = new String(memPool.get(k));
   if (((Comparable) rt.key()).compareTo(oKey) > 0)
     rt.setLeft(inserthelp(rt.left(), k, e));
   else
@@ -178,6 +187,17 @@ private BSTNode<Key,E> deletemin(BSTNode<Key,E> rt) {
   if (rt.left() == null) return rt.right();
   rt.setLeft(deletemin(rt.left()));
   return rt;
+}
+/**
+ * Adds the nodes of the subtree to the list in order.
+ * @param rt The root node of the subtree
+ * @param nodes The list to add the nodes to
+ */
+private void nodeshelp(BSTNode<Key,E> rt, List<BSTNode<Key,E>> nodes) {
+    if (rt == null) return;
+    nodeshelp(rt.left(), nodes);
+    nodes.add(rt);
+    nodeshelp(rt.right(), nodes);
 }
   private void printhelp(BSTNode<Key,E> rt) {
     if (rt == null) return;
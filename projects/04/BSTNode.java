@@ -1,7 +1,6 @@
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -44,9 +43,7 @@ class BSTNode<Key, E extends SerialNode> implements BinNode<E> {
 
   /** Get and set the key value */
   public Key key() throws FileNotFoundException, IOException { 
-      byte[] temp = new byte[256];
-      int tempSize = memPool.get(temp, key, 256);
-      String k = new String(Arrays.copyOf(temp, tempSize));
+      String k = new String(memPool.get(key));
       return (Key) k; 
   }
   public int keyPtr() {
@@ -29,6 +29,17 @@ import java.io.IOException;
  */
 public class Bindisk {
     
+    // Stripes of the buffer pool for each query thread
+    private static final int STRIPES_PER_THREAD = 4;
+    
+    // The options accepted, by the kind of value they take
+    private static final String[] FLAG_OPTIONS = { "direct" };
+    private static final String[] NUMERIC_OPTIONS = {
+        "writebehind", "readahead", "threads", "monitor", "compact", "grow",
+        "growpercent"
+    };
+    private static final String[] TEXT_OPTIONS = {};
+    
     /**
      * Completed: 12/10/2011 (used 4 late days)
      * Compiler: Java 6 through Netbeans 7.0.1
@@ -36,6 +47,23 @@ public class Bindisk {
      * 
      * The main executing method run when the program starts.
      * Format is java bindisk <input-file> <buffer-pool> <block-size>
+     * [<policy> [<stat-file>]] [<options>], where the policy is one of LRU
+     * (default), CLOCK, 2Q, ARC or LFU (or MAPPED to memory map the file
+     * instead of using a buffer pool) and the buffer statistics are appended
+     * to the stat file. The options are:
+     *   -writebehind=<n>  Write dirty buffers in the background once more
+     *                     than n buffers are dirty
+     *   -readahead=<n>    Read n blocks at a time in the background once
+     *                     misses walk the file sequentially
+     *   -threads=<n>      Run consecutive FIND and SEARCH commands on n
+     *                     threads sharing a striped buffer pool
+     *   -direct           Hold the buffers in direct (off-heap) memory
+     *   -monitor=<n>      Publish buffer statistics through JMX, print them
+     *                     every n seconds (if n > 0) and once at the end
+     *   -compact=<n>      Move up to n records into the holes left in the
+     *                     pool after each command, shrinking the file
+     *   -grow=<n>         Grow the pool by at least n bytes at a time
+     *   -growpercent=<p>  Grow the pool by at least p percent of its size
      * @param args The commandline arguments passed to the program
      */
     public static void main(String[] args) throws FileNotFoundException, IOException {
@@ -44,11 +72,30 @@ public class Bindisk {
         PRQuadTree<CityNode> quadTree = null;
         BST<String, CityNode> bsTree = null;
         BufferBridge bBridge = null;
+        Arguments arguments = new Arguments(args);
         
         // Check for the proper number of arguments
-        if (args.length != 3) {
+        if (arguments.getPositionalCount() < 3 || arguments.getPositionalCount() > 5) {
             System.err.println("ERROR: Format should be\n'bindisk " +
-                               "<input_file> <buffer_pool> <block_size>'");
+                               "<input_file> <buffer_pool> <block_size> " +
+                               "[<policy> [<stat_file>]] [<options>]'");
+            return;
+        }
+        
+        // Check that the options exist and have proper values
+        String problem = arguments.check(FLAG_OPTIONS, NUMERIC_OPTIONS, TEXT_OPTIONS);
+        if (problem != null) {
+            System.err.println("ERROR: " + problem);
+            return;
+        }
+        
+        // Check that the eviction policy exists
+        String policyName = (arguments.getPositionalCount() >= 4) ?
+                arguments.getPositional(3) : EvictionPolicy.LRU;
+        if (!EvictionPolicy.isSupported(policyName) &&
+            !policyName.equalsIgnoreCase(MappedBufferBridge.MAPPED)) {
+            System.err.println("ERROR: Unknown policy '" + policyName + "', " +
+                               "expected LRU, CLOCK, 2Q, ARC, LFU or MAPPED");
             return;
         }
         
@@ -57,11 +104,42 @@ public class Bindisk {
         if (p4bin.exists()) p4bin.delete();
         
         // Parse the provided arguments
-        String nameOfFile = args[0];
-        bBridge = new BufferBridge(p4bin, Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        String nameOfFile = arguments.getPositional(0);
+        int threads = arguments.getIntOption("threads", 1);
+        boolean direct = arguments.hasOption("direct");
+        if (threads > 1 && !policyName.equalsIgnoreCase(MappedBufferBridge.MAPPED)) {
+            bBridge = new ConcurrentBufferBridge(p4bin, 
+                                      Integer.parseInt(arguments.getPositional(1)), 
+                                      Integer.parseInt(arguments.getPositional(2)), 
+                                      policyName,
+                                      STRIPES_PER_THREAD * threads,
+                                      direct);
+        } else {
+            threads = 1;
+            bBridge = BufferBridge.create(p4bin, 
+                                      Integer.parseInt(arguments.getPositional(1)), 
+                                      Integer.parseInt(arguments.getPositional(2)), 
+                                      policyName,
+                                      direct);
+        }
+        if (arguments.hasOption("writebehind")) {
+            bBridge.enableWriteBehind(arguments.getIntOption("writebehind", 0));
+        }
+        if (arguments.hasOption("readahead")) {
+            bBridge.enableReadAhead(arguments.getIntOption("readahead", 0));
+        }
+        BridgeMonitor monitor = null;
+        if (arguments.hasOption("monitor")) {
+            monitor = bBridge.enableMonitor();
+            monitor.startDumps(arguments.getIntOption("monitor", 0), System.err);
+        }
         
         // Create a new memory pool with the specified size
         memPool = new MemPool(bBridge, 0);
+        if (arguments.hasOption("grow") || arguments.hasOption("growpercent")) {
+            memPool.setGrowth(arguments.getIntOption("grow", 0),
+                              arguments.getIntOption("growpercent", 0));
+        }
         
         // Create the quad tree to be used (boundaries are 0 to (2^14 = 16384) - 1)
         quadTree = new PRQuadTree<CityNode>(memPool, 0.0, 0.0, 16383.0, 16383.0);
@@ -69,7 +147,29 @@ public class Bindisk {
         // Create the binary search tree
         bsTree = new BST<String, CityNode>(memPool);
         
-        executer = new Executer(memPool, quadTree, bsTree);
+        executer = new Executer(memPool, quadTree, bsTree, threads);
+        if (arguments.hasOption("compact")) {
+            executer.enableCompaction(arguments.getIntOption("compact", 0));
+        }
         executer.executeCommands(nameOfFile);
+        
+        // Print the final statistics of the monitor
+        if (monitor != null) {
+            monitor.stop();
+            System.err.print(monitor.dump());
+        }
+        
+        // Write statistics (if requested)
+        if (arguments.getPositionalCount() == 5) {
+            java.io.FileWriter fw = new java.io.FileWriter(
+                    new File(arguments.getPositional(4)), true);
+            fw.append("File: " + nameOfFile + "\n");
+            fw.append("Policy: " + bBridge.getPolicyName() + "\n");
+            fw.append("Cache Hits: " + bBridge.getCacheHits() + "\n");
+            fw.append("Cache Misses: " + bBridge.getCacheMisses() + "\n");
+            fw.append("Disk Reads: " + bBridge.getDiskReads() + "\n");
+            fw.append("Disk Writes: " + bBridge.getDiskWrites() + "\n\n");
+            fw.close();
+        }
     }
 }
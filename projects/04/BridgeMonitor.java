@@ -0,0 +1,415 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Represents the live statistics of a buffer bridge: how often each block is
+ * accessed (a heat map), how long block reads and writes take (power of two
+ * latency histograms) and why blocks leave the buffer pool. The totals kept by
+ * the bridge itself are reported alongside. The monitor can be published as
+ * an MBean and can print a summary at a fixed rate.
+ * 
+ * Every count is atomic, so the bridge (or several threads using it) may
+ * record while the summary is read from another thread. Accesses are counted
+ * under a shared lock that growing the heat map takes exclusively, so none
+ * are lost while the counts are copied.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public class BridgeMonitor implements BridgeMonitorMBean {
+    
+    // Reasons a block leaves the pool
+    public static final int EVICT_MISS = 0; // Replaced to load a missed block
+    public static final int EVICT_FLUSH = 1; // Dropped when the pool is flushed
+    public static final int EVICT_WRITE_BEHIND = 2; // Written ahead of removal
+    private static final String[] REASON_NAMES = { "Miss", "Flush", "WriteBehind" };
+    
+    // The number of latency buckets (the last holds anything slower)
+    private static final int LATENCY_BUCKETS = 40;
+    
+    // The number of blocks listed as the hottest
+    private static final int HOTTEST_BLOCKS = 10;
+    
+    private BufferBridge bridge; // The bridge whose totals are reported
+    private volatile AtomicIntegerArray heat; // Accesses of each block
+    private ReentrantReadWriteLock heatLock; // Shared to count, exclusive to grow
+    private AtomicLongArray evictions; // Blocks given up for each reason
+    private AtomicLongArray dirtyEvictions; // Those that had to be written
+    private AtomicLongArray readLatency; // Reads in each latency bucket
+    private AtomicLongArray writeLatency; // Writes in each latency bucket
+    private ObjectName name; // The name it is published under (or null)
+    private ScheduledExecutorService dumper; // Prints summaries (or null)
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new, empty monitor of the provided bridge.
+     * @param bridge The bridge being monitored
+     */
+    public BridgeMonitor(BufferBridge bridge) {
+        this.bridge = bridge;
+        this.heatLock = new ReentrantReadWriteLock();
+        this.name = null;
+        this.dumper = null;
+        this.reset();
+    }
+    
+    // =====================================================================
+    // = RECORDING METHODS                                                 =
+    // =====================================================================
+    
+    /**
+     * Records an access of the block (a hit or a miss).
+     * @param block The block number accessed
+     */
+    public void recordAccess(int block) {
+        while (true) {
+            this.heatLock.readLock().lock();
+            try {
+                AtomicIntegerArray counts = this.heat;
+                if (block < counts.length()) {
+                    counts.incrementAndGet(block);
+                    return;
+                }
+            } finally {
+                this.heatLock.readLock().unlock();
+            }
+            this.growHeat(block);
+        }
+    }
+    
+    /**
+     * Records that a block left the pool, or for EVICT_WRITE_BEHIND that its
+     * changes were written out ahead of it leaving (it then leaves clean).
+     * @param reason The reason (EVICT_MISS, EVICT_FLUSH or EVICT_WRITE_BEHIND)
+     * @param dirty Whether or not the block had to be written
+     */
+    public void recordEviction(int reason, boolean dirty) {
+        this.evictions.incrementAndGet(reason);
+        if (dirty) this.dirtyEvictions.incrementAndGet(reason);
+    }
+    
+    /**
+     * Records how long a block read took.
+     * @param nanos The time taken in nanoseconds
+     */
+    public void recordRead(long nanos) {
+        this.readLatency.incrementAndGet(bucketOf(nanos));
+    }
+    
+    /**
+     * Records how long a block write took (for a write behind, the time
+     * taken to hand it to the background writer).
+     * @param nanos The time taken in nanoseconds
+     */
+    public void recordWrite(long nanos) {
+        this.writeLatency.incrementAndGet(bucketOf(nanos));
+    }
+    
+    // =====================================================================
+    // = PUBLISHING METHODS                                                =
+    // =====================================================================
+    
+    /**
+     * Publishes the monitor through the platform MBean server under the type
+     * BufferBridge and the provided name. Failures are reported to the error
+     * stream, as monitoring should never stop the program.
+     * @param bridgeName The name of the monitored bridge (e.g. its file)
+     */
+    public void register(String bridgeName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(
+                    "cs3114:type=BufferBridge,name=" + ObjectName.quote(bridgeName));
+            server.registerMBean(this, objectName);
+            this.name = objectName;
+        } catch (JMException ex) {
+            System.err.println("ERROR: Unable to publish monitor for '" +
+                               bridgeName + "': " + ex.getMessage());
+        }
+    }
+    
+    /**
+     * Prints the summary through the provided stream at a fixed rate on a
+     * daemon thread until the monitor is stopped.
+     * @param seconds The number of seconds between summaries
+     * @param out The stream to print through
+     */
+    public void startDumps(int seconds, final PrintStream out) {
+        if (seconds <= 0 || this.dumper != null) return;
+        this.dumper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "monitor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.dumper.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                out.print(dump());
+            }
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Stops printing summaries and withdraws the monitor from the MBean
+     * server.
+     */
+    public void stop() {
+        if (this.dumper != null) {
+            this.dumper.shutdownNow();
+            this.dumper = null;
+        }
+        if (this.name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.name);
+            } catch (JMException ex) {
+                // Already withdrawn
+            }
+            this.name = null;
+        }
+    }
+    
+    // =====================================================================
+    // = MBEAN METHODS                                                     =
+    // =====================================================================
+    
+    @Override
+    public int getCacheHits() {
+        return this.bridge.getCacheHits();
+    }
+    
+    @Override
+    public int getCacheMisses() {
+        return this.bridge.getCacheMisses();
+    }
+    
+    @Override
+    public double getHitRatio() {
+        double total = (double) this.getCacheHits() + this.getCacheMisses();
+        return (total == 0) ? 0 : this.getCacheHits() / total;
+    }
+    
+    @Override
+    public int getDiskReads() {
+        return this.bridge.getDiskReads();
+    }
+    
+    @Override
+    public int getDiskWrites() {
+        return this.bridge.getDiskWrites();
+    }
+    
+    @Override
+    public long getMissEvictions() {
+        return this.evictions.get(EVICT_MISS);
+    }
+    
+    @Override
+    public long getFlushEvictions() {
+        return this.evictions.get(EVICT_FLUSH);
+    }
+    
+    @Override
+    public long getWriteBehindEvictions() {
+        return this.evictions.get(EVICT_WRITE_BEHIND);
+    }
+    
+    @Override
+    public long getDirtyEvictions() {
+        return this.dirtyEvictions.get(EVICT_MISS) + this.dirtyEvictions.get(EVICT_FLUSH) +
+               this.dirtyEvictions.get(EVICT_WRITE_BEHIND);
+    }
+    
+    @Override
+    public double getDirtyEvictionRatio() {
+        long total = this.getMissEvictions() + this.getFlushEvictions() +
+                     this.getWriteBehindEvictions();
+        return (total == 0) ? 0 : (double) this.getDirtyEvictions() / total;
+    }
+    
+    @Override
+    public long[] getReadLatencyHistogram() {
+        return toArray(this.readLatency);
+    }
+    
+    @Override
+    public long[] getWriteLatencyHistogram() {
+        return toArray(this.writeLatency);
+    }
+    
+    @Override
+    public int[] getBlockAccessCounts() {
+        AtomicIntegerArray counts = this.heat;
+        int[] blocks = new int[counts.length()];
+        for (int i = 0; i < blocks.length; ++i) {
+            blocks[i] = counts.get(i);
+        }
+        
+        // Leave off the blocks past the last one accessed
+        int end = blocks.length;
+        while (end > 0 && blocks[end - 1] == 0) --end;
+        return Arrays.copyOf(blocks, end);
+    }
+    
+    @Override
+    public String[] getHottestBlocks() {
+        int[] counts = this.getBlockAccessCounts();
+        
+        // Keep the hottest blocks in descending order of accesses
+        int[] hottest = new int[Math.min(HOTTEST_BLOCKS, counts.length)];
+        int found = 0;
+        for (int block = 0; block < counts.length; ++block) {
+            if (counts[block] == 0) continue;
+            if (found == hottest.length) {
+                // Drop the coolest block kept if this one is hotter
+                if (counts[hottest[found - 1]] >= counts[block]) continue;
+                --found;
+            }
+            int i = found++;
+            while (i > 0 && counts[hottest[i - 1]] < counts[block]) {
+                hottest[i] = hottest[i - 1];
+                --i;
+            }
+            hottest[i] = block;
+        }
+        
+        String[] descriptions = new String[found];
+        for (int i = 0; i < found; ++i) {
+            descriptions[i] = hottest[i] + "=" + counts[hottest[i]];
+        }
+        return descriptions;
+    }
+    
+    @Override
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Monitor: ").append(this.bridge.getFile().getName());
+        sb.append(" (").append(this.bridge.getPolicyName()).append(")\n");
+        sb.append("Cache Hits: ").append(this.getCacheHits());
+        sb.append(", Cache Misses: ").append(this.getCacheMisses());
+        sb.append(String.format(", Hit Ratio: %.3f\n", this.getHitRatio()));
+        sb.append("Disk Reads: ").append(this.getDiskReads());
+        sb.append(", Disk Writes: ").append(this.getDiskWrites()).append('\n');
+        sb.append("Evictions:");
+        for (int reason = 0; reason < REASON_NAMES.length; ++reason) {
+            sb.append(' ').append(REASON_NAMES[reason]).append('=');
+            sb.append(this.evictions.get(reason));
+            sb.append(" (").append(this.dirtyEvictions.get(reason)).append(" dirty)");
+        }
+        sb.append(String.format(", Dirty Ratio: %.3f\n", this.getDirtyEvictionRatio()));
+        sb.append("Read Latency:").append(describe(this.readLatency)).append('\n');
+        sb.append("Write Latency:").append(describe(this.writeLatency)).append('\n');
+        sb.append("Hottest Blocks:");
+        for (String block : this.getHottestBlocks()) {
+            sb.append(' ').append(block);
+        }
+        sb.append("\n\n");
+        return sb.toString();
+    }
+    
+    @Override
+    public void reset() {
+        this.heatLock.writeLock().lock();
+        try {
+            this.heat = new AtomicIntegerArray(16);
+        } finally {
+            this.heatLock.writeLock().unlock();
+        }
+        this.evictions = new AtomicLongArray(REASON_NAMES.length);
+        this.dirtyEvictions = new AtomicLongArray(REASON_NAMES.length);
+        this.readLatency = new AtomicLongArray(LATENCY_BUCKETS);
+        this.writeLatency = new AtomicLongArray(LATENCY_BUCKETS);
+    }
+    
+    // =====================================================================
+    // = PRIVATE METHODS                                                   =
+    // =====================================================================
+    
+    /**
+     * Replaces the heat map with one (at least twice as large) that holds the
+     * provided block, keeping the counts so far. No access is counted while
+     * the counts are copied.
+     * @param block The block number that must fit
+     */
+    private void growHeat(int block) {
+        this.heatLock.writeLock().lock();
+        try {
+            AtomicIntegerArray counts = this.heat;
+            if (block < counts.length()) return;
+            AtomicIntegerArray grown = new AtomicIntegerArray(
+                    Math.max(2 * counts.length(), block + 1));
+            for (int i = 0; i < counts.length(); ++i) {
+                grown.set(i, counts.get(i));
+            }
+            this.heat = grown;
+        } finally {
+            this.heatLock.writeLock().unlock();
+        }
+    }
+    
+    // =====================================================================
+    // = STATIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Returns the latency bucket of the time: the power of two it is below.
+     * @param nanos The time in nanoseconds
+     * @return The bucket index
+     */
+    private static int bucketOf(long nanos) {
+        int bucket = 64 - Long.numberOfLeadingZeros(Math.max(nanos, 0));
+        return Math.min(bucket, LATENCY_BUCKETS - 1);
+    }
+    
+    /**
+     * Copies the counts into a plain array.
+     * @param counts The atomic counts
+     * @return The array of counts
+     */
+    private static long[] toArray(AtomicLongArray counts) {
+        long[] array = new long[counts.length()];
+        for (int i = 0; i < array.length; ++i) {
+            array[i] = counts.get(i);
+        }
+        return array;
+    }
+    
+    /**
+     * Describes the non-empty buckets of a latency histogram as "<limit:
+     * count" pairs.
+     * @param counts The counts of each bucket
+     * @return The String description
+     */
+    private static String describe(AtomicLongArray counts) {
+        StringBuilder sb = new StringBuilder();
+        for (int bucket = 0; bucket < counts.length(); ++bucket) {
+            long count = counts.get(bucket);
+            if (count == 0) continue;
+            long limit = 1L << bucket;
+            sb.append(" <");
+            if (limit < 1000L) {
+                sb.append(limit).append("ns");
+            } else if (limit < 1000000L) {
+                sb.append(limit / 1000L).append("us");
+            } else {
+                sb.append(limit / 1000000L).append("ms");
+            }
+            sb.append('=').append(count);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Represents the management interface of a buffer bridge monitor, published
+ * through JMX so the buffer pool can be watched (and tuned) during long runs.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public interface BridgeMonitorMBean {
+    
+    /**
+     * Returns the number of accesses found in the buffer pool.
+     * @return The integer count
+     */
+    int getCacheHits();
+    
+    /**
+     * Returns the number of accesses not found in the buffer pool.
+     * @return The integer count
+     */
+    int getCacheMisses();
+    
+    /**
+     * Returns the fraction of accesses found in the buffer pool.
+     * @return The ratio (0 if nothing has been accessed)
+     */
+    double getHitRatio();
+    
+    /**
+     * Returns the number of blocks read from the disk.
+     * @return The integer count
+     */
+    int getDiskReads();
+    
+    /**
+     * Returns the number of blocks written to the disk.
+     * @return The integer count
+     */
+    int getDiskWrites();
+    
+    /**
+     * Returns the number of blocks given up to load a missed block.
+     * @return The count
+     */
+    long getMissEvictions();
+    
+    /**
+     * Returns the number of blocks given up when the pool was flushed.
+     * @return The count
+     */
+    long getFlushEvictions();
+    
+    /**
+     * Returns the number of dirty blocks written out by write-behind ahead of
+     * being given up (they are given up clean later).
+     * @return The count
+     */
+    long getWriteBehindEvictions();
+    
+    /**
+     * Returns the number of blocks given up that had to be written.
+     * @return The count
+     */
+    long getDirtyEvictions();
+    
+    /**
+     * Returns the fraction of blocks given up that had to be written.
+     * @return The ratio (0 if nothing has been given up)
+     */
+    double getDirtyEvictionRatio();
+    
+    /**
+     * Returns the number of block reads in each latency bucket; bucket i
+     * counts reads that took less than 2^i nanoseconds (and at least half
+     * of that).
+     * @return The counts of each bucket
+     */
+    long[] getReadLatencyHistogram();
+    
+    /**
+     * Returns the number of block writes in each latency bucket; bucket i
+     * counts writes that took less than 2^i nanoseconds (and at least half
+     * of that).
+     * @return The counts of each bucket
+     */
+    long[] getWriteLatencyHistogram();
+    
+    /**
+     * Returns the number of accesses of each block, indexed by block number.
+     * @return The counts of each block
+     */
+    int[] getBlockAccessCounts();
+    
+    /**
+     * Returns the most accessed blocks as "block=accesses", hottest first.
+     * @return The String descriptions
+     */
+    String[] getHottestBlocks();
+    
+    /**
+     * Returns a readable summary of every statistic.
+     * @return The String summary
+     */
+    String dump();
+    
+    /**
+     * Forgets the block accesses, evictions and latencies recorded so far.
+     */
+    void reset();
+}
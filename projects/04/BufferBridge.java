@@ -3,6 +3,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.List;
 
 /**
@@ -14,19 +16,38 @@ import java.util.List;
  */
 public class BufferBridge {
     
+    // Size headers (a first byte of LONG_LENGTH is followed by a four-byte size)
+    private static final int LONG_LENGTH = 0xFF;
+    private static final int LONG_HEADER_SIZE = 5;
+    
     // Block size information
-    private int blockSize;
+    protected int blockSize;
     
     // File and buffer references
-    private File file;
-    private RandomAccessFile rfAccess;
+    protected File file;
+    protected RandomAccessFile rfAccess;
     public BufferPool pool;
     
+    // Background writing of dirty buffers (null if writes are synchronous)
+    private WriteBehind writeBehind;
+    private int highWaterMark; // Dirty buffers allowed before cleaning
+    
+    // Background reading of blocks ahead of their use (null if disabled)
+    private ReadAhead readAhead;
+    private int readAheadBlocks; // Blocks read together ahead of a run
+    private int lastMissBlock; // Block of the most recent miss
+    private int direction; // 1 or -1 while misses are sequential, else 0
+    private int runLength; // Sequential misses in the current run
+    private int nextAhead; // Next block to read ahead of the run
+    
+    // Live statistics of blocks and I/O (null unless monitored)
+    protected BridgeMonitor monitor;
+    
     // Statistical information
-    private int cacheHits;
-    private int cacheMisses;
-    private int diskReads;
-    private int diskWrites;
+    protected int cacheHits;
+    protected int cacheMisses;
+    protected int diskReads;
+    protected int diskWrites;
     
     // =====================================================================
     // = CONSTRUCTORS                                                      =
@@ -37,13 +58,55 @@ public class BufferBridge {
      * specified file.
      * @param file The file to access
      * @param maxBuffers The total number of buffers supported
+     * @param blockSize The size of each block in bytes
      */
     public BufferBridge(File file, int maxBuffers, int blockSize) throws FileNotFoundException {
+        this(file, maxBuffers, blockSize, EvictionPolicy.LRU);
+    }
+    
+    /**
+     * Creates a new instance of the buffer bridge class that targets the
+     * specified file and uses the named eviction policy for its pool.
+     * @param file The file to access
+     * @param maxBuffers The total number of buffers supported
+     * @param blockSize The size of each block in bytes
+     * @param policyName The name of the eviction policy of the buffer pool
+     */
+    public BufferBridge(File file, int maxBuffers, int blockSize, String policyName) throws FileNotFoundException {
+        this(file, maxBuffers, blockSize, policyName, false);
+    }
+    
+    /**
+     * Creates a new instance of the buffer bridge class that targets the
+     * specified file and uses the named eviction policy for its pool, whose
+     * buffers are optionally held in direct (off-heap) memory.
+     * @param file The file to access
+     * @param maxBuffers The total number of buffers supported
+     * @param blockSize The size of each block in bytes
+     * @param policyName The name of the eviction policy of the buffer pool
+     * @param directFrames Whether or not to hold the buffers in direct memory
+     */
+    public BufferBridge(File file, int maxBuffers, int blockSize, String policyName, boolean directFrames) throws FileNotFoundException {
         this.file = file;
         this.rfAccess = new RandomAccessFile(file, "rw");
-        this.pool = new BufferPool(maxBuffers, blockSize);
+        this.pool = new BufferPool(maxBuffers, blockSize, policyName, directFrames);
         this.blockSize = blockSize;
         
+        // Write synchronously until write-behind is enabled
+        this.writeBehind = null;
+        this.highWaterMark = 0;
+        
+        // Read a block at a time until read-ahead is enabled
+        this.readAhead = null;
+        this.readAheadBlocks = 0;
+        this.lastMissBlock = -1;
+        this.direction = 0;
+        this.runLength = 0;
+        this.nextAhead = -1;
+        
+        // Keep only the totals until monitoring is enabled
+        this.monitor = null;
+        
         // Initialize statistics
         this.cacheHits = 0;
         this.cacheMisses = 0;
@@ -72,50 +135,87 @@ public class BufferBridge {
         // Get the buffer with the byte
         BufferPool.Buffer buffer = this.getBuffer(index);
         int startPosition = (index) - buffer.getBytePosition();
-        return buffer.getBytes()[startPosition];
+        return buffer.getByte(startPosition);
     }
     
     /**
      * Retrieves the bytes starting at the provided index up the the end of the
-     * size indicated by the first byte.
+     * size indicated by the size header.
      * @param index The index of the start of the array to return
-     * @return The size of the byte array returned (not including the size byte)
+     * @return The size of the byte array returned (not including the header)
      */
     public int get(int index, byte[] byteArray) throws FileNotFoundException, IOException {
-        // Get the buffer
-        BufferPool.Buffer buffer = this.getBuffer(index);
-        
-        // Get the position relative to the buffer's byte array
-        int startPosition = (index) - buffer.getBytePosition();
-        int currentPosition = 0;
-        
         // Get the total size of bytes to retrieve
-        int totalBytes = ((int) buffer.getBytes()[startPosition]) & 0xFF;
+        int totalBytes = this.getLength(index);
         
         // Exit if the byte array is null
         if (byteArray == null) return totalBytes;
         
-        // Check if need to get a new buffer
-        if (startPosition + currentPosition >= buffer.getSize()) {
-            buffer = this.getBuffer(index + currentPosition);
-            startPosition = 0;
-            currentPosition = 0;
+        // Retrieve the size header and the record
+        this.read(index, byteArray, 0, getHeaderSize(totalBytes) + totalBytes);
+        
+        return totalBytes;
+    }
+    
+    /**
+     * Reads the size header at the provided index: a single byte for sizes up
+     * to 254, or LONG_LENGTH followed by the size as four bytes.
+     * @param index The index of the header
+     * @return The size of the record following the header
+     */
+    public int getLength(int index) throws IOException {
+        int length = this.getByte(index) & 0xFF;
+        if (length != LONG_LENGTH) return length;
+        
+        length = 0;
+        for (int i = 1; i < LONG_HEADER_SIZE; ++i) {
+            length = (length << 8) | (this.getByte(index + i) & 0xFF);
+        }
+        return length;
+    }
+    
+    /**
+     * Writes the size header of a record of the provided size at the
+     * specified index.
+     * @param index The index of the header
+     * @param length The size of the record
+     * @return The number of bytes of the header
+     */
+    public int writeLength(int index, int length) throws IOException {
+        if (length < LONG_LENGTH) {
+            this.writeByte(index, (byte) length);
+            return 1;
         }
         
-        // Retrieve bytes
-        for (int i = 0; i < totalBytes + 1; ++i) {
-            // Set the byte to return
-            byteArray[i] = buffer.getBytes()[startPosition + currentPosition++];
+        this.writeByte(index, (byte) LONG_LENGTH);
+        for (int i = LONG_HEADER_SIZE - 1; i > 0; --i) {
+            this.writeByte(index + i, (byte) length);
+            length >>>= 8;
+        }
+        return LONG_HEADER_SIZE;
+    }
+    
+    /**
+     * Copies the range of bytes starting at the provided index into the array,
+     * looking up each block the range covers once.
+     * @param index The index of the first byte to read
+     * @param bArray The array to copy the bytes into
+     * @param offset The position in the array of the first byte
+     * @param length The total number of bytes to read
+     */
+    public void read(int index, byte[] bArray, int offset, int length) throws IOException {
+        while (length > 0) {
+            BufferPool.Buffer buffer = this.getBuffer(index);
             
-            // Check if need to get a new buffer
-            if (startPosition + currentPosition >= buffer.getSize()) {
-                buffer = this.getBuffer(index + currentPosition);
-                startPosition = 0;
-                currentPosition = 0;
-            }
+            // Copy as much of the range as the buffer holds
+            int startPosition = index - buffer.getBytePosition();
+            int count = Math.min(length, buffer.getSize() - startPosition);
+            buffer.getBytes(startPosition, bArray, offset, count);
+            
+            index += count;
+            offset += count;
+            length -= count;
         }
-        
-        return totalBytes;
     }
     
     /**
@@ -141,53 +241,156 @@ public class BufferBridge {
      * @param length The length of the array of bytes
      */
     public void write(int index, byte[] bArray, int length) throws IOException {
-        // Get the first buffer
-        BufferPool.Buffer buffer = this.getBuffer(index);
-        
-        // Get the position relative to the buffer's byte array
-        int startPosition = (index) - buffer.getBytePosition();
-        int currentPosition = 0;
-        
-        // Write each byte
-        for (int i = 0; i < length; ++i) {
-            // Set the new byte
-            buffer.setByte(startPosition + currentPosition++, bArray[i]);
+        this.write(index, bArray, 0, length);
+    }
+    
+    /**
+     * Writes the range of the array to the buffer pool at the starting index,
+     * looking up each block the range covers once.
+     * @param index The index of the first byte to write
+     * @param bArray The array of bytes
+     * @param offset The position in the array of the first byte
+     * @param length The total number of bytes to write
+     */
+    public void write(int index, byte[] bArray, int offset, int length) throws IOException {
+        while (length > 0) {
+            BufferPool.Buffer buffer = this.getBuffer(index);
             
-            // Check if need to get a new buffer
-            if (startPosition + currentPosition >= buffer.getSize()) {
-                buffer = this.getBuffer(index + currentPosition);
-                startPosition = 0;
-                currentPosition = 0;
-            }
+            // Copy as much of the range as the buffer holds
+            int startPosition = index - buffer.getBytePosition();
+            int count = Math.min(length, buffer.getSize() - startPosition);
+            buffer.setBytes(startPosition, bArray, offset, count);
+            
+            index += count;
+            offset += count;
+            length -= count;
+        }
+    }
+    
+    /**
+     * Sets every byte in the range starting at the provided index to the
+     * value, looking up each block the range covers once.
+     * @param index The index of the first byte to set
+     * @param length The total number of bytes to set
+     * @param value The value of the bytes
+     */
+    public void fill(int index, int length, byte value) throws IOException {
+        while (length > 0) {
+            BufferPool.Buffer buffer = this.getBuffer(index);
+            
+            // Fill as much of the range as the buffer holds
+            int startPosition = index - buffer.getBytePosition();
+            int count = Math.min(length, buffer.getSize() - startPosition);
+            buffer.fillBytes(startPosition, count, value);
+            
+            index += count;
+            length -= count;
         }
     }
     
     /**
-     * Flushes the buffer pool and writes all data.
+     * Flushes the buffer pool and writes all data. Returns once every write
+     * has reached the file.
      */
     public void flush() throws IOException {
+        // Forget blocks read ahead (the pool is emptied as well)
+        if (this.readAhead != null) this.readAhead.clear();
+        this.direction = 0;
+        this.runLength = 0;
+        
         List<BufferPool.Buffer> buffers = this.pool.flush();
         BufferPool.Buffer currentBuffer = null;
         for (int i = 0; i < buffers.size(); ++i) {
             currentBuffer = buffers.get(i);
             
+            // Record the block leaving the pool
+            if (this.monitor != null) {
+                this.monitor.recordEviction(BridgeMonitor.EVICT_FLUSH, currentBuffer.isDirty());
+            }
+            
             // Exit if the block does not need to be written
             if (!currentBuffer.isDirty()) continue;
             
             // Get the bytes and write them
-            byte[] bytes = currentBuffer.getBytes();
-            this.rfAccess.seek(currentBuffer.getBytePosition());
-            this.rfAccess.write(bytes);
-            
-            // Update counter for disk writes
-            ++this.diskWrites;
+            this.writeBlock(currentBuffer.getBytePosition(), currentBuffer.getData());
+        }
+        
+        // Wait for any background writes so the file is up to date
+        if (this.writeBehind != null) this.writeBehind.drain();
+    }
+    
+    /**
+     * Cuts the file back to the provided length, rounded up to a whole block
+     * as the pool writes them. The bytes past the length must be free (and
+     * so zeroed): changes to the blocks past the new end are dropped rather
+     * than written, which would grow the file again.
+     * @param length The number of bytes to keep
+     */
+    public void truncate(int length) throws IOException {
+        int end = ((length + this.blockSize - 1) / this.blockSize) * this.blockSize;
+        this.pool.dropChangesFrom(end);
+        
+        // Wait for any background writes, which could grow the file again
+        if (this.writeBehind != null) this.writeBehind.drain();
+        if (this.rfAccess.length() > end) {
+            if (this.readAhead != null) this.readAhead.clear();
+            this.rfAccess.setLength(end);
         }
     }
     
+    /**
+     * Extends the file to the provided length, rounded up to a whole block,
+     * so the space grown by the memory pool is set aside in one step instead
+     * of a block at a time as the buffers holding it are written.
+     * @param length The number of bytes the file must hold
+     */
+    public void preallocate(int length) throws IOException {
+        int end = ((length + this.blockSize - 1) / this.blockSize) * this.blockSize;
+        if (this.rfAccess.length() < end) this.rfAccess.setLength(end);
+    }
+    
+    /**
+     * Moves the writing of dirty buffers to a background thread. Once more
+     * than the provided number of buffers are dirty, the least recently used
+     * dirty buffers are written ahead of their eviction until only half that
+     * number remain dirty. Flushing still waits for every write to finish.
+     * @param highWaterMark The number of dirty buffers allowed
+     */
+    public void enableWriteBehind(int highWaterMark) {
+        if (this.writeBehind == null) this.writeBehind = new WriteBehind();
+        this.highWaterMark = highWaterMark;
+    }
+    
+    /**
+     * Reads blocks ahead of their use once misses walk the file forwards or
+     * backwards, reading the provided number of blocks at a time in the
+     * background. Prefetch hints are ignored until this is enabled.
+     * @param blocks The number of blocks to read at a time
+     */
+    public void enableReadAhead(int blocks) {
+        if (blocks <= 0) return;
+        this.readAhead = new ReadAhead(this.blockSize, 4 * blocks);
+        this.readAheadBlocks = blocks;
+    }
+    
+    /**
+     * Hints that the bytes in the provided range will be used soon, so their
+     * blocks that are not in the pool are read in the background. Does
+     * nothing unless read-ahead is enabled.
+     * @param index The index of the first byte
+     * @param length The total number of bytes
+     */
+    public void prefetch(int index, int length) throws IOException {
+        if (this.readAhead == null || index < 0 || length <= 0) return;
+        int firstBlock = index / this.blockSize;
+        int lastBlock = (index + length - 1) / this.blockSize;
+        this.stage(firstBlock, lastBlock - firstBlock + 1);
+    }
+    
     /**
      * Opens the file for reading and writing associated with this buffer bridge.
      */
-    public final void open() throws IOException {
+    public void open() throws IOException {
         this.close();
         this.rfAccess = new RandomAccessFile(file, "rw");
     }
@@ -195,10 +398,41 @@ public class BufferBridge {
     /**
      * Flushes and closes the file associated with this buffer bridge.
      */
-    public final void close() throws IOException {
+    public void close() throws IOException {
         this.flush();
         this.rfAccess.close();
     }
+    
+    /**
+     * Starts recording a heat map of block accesses, block read and write
+     * latencies and the reasons blocks leave the pool, and publishes them
+     * (with the totals) as an MBean named after the file.
+     * @return The monitor recording the statistics
+     */
+    public BridgeMonitor enableMonitor() {
+        if (this.monitor == null) {
+            this.monitor = new BridgeMonitor(this);
+            this.monitor.register(this.file.getName());
+        }
+        return this.monitor;
+    }
+    
+    /**
+     * Returns the monitor recording live statistics, or null if monitoring
+     * has not been enabled.
+     * @return The monitor
+     */
+    public BridgeMonitor getMonitor() {
+        return this.monitor;
+    }
+
+    /**
+     * Returns the name of the eviction policy used by the buffer pool.
+     * @return The String name
+     */
+    public String getPolicyName() {
+        return this.pool.getPolicyName();
+    }
 
     /**
      * Returns the number of times the buffer bridge has been able to find the
@@ -242,6 +476,51 @@ public class BufferBridge {
         return pool.getIDList();
     }
     
+    // =====================================================================
+    // = STATIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Returns the number of bytes of the size header of a record of the
+     * provided size (one byte for records shorter than 255 bytes).
+     * @param length The size of the record
+     * @return The number of bytes of the header
+     */
+    public static int getHeaderSize(int length) {
+        return (length < LONG_LENGTH) ? 1 : LONG_HEADER_SIZE;
+    }
+    
+    /**
+     * Creates the bridge to the file for the named policy: a memory mapped
+     * bridge for MAPPED, else a buffer pool using that eviction policy.
+     * @param file The file to access
+     * @param maxBuffers The total number of buffers supported
+     * @param blockSize The size of each block in bytes
+     * @param policyName The name of the eviction policy (or MAPPED)
+     * @return The new bridge
+     */
+    public static BufferBridge create(File file, int maxBuffers, int blockSize, String policyName) throws FileNotFoundException, IOException {
+        return create(file, maxBuffers, blockSize, policyName, false);
+    }
+    
+    /**
+     * Creates the bridge to the file for the named policy: a memory mapped
+     * bridge for MAPPED, else a buffer pool using that eviction policy whose
+     * buffers are optionally held in direct (off-heap) memory.
+     * @param file The file to access
+     * @param maxBuffers The total number of buffers supported
+     * @param blockSize The size of each block in bytes
+     * @param policyName The name of the eviction policy (or MAPPED)
+     * @param directFrames Whether or not to hold the buffers in direct memory
+     * @return The new bridge
+     */
+    public static BufferBridge create(File file, int maxBuffers, int blockSize, String policyName, boolean directFrames) throws FileNotFoundException, IOException {
+        if (policyName.equalsIgnoreCase(MappedBufferBridge.MAPPED)) {
+            return new MappedBufferBridge(file, blockSize);
+        }
+        return new BufferBridge(file, maxBuffers, blockSize, policyName, directFrames);
+    }
+    
     // =====================================================================
     // = PRIVATE METHODS                                                   =
     // =====================================================================
@@ -253,39 +532,198 @@ public class BufferBridge {
      * @return The buffer found
      */
     private BufferPool.Buffer getBuffer(int index) throws IOException {
+        // Look up the buffer (a hit also makes it the most recently used)
+        BufferPool.Buffer found = this.pool.getBufferAt(index);
+        
         // Determine if the buffer pool needs to have the buffer added
-        if (!this.pool.hasBufferAt(index)) {
-            byte[] bArray = new byte[blockSize];
+        if (found == null) {
             int startBlock = (index) / blockSize;
+            int position = startBlock * blockSize;
             
-            // Go to the block associated with the new buffer and read it
-            this.rfAccess.seek(startBlock * blockSize);
-            this.rfAccess.read(bArray);
+            // Free a buffer for the block, writing the block it held if it
+            // has been modified
+            boolean replacing = this.pool.isFull();
+            BufferPool.Buffer buffer = this.pool.evict(position);
+            if (this.monitor != null && replacing) {
+                this.monitor.recordEviction(BridgeMonitor.EVICT_MISS, buffer.isDirty());
+            }
+            if (buffer.isDirty()) {
+                this.writeBlock(buffer.getBytePosition(), buffer.getData());
+            }
             
-            // Update counter for disk reads
-            ++this.diskReads;
+            // Load the newest contents straight into the buffer: a write still
+            // waiting in the background, a block read ahead (already counted
+            // as part of the read of its run), else the block on disk
+            ByteBuffer data = buffer.getData();
+            boolean loaded =
+                    (this.writeBehind != null &&
+                     this.writeBehind.readPending(position, data)) ||
+                    (this.readAhead != null &&
+                     this.readAhead.take(startBlock, data));
+            if (!loaded) this.readBlock(position, data);
             
-            // Store the binary array with the starting block position into the pool
-            BufferPool.Buffer buffer = 
-                    this.pool.insert(startBlock * blockSize, bArray);
+            // Place the buffer into the pool holding the new block
+            this.pool.insert(buffer, position);
             
-            // Write the buffer if there is a buffer being removed and it has been modified
-            if (buffer != null && buffer.isDirty()) {
-                this.rfAccess.seek(buffer.getBytePosition());
-                this.rfAccess.write(buffer.getBytes());
-                
-                // Update counter for disk writes
-                ++this.diskWrites;
+            // Clean buffers ahead of eviction if too many are dirty
+            if (this.writeBehind != null &&
+                this.pool.getDirtyCount() > this.highWaterMark) {
+                this.cleanAhead();
             }
             
+            // Read the blocks after (or before) a sequential run of misses
+            if (this.readAhead != null) this.followRun(startBlock);
+            
             // Update counter for cache misses
             ++this.cacheMisses;
+            
+            // Use the new buffer (loading it already counted as its use)
+            found = buffer;
         } else {
             // Update counter for cache hits
             ++this.cacheHits;
         }
         
+        // Record the access of the block
+        if (this.monitor != null) {
+            this.monitor.recordAccess(found.getBytePosition() / this.blockSize);
+        }
+        
         // Return the buffer associated with this index
-        return this.pool.getBufferAt(index);
+        return found;
+    }
+    
+    /**
+     * Reads the block at the provided position into the provided view of a
+     * buffer with a positional read, zeroing any part of it past the end of
+     * the file.
+     * @param position The byte position of the block
+     * @param target The view of the buffer to read the block into
+     */
+    private void readBlock(int position, ByteBuffer target) throws IOException {
+        long start = (this.monitor != null) ? System.nanoTime() : 0;
+        
+        FileChannel channel = this.rfAccess.getChannel();
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) break;
+        }
+        while (target.hasRemaining()) target.put((byte) 0);
+        
+        if (this.monitor != null) this.monitor.recordRead(System.nanoTime() - start);
+        
+        // Update counter for disk reads
+        ++this.diskReads;
+    }
+    
+    /**
+     * Writes the block to the file, either now or in the background if
+     * write-behind is enabled (which copies the bytes first).
+     * @param position The byte position of the block
+     * @param source The view of the buffer holding the block
+     */
+    private void writeBlock(int position, ByteBuffer source) throws IOException {
+        long start = (this.monitor != null) ? System.nanoTime() : 0;
+        
+        // A block read ahead of the write would now be out of date
+        if (this.readAhead != null) this.readAhead.discard(position / this.blockSize);
+        
+        if (this.writeBehind != null) {
+            this.writeBehind.schedule(this.rfAccess.getChannel(), position, source);
+        } else {
+            FileChannel channel = this.rfAccess.getChannel();
+            while (source.hasRemaining()) {
+                channel.write(source, position + source.position());
+            }
+        }
+        
+        if (this.monitor != null) this.monitor.recordWrite(System.nanoTime() - start);
+        
+        // Update counter for disk writes
+        ++this.diskWrites;
+    }
+    
+    /**
+     * Schedules the least recently used dirty buffers to be written in the
+     * background until half of the high-water mark remain dirty.
+     */
+    private void cleanAhead() throws IOException {
+        int toClean = this.pool.getDirtyCount() - (this.highWaterMark / 2);
+        for (BufferPool.Buffer buffer : this.pool.getDirtyBuffers(toClean)) {
+            this.writeBlock(buffer.getBytePosition(), buffer.getData());
+            buffer.makeClean();
+            if (this.monitor != null) {
+                this.monitor.recordEviction(BridgeMonitor.EVICT_WRITE_BEHIND, true);
+            }
+        }
+    }
+    
+    /**
+     * Tracks misses on the provided block and, once they form a run in one
+     * direction, keeps at least half of the read-ahead blocks staged ahead
+     * of the run.
+     * @param block The block that missed
+     */
+    private void followRun(int block) throws IOException {
+        int step = block - this.lastMissBlock;
+        this.lastMissBlock = block;
+        
+        // Check whether the miss continues the run or breaks it
+        if (step == 1 || step == -1) {
+            if (step != this.direction) {
+                this.direction = step;
+                this.runLength = 0;
+            }
+            ++this.runLength;
+        } else {
+            this.direction = 0;
+            this.runLength = 0;
+            return;
+        }
+        
+        // Wait for a second sequential miss before reading ahead
+        if (this.runLength < 2) return;
+        
+        // Read the next set of blocks once the run comes within half of them
+        int distance = (this.nextAhead - block) * this.direction;
+        if (distance <= 0 || distance > this.readAheadBlocks + 1) {
+            this.nextAhead = block + this.direction;
+            distance = 1;
+        }
+        if (distance <= this.readAheadBlocks / 2 + 1) {
+            int firstBlock = (this.direction > 0) ?
+                    this.nextAhead : this.nextAhead - this.readAheadBlocks + 1;
+            this.stage(firstBlock, this.readAheadBlocks);
+            this.nextAhead += this.direction * this.readAheadBlocks;
+        }
+    }
+    
+    /**
+     * Reads the blocks in the range that are not already in the pool, staged,
+     * or waiting to be written in the background (one read for each set of
+     * adjacent blocks).
+     * @param firstBlock The first block of the range
+     * @param totalBlocks The total number of blocks in the range
+     */
+    private void stage(int firstBlock, int totalBlocks) throws IOException {
+        // Keep the range within the file and the staging area
+        int lastBlock = firstBlock + Math.min(totalBlocks, 2 * this.readAheadBlocks) - 1;
+        lastBlock = Math.min(lastBlock, (int) ((this.rfAccess.length() - 1) / this.blockSize));
+        firstBlock = Math.max(firstBlock, 0);
+        
+        int runStart = -1;
+        for (int block = firstBlock; block <= lastBlock + 1; ++block) {
+            boolean needed = block <= lastBlock &&
+                    this.pool.findBufferAt(block * this.blockSize) == null &&
+                    !this.readAhead.isStaged(block) &&
+                    (this.writeBehind == null ||
+                     !this.writeBehind.isPending(block * this.blockSize));
+            if (needed && runStart < 0) {
+                runStart = block;
+            } else if (!needed && runStart >= 0) {
+                this.readAhead.schedule(this.rfAccess.getChannel(), runStart, block - runStart);
+                ++this.diskReads;
+                runStart = -1;
+            }
+        }
     }
 }
@@ -1,5 +1,7 @@
 
-import java.util.Iterator;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -11,9 +13,20 @@ import java.util.List;
  */
 public class BufferPool {
     
-    private java.util.LinkedList<Buffer> buffers;
+    private HashMap<Integer, Buffer> blocks; // Block number to buffer index
+    private Buffer head; // Most recently used buffer
+    private Buffer tail; // Least recently used buffer
     private int maxBuffers;
+    private EvictionPolicy policy; // Decides which buffer to give up
+    private int dirtyBuffers; // The number of modified buffers in the pool
+    private Buffer[] frames; // Every buffer of the pool, allocated up front
+    private int unusedFrames; // The first frames not yet holding a block
+    private int[] passedBlocks; // Pinned victims passed over by evict
     private int bufferSize;
+    private boolean direct; // Whether frames are held outside of the heap
+    
+    // The most bytes of frames carved out of one direct allocation
+    private static final int MAX_SLAB_SIZE = 1 << 30;
     
     // =====================================================================
     // = CONSTRUCTORS                                                      =
@@ -25,9 +38,42 @@ public class BufferPool {
      * @param bufferSize The size of all buffers
      */
     public BufferPool(int maxBuffers, int bufferSize) {
-        this.buffers = new java.util.LinkedList<Buffer>();
+        this(maxBuffers, bufferSize, EvictionPolicy.LRU);
+    }
+    
+    /**
+     * Creates a new buffer pool with the specified number of buffers that
+     * removes buffers based on the named eviction policy.
+     * @param maxBuffers The total number of buffers to hold
+     * @param bufferSize The size of all buffers
+     * @param policyName The name of the eviction policy to use
+     */
+    public BufferPool(int maxBuffers, int bufferSize, String policyName) {
+        this(maxBuffers, bufferSize, policyName, false);
+    }
+    
+    /**
+     * Creates a new buffer pool with the specified number of buffers that
+     * removes buffers based on the named eviction policy, optionally holding
+     * the buffers in direct (off-heap) memory. Direct buffers are sliced out
+     * of a few large allocations, keep a large pool out of the garbage
+     * collected heap and are read and written by channels without copying.
+     * @param maxBuffers The total number of buffers to hold
+     * @param bufferSize The size of all buffers
+     * @param policyName The name of the eviction policy to use
+     * @param direct Whether or not to hold the buffers in direct memory
+     */
+    public BufferPool(int maxBuffers, int bufferSize, String policyName, boolean direct) {
+        this.direct = direct;
+        this.blocks = new HashMap<Integer, Buffer>();
+        this.head = null;
+        this.tail = null;
+        this.dirtyBuffers = 0;
         this.maxBuffers = maxBuffers;
         this.bufferSize = bufferSize;
+        this.policy = EvictionPolicy.create(policyName, maxBuffers);
+        this.passedBlocks = new int[maxBuffers];
+        this.allocateFrames(maxBuffers);
     }
     
     // =====================================================================
@@ -35,35 +81,66 @@ public class BufferPool {
     // =====================================================================
     
     /**
-     * Inserts a buffer that has a byte position specified and contains the
-     * byte array provided. If the maximum number of buffers has been reached,
-     * the last buffer in the list is removed and returned, else null is returned.
-     * @param firstBytePosition The location of the first byte
-     * @param byteArray The array of bytes
-     * @return The buffer removed (if limit has been achieved)
+     * Returns the buffer the block at the provided position should be loaded
+     * into. If every buffer holds a block, the buffer chosen by the eviction
+     * policy is removed from the pool and returned still holding its old
+     * block (which must be written if it is dirty), else an unused buffer is
+     * returned. The buffer must then be placed back with insert. Pinned
+     * buffers are never chosen; null is returned if every buffer is pinned.
+     * @param firstBytePosition The location of the first byte of the new block
+     * @return The buffer to load the block into
      */
-    public Buffer insert(int firstBytePosition, byte[] byteArray) {
-        Buffer removedBuffer = null;
+    public Buffer evict(int firstBytePosition) {
+        // Hand out the unused buffers first (flushed buffers keep their flag
+        // for the caller of flush, so it is reset here without counting it)
+        if (this.unusedFrames > 0) {
+            Buffer unused = this.frames[--this.unusedFrames];
+            unused.dirty = false;
+            return unused;
+        }
         
-        // Check if the limit has been exceeded
-        if (this.buffers.size() >= this.maxBuffers) {
-            // Set the removed buffer to a copy of the last buffer
-            removedBuffer = this.buffers.getLast().makeCopy();
-            
-            // Move the least recently used to the front and wipe it
-            Buffer newBuffer = this.buffers.getLast();
-            newBuffer.setBytePosition(firstBytePosition);
-            newBuffer.setBytes(byteArray);
-            newBuffer.makeClean();
-            this.buffers.addFirst(newBuffer);
-            this.buffers.removeLast();
-        } else {
-            // Add the buffer to the list after dynamically allocating it
-            this.buffers.addFirst(new Buffer(firstBytePosition, byteArray, bufferSize));
+        // Remove the buffer chosen by the policy, passing over pinned buffers
+        // (they are held aside so the policy cannot choose them again)
+        int incomingBlock = firstBytePosition / this.bufferSize;
+        Buffer victim = null;
+        int passed = 0;
+        for (int tries = this.blocks.size(); tries > 0 && victim == null; --tries) {
+            int block = this.policy.selectVictim(incomingBlock);
+            victim = this.blocks.get(block);
+            if (victim.isPinned()) {
+                this.passedBlocks[passed++] = block;
+                victim = null;
+            }
+        }
+        
+        // Hand the pinned buffers back to the policy with their old state
+        for (int i = 0; i < passed; ++i) {
+            this.policy.blockRestored(this.passedBlocks[i]);
         }
         
-        // Return the removed buffer
-        return removedBuffer;
+        // Null if every buffer is in use
+        if (victim != null) {
+            this.blocks.remove(victim.getBytePosition() / this.bufferSize);
+            this.unlink(victim);
+        }
+        return victim;
+    }
+    
+    /**
+     * Inserts the buffer returned by evict into the pool as the holder of the
+     * block at the provided position. Its bytes must already be loaded.
+     * @param buffer The buffer returned by evict
+     * @param firstBytePosition The location of the first byte
+     */
+    public void insert(Buffer buffer, int firstBytePosition) {
+        int block = firstBytePosition / this.bufferSize;
+        buffer.setBytePosition(firstBytePosition);
+        buffer.makeClean();
+        
+        // Add the buffer to the front of the list and index it by block
+        this.linkFirst(buffer);
+        this.blocks.put(block, buffer);
+        this.policy.blockAdded(block);
     }
     
     /**
@@ -72,53 +149,104 @@ public class BufferPool {
      * @return Whether or not a buffer exists
      */
     public boolean hasBufferAt(int index) {
-        Buffer currentBuffer = null;
-        java.util.ListIterator<Buffer> it = this.buffers.listIterator();
-        while (it.hasNext()) {
-            currentBuffer = it.next();
-            int startPosition = currentBuffer.getBytePosition();
-            int buffSize = currentBuffer.getSize();
-            if (index >= startPosition && index < startPosition + buffSize) {
-                this.buffers.remove(currentBuffer);
-                this.buffers.addFirst(currentBuffer);
-                return true;
-            }
-        }
-        return false;
+        return (this.getBufferAt(index) != null);
     }
     
     /**
      * Returns the buffer that contains the provided index or null if no buffer
-     * exists.
+     * exists. The buffer found becomes the most recently used buffer and
+     * counts as an access for the eviction policy.
      * @param index The index to be contained in a buffer
      * @return The buffer found
      */
     public Buffer getBufferAt(int index) {
-        Buffer currentBuffer = null;
-        java.util.ListIterator<Buffer> it = this.buffers.listIterator();
-        while (it.hasNext()) {
-            currentBuffer = it.next();
-            int startPosition = currentBuffer.getBytePosition();
-            int buffSize = currentBuffer.getSize();
-            if (index >= startPosition && index < startPosition + buffSize) {
-                this.buffers.remove(currentBuffer);
-                this.buffers.addFirst(currentBuffer);
-                return currentBuffer;
+        Buffer buffer = this.blocks.get(index / this.bufferSize);
+        if (buffer != null) {
+            this.policy.blockAccessed(index / this.bufferSize);
+            if (buffer != this.head) {
+                this.unlink(buffer);
+                this.linkFirst(buffer);
             }
         }
-        return null;
+        return buffer;
     }
     
     /**
-     * Removes all buffers in the pool and returns them as a list.
+     * Returns the buffer that contains the provided index or null if no buffer
+     * exists, without counting it as an access.
+     * @param index The index to be contained in a buffer
+     * @return The buffer found
+     */
+    public Buffer findBufferAt(int index) {
+        return this.blocks.get(index / this.bufferSize);
+    }
+    
+    /**
+     * Returns whether or not every buffer holds a block, so loading another
+     * block would remove one.
+     * @return Whether or not the pool is full
+     */
+    public boolean isFull() {
+        return this.unusedFrames == 0;
+    }
+    
+    /**
+     * Returns the number of buffers in the pool that have been modified.
+     * @return The integer count
+     */
+    public int getDirtyCount() {
+        return this.dirtyBuffers;
+    }
+    
+    /**
+     * Returns up to the provided number of modified buffers, starting with the
+     * least recently used (those closest to being removed).
+     * @param max The maximum number of buffers to return
+     * @return The list of dirty buffers
+     */
+    public List<Buffer> getDirtyBuffers(int max) {
+        List<Buffer> bList = new LinkedList<Buffer>();
+        for (Buffer b = this.tail; b != null && bList.size() < max; b = b.previous) {
+            if (b.isDirty()) bList.add(b);
+        }
+        return bList;
+    }
+    
+    /**
+     * Marks every buffer holding a block at or past the provided position as
+     * unmodified, so those blocks are not written when they leave the pool.
+     * @param firstBytePosition The location of the first byte to drop
+     */
+    public void dropChangesFrom(int firstBytePosition) {
+        for (Buffer b = this.head; b != null; b = b.next) {
+            if (b.getBytePosition() >= firstBytePosition) b.makeClean();
+        }
+    }
+    
+    /**
+     * Returns the name of the eviction policy used by this pool.
+     * @return The String name
+     */
+    public String getPolicyName() {
+        return this.policy.getName();
+    }
+    
+    /**
+     * Removes all buffers in the pool and returns them as a list. The buffers
+     * are not reused until the next call to evict.
      * @return The array of buffers
      */
     public List<Buffer> flush() {
         List<Buffer> bList = new LinkedList<Buffer>();
-        for (int i = 0; i < this.buffers.size(); ++i) {
-            bList.add(this.buffers.get(i));
+        for (Buffer b = this.head; b != null; b = b.next) {
+            bList.add(b);
         }
-        this.buffers.clear();
+        this.blocks.clear();
+        this.head = null;
+        this.tail = null;
+        this.dirtyBuffers = 0;
+        this.unusedFrames = this.frames.length;
+        this.policy.clear();
         return bList;
     }
     
@@ -129,8 +257,8 @@ public class BufferPool {
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < this.buffers.size(); ++i) {
-            sb.append(this.buffers.get(i).toString());
+        for (Buffer b = this.head; b != null; b = b.next) {
+            sb.append(b.toString());
         }
         return sb.toString();
     }
@@ -141,10 +269,8 @@ public class BufferPool {
      */
     public String getIDList() {
         String idList = "";
-        Iterator<Buffer> it = buffers.iterator();
-        while (it.hasNext()) {
-            Buffer currentBuffer = it.next();
-            idList += (currentBuffer.getBytePosition() / bufferSize) + " ";
+        for (Buffer b = this.head; b != null; b = b.next) {
+            idList += (b.getBytePosition() / bufferSize) + " ";
         }
         return idList;
     }
@@ -153,6 +279,59 @@ public class BufferPool {
     // = PRIVATE METHODS                                                   =
     // =====================================================================
     
+    /**
+     * Allocates every buffer the pool will hold, so loading and removing
+     * blocks never allocates memory.
+     * @param total The total number of buffers
+     */
+    private void allocateFrames(int total) {
+        this.frames = new Buffer[total];
+        if (this.direct) {
+            // Slice the frames out of as few direct allocations as possible
+            int framesPerSlab = Math.max(MAX_SLAB_SIZE / this.bufferSize, 1);
+            ByteBuffer slab = null;
+            for (int i = 0; i < total; ++i) {
+                int slot = i % framesPerSlab;
+                if (slot == 0) {
+                    int slabFrames = Math.min(framesPerSlab, total - i);
+                    slab = ByteBuffer.allocateDirect(slabFrames * this.bufferSize);
+                }
+                slab.limit((slot + 1) * this.bufferSize);
+                slab.position(slot * this.bufferSize);
+                this.frames[i] = new Buffer(slab.slice());
+            }
+        } else {
+            for (int i = 0; i < total; ++i) {
+                this.frames[i] = new Buffer(this.bufferSize);
+            }
+        }
+        this.unusedFrames = total;
+    }
+    
+    /**
+     * Places the buffer at the front (most recently used end) of the list.
+     * @param buffer The buffer to link
+     */
+    private void linkFirst(Buffer buffer) {
+        buffer.previous = null;
+        buffer.next = this.head;
+        if (this.head != null) this.head.previous = buffer;
+        this.head = buffer;
+        if (this.tail == null) this.tail = buffer;
+    }
+    
+    /**
+     * Removes the buffer from the list without touching the block index.
+     * @param buffer The buffer to unlink
+     */
+    private void unlink(Buffer buffer) {
+        if (buffer.previous != null) buffer.previous.next = buffer.next;
+        else this.head = buffer.next;
+        if (buffer.next != null) buffer.next.previous = buffer.previous;
+        else this.tail = buffer.previous;
+        buffer.previous = null;
+        buffer.next = null;
+    }
     
     // =====================================================================
     // = INNER CLASSES                                                     =
@@ -164,27 +343,36 @@ public class BufferPool {
     public class Buffer {
         private boolean dirty;
         private int firstBytePosition;
-        private byte[] bytes;
+        private ByteBuffer data; // The bytes of the block (heap or direct)
+        private Buffer previous; // More recently used neighbour
+        private Buffer next; // Less recently used neighbour
+        private int pins; // The number of users that keep it from being removed
         
         /**
-         * Creates a new buffer containing the provided information.
-         * @param byteArray The array of bytes to store
-         * @param totalBytes The total bytes from the array provided to store
+         * Creates a new, empty buffer of the provided size.
          * @param size The size of the buffer
          */
-        public Buffer(int firstBytePosition, byte[] byteArray, int size) {
-            this.bytes = new byte[size];
-            for (int i = 0; i < byteArray.length; ++i) {
-                this.bytes[i] = byteArray[i];
-            }
-            this.firstBytePosition = firstBytePosition;
+        public Buffer(int size) {
+            this(ByteBuffer.wrap(new byte[size]));
+        }
+        
+        /**
+         * Creates a new, empty buffer that holds its bytes in the provided
+         * byte buffer (its whole capacity is used).
+         * @param data The byte buffer to hold the bytes
+         */
+        public Buffer(ByteBuffer data) {
+            this.data = data;
+            this.firstBytePosition = -1;
             this.dirty = false;
+            this.pins = 0;
         }
         
         /**
          * Sets the buffer modified flag to true.
          */
         public void makeDirty() {
+            if (!this.dirty) ++dirtyBuffers;
             this.dirty = true;
         }
         
@@ -192,6 +380,7 @@ public class BufferPool {
          * Sets the buffer modified flag to false.
          */
         public void makeClean() {
+            if (this.dirty) --dirtyBuffers;
             this.dirty = false;
         }
         
@@ -203,6 +392,29 @@ public class BufferPool {
             return this.dirty;
         }
         
+        /**
+         * Keeps the buffer from being removed from the pool until it is
+         * unpinned (pins are counted, so each pin needs its own unpin).
+         */
+        public void pin() {
+            ++this.pins;
+        }
+        
+        /**
+         * Releases one pin on the buffer.
+         */
+        public void unpin() {
+            --this.pins;
+        }
+        
+        /**
+         * Returns whether or not the buffer is pinned.
+         * @return Whether or not the buffer may not be removed
+         */
+        public boolean isPinned() {
+            return this.pins > 0;
+        }
+        
         /**
          * Returns the byte position of this buffer.
          * @return The starting byte position of this buffer
@@ -220,30 +432,100 @@ public class BufferPool {
         }
         
         /**
-         * Returns the bytes represented by the buffer.
-         * @return The array of bytes
+         * Returns a view of the bytes of the buffer, positioned at the start
+         * and limited to its size, for reading and writing them through a
+         * channel. The view shares the bytes but not its position.
+         * @return The byte buffer view
+         */
+        public ByteBuffer getData() {
+            ByteBuffer view = this.data.duplicate();
+            view.clear();
+            return view;
+        }
+        
+        /**
+         * Returns the size of the buffer.
+         * @return The integer size
+         */
+        public int getSize() {
+            return this.data.capacity();
+        }
+        
+        /**
+         * Returns the byte at the specified index within the buffer.
+         * @param index The index of the byte to get
+         * @return The byte
          */
-        public byte[] getBytes() {
-            return this.bytes;
+        public byte getByte(int index) {
+            return this.data.get(index);
         }
         
         /**
-         * Sets the bytes to the byte array provided.
-         * @param byteArray The new array of bytes
+         * Copies the range of the buffer starting at the specified index into
+         * the array.
+         * @param index The index of the first byte to copy
+         * @param target The array to copy the bytes into
+         * @param offset The position in the array of the first byte
+         * @param length The total number of bytes to copy
          */
-        public void setBytes(byte[] byteArray) {
-            this.bytes = new byte[byteArray.length];
-            for (int i = 0; i < byteArray.length; ++i) {
-                this.bytes[i] = byteArray[i];
+        public void getBytes(int index, byte[] target, int offset, int length) {
+            if (this.data.hasArray()) {
+                System.arraycopy(this.data.array(), this.data.arrayOffset() + index,
+                                 target, offset, length);
+            } else {
+                ByteBuffer view = this.data.duplicate();
+                view.position(index);
+                view.get(target, offset, length);
             }
         }
         
         /**
-         * Returns the size of the buffer.
-         * @return The integer size
+         * Sets the byte at the specified index within the buffer without
+         * changing the modified flag (the caller must make it dirty).
+         * @param index The index of the byte to set
+         * @param value The new value for the byte in the buffer
          */
-        public int getSize() {
-            return this.bytes.length;
+        public void putByte(int index, byte value) {
+            this.data.put(index, value);
+        }
+        
+        /**
+         * Copies the range of the array into the buffer starting at the
+         * specified index without changing the modified flag (the caller
+         * must make it dirty).
+         * @param index The index of the first byte to set
+         * @param source The array holding the new bytes
+         * @param offset The position in the array of the first new byte
+         * @param length The total number of bytes to set
+         */
+        public void putBytes(int index, byte[] source, int offset, int length) {
+            if (this.data.hasArray()) {
+                System.arraycopy(source, offset,
+                                 this.data.array(), this.data.arrayOffset() + index, length);
+            } else {
+                ByteBuffer view = this.data.duplicate();
+                view.position(index);
+                view.put(source, offset, length);
+            }
+        }
+        
+        /**
+         * Sets every byte in the range starting at the specified index to the
+         * provided value without changing the modified flag (the caller must
+         * make it dirty).
+         * @param index The index of the first byte to set
+         * @param length The total number of bytes to set
+         * @param value The new value for the bytes
+         */
+        public void putFill(int index, int length, byte value) {
+            if (this.data.hasArray()) {
+                int start = this.data.arrayOffset() + index;
+                Arrays.fill(this.data.array(), start, start + length, value);
+            } else {
+                for (int i = index; i < index + length; ++i) {
+                    this.data.put(i, value);
+                }
+            }
         }
         
         /**
@@ -252,7 +534,32 @@ public class BufferPool {
          * @param value The new value for the byte in the buffer
          */
         public void setByte(int index, byte value) {
-            this.bytes[index] = value;
+            this.putByte(index, value);
+            this.makeDirty();
+        }
+        
+        /**
+         * Copies the range of the array into the buffer starting at the
+         * specified index.
+         * @param index The index of the first byte to set
+         * @param source The array holding the new bytes
+         * @param offset The position in the array of the first new byte
+         * @param length The total number of bytes to set
+         */
+        public void setBytes(int index, byte[] source, int offset, int length) {
+            this.putBytes(index, source, offset, length);
+            this.makeDirty();
+        }
+        
+        /**
+         * Sets every byte in the range starting at the specified index to the
+         * provided value.
+         * @param index The index of the first byte to set
+         * @param length The total number of bytes to set
+         * @param value The new value for the bytes
+         */
+        public void fillBytes(int index, int length, byte value) {
+            this.putFill(index, length, value);
             this.makeDirty();
         }
         
@@ -267,25 +574,15 @@ public class BufferPool {
         public void swapBytes(int index1, int index2, int size) {
             // Swap all bytes
             for (int i = 0; i < size; ++i) {
-                byte temp = this.bytes[index1 + i];
-                this.bytes[index1 + i] = this.bytes[index2 + i];
-                this.bytes[index2 + i] = temp;
+                byte temp = this.data.get(index1 + i);
+                this.data.put(index1 + i, this.data.get(index2 + i));
+                this.data.put(index2 + i, temp);
             }
             
             // Make dirty now
             this.makeDirty();
         }
         
-        /**
-         * Returns a deep copy of this buffer.
-         * @return The copy of this buffer
-         */
-        public Buffer makeCopy() {
-            Buffer copy = new Buffer(this.firstBytePosition, this.bytes, bufferSize);
-            if (this.dirty) copy.makeDirty();
-            return copy;
-        }
-        
         /**
          * Returns the byte position of the buffer in a string format.
          * @return The String byte position
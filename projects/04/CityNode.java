@@ -2,7 +2,6 @@
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -44,10 +43,8 @@ public class CityNode extends SerialNode {
      */
     public String getName() {
         if (namePtr == -1) return "";
-        byte[] temp = new byte[256];
         try {
-            int tempSize = getMemPool().get(temp, namePtr, 256);
-            return new String(Arrays.copyOf(temp, tempSize));
+            return new String(getMemPool().get(namePtr));
         } catch (FileNotFoundException ex) {
             Logger.getLogger(CityNode.class.getName()).log(Level.SEVERE, null, ex);
             return "";
@@ -87,6 +84,15 @@ public class CityNode extends SerialNode {
         return getX_Int() + "," + getY_Int() + "," + this.getName();
     }
     
+    /**
+     * Returns the number of bytes this city node takes in byte form.
+     * @return The size of the byte form of this city node
+     */
+    @Override
+    public int getByteSize() {
+        return 4 + 4 + 4;
+    }
+    
     /**
      * Converts this city node into a byte array with the location being 8 bytes
      * and the name being variable-length.
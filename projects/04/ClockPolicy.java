@@ -0,0 +1,86 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Represents the CLOCK (second chance) policy. Blocks sit in a circular set of
+ * slots with a reference bit that is set on every access. The clock hand
+ * sweeps the slots, clearing set bits, and removes the first block whose bit
+ * is already clear. Hits only set a bit, so they cost nothing to reorder.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public class ClockPolicy extends EvictionPolicy {
+    
+    private int[] slotBlocks; // The block held in each slot (-1 if empty)
+    private boolean[] referenced; // The reference bit of each slot
+    private HashMap<Integer, Integer> slots; // Block number to slot index
+    private int hand; // The next slot to inspect
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new CLOCK policy for a pool of the provided size.
+     * @param capacity The total number of buffers in the pool
+     */
+    public ClockPolicy(int capacity) {
+        this.slotBlocks = new int[Math.max(capacity, 1)];
+        this.referenced = new boolean[this.slotBlocks.length];
+        this.slots = new HashMap<Integer, Integer>();
+        this.clear();
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    @Override
+    public String getName() {
+        return CLOCK;
+    }
+    
+    @Override
+    public void blockAdded(int block) {
+        // Use the slot the hand points at if it is free (it is after an
+        // eviction), otherwise the first free slot
+        int slot = this.hand;
+        while (this.slotBlocks[slot] != -1) {
+            slot = (slot + 1) % this.slotBlocks.length;
+        }
+        this.slotBlocks[slot] = block;
+        this.referenced[slot] = false;
+        this.slots.put(block, slot);
+        
+        // Move the hand past the new block so it is inspected last
+        if (slot == this.hand) this.hand = (this.hand + 1) % this.slotBlocks.length;
+    }
+    
+    @Override
+    public void blockAccessed(int block) {
+        Integer slot = this.slots.get(block);
+        if (slot != null) this.referenced[slot] = true;
+    }
+    
+    @Override
+    public int selectVictim(int incomingBlock) {
+        // Give every referenced block a second chance
+        while (this.slotBlocks[this.hand] == -1 || this.referenced[this.hand]) {
+            this.referenced[this.hand] = false;
+            this.hand = (this.hand + 1) % this.slotBlocks.length;
+        }
+        
+        // Free the slot; the incoming block will take it
+        int victim = this.slotBlocks[this.hand];
+        this.slotBlocks[this.hand] = -1;
+        this.slots.remove(victim);
+        return victim;
+    }
+    
+    @Override
+    public void clear() {
+        Arrays.fill(this.slotBlocks, -1);
+        Arrays.fill(this.referenced, false);
+        this.slots.clear();
+        this.hand = 0;
+    }
+}
@@ -0,0 +1,444 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Represents a buffer bridge that several threads may use at the same time.
+ * The buffers are split into stripes, each a buffer pool of its own guarded
+ * by its own lock, and a block always lives in the stripe chosen by its block
+ * number, so threads working on different stripes never wait on each other.
+ * 
+ * A buffer is pinned while its bytes are copied (outside of the lock), which
+ * keeps it from being removed; a miss on a stripe whose buffers are all pinned
+ * waits for one to be released. A miss also reads the new block (and writes
+ * the old one) outside of the lock, so a slow disk access only holds up the
+ * threads that need those two blocks. Blocks are read and written with
+ * positional channel calls, so no thread depends on the file pointer, and the
+ * statistics are LongAdder counters, which threads update without contending.
+ * 
+ * Reading ahead and writing behind are not supported. Flushing, opening and
+ * closing must not happen while other threads are using the bridge.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public class ConcurrentBufferBridge extends BufferBridge {
+    
+    private BufferPool[] stripes; // The pools (and locks) of each stripe
+    private List<HashSet<Integer>> busyBlocks; // Blocks being read or written
+    
+    // Statistical information shared by all threads
+    private LongAdder hitCount;
+    private LongAdder missCount;
+    private LongAdder readCount;
+    private LongAdder writeCount;
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new instance of the concurrent buffer bridge class that
+     * targets the specified file. The buffers are shared out between the
+     * stripes (there are never more stripes than buffers).
+     * @param file The file to access
+     * @param maxBuffers The total number of buffers supported
+     * @param blockSize The size of each block in bytes
+     * @param policyName The name of the eviction policy of each stripe
+     * @param stripeCount The number of stripes to split the buffers into
+     */
+    public ConcurrentBufferBridge(File file, int maxBuffers, int blockSize, String policyName, int stripeCount) throws FileNotFoundException {
+        this(file, maxBuffers, blockSize, policyName, stripeCount, false);
+    }
+    
+    /**
+     * Creates a new instance of the concurrent buffer bridge class that
+     * targets the specified file, optionally holding the buffers of every
+     * stripe in direct (off-heap) memory.
+     * @param file The file to access
+     * @param maxBuffers The total number of buffers supported
+     * @param blockSize The size of each block in bytes
+     * @param policyName The name of the eviction policy of each stripe
+     * @param stripeCount The number of stripes to split the buffers into
+     * @param directFrames Whether or not to hold the buffers in direct memory
+     */
+    public ConcurrentBufferBridge(File file, int maxBuffers, int blockSize, String policyName, int stripeCount, boolean directFrames) throws FileNotFoundException {
+        super(file, 1, blockSize, policyName);
+        
+        // Give the leftover buffers to the first stripes
+        stripeCount = Math.max(1, Math.min(stripeCount, maxBuffers));
+        this.stripes = new BufferPool[stripeCount];
+        this.busyBlocks = new ArrayList<HashSet<Integer>>(stripeCount);
+        for (int i = 0; i < stripeCount; ++i) {
+            int buffers = maxBuffers / stripeCount + ((i < maxBuffers % stripeCount) ? 1 : 0);
+            this.stripes[i] = new BufferPool(Math.max(buffers, 1), blockSize, policyName, directFrames);
+            this.busyBlocks.add(new HashSet<Integer>());
+        }
+        
+        // Initialize statistics
+        this.hitCount = new LongAdder();
+        this.missCount = new LongAdder();
+        this.readCount = new LongAdder();
+        this.writeCount = new LongAdder();
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Retrieve the byte at the provided index.
+     * @param index The index to find the byte
+     * @return The byte retrieved
+     */
+    @Override
+    public byte getByte(int index) throws IOException {
+        BufferPool.Buffer buffer = this.pin(index);
+        byte value = buffer.getByte(index - buffer.getBytePosition());
+        this.unpin(buffer, false);
+        return value;
+    }
+    
+    /**
+     * Copies the range of bytes starting at the provided index into the array,
+     * pinning each block the range covers once.
+     * @param index The index of the first byte to read
+     * @param bArray The array to copy the bytes into
+     * @param offset The position in the array of the first byte
+     * @param length The total number of bytes to read
+     */
+    @Override
+    public void read(int index, byte[] bArray, int offset, int length) throws IOException {
+        while (length > 0) {
+            BufferPool.Buffer buffer = this.pin(index);
+            
+            // Copy as much of the range as the buffer holds
+            int startPosition = index - buffer.getBytePosition();
+            int count = Math.min(length, buffer.getSize() - startPosition);
+            buffer.getBytes(startPosition, bArray, offset, count);
+            this.unpin(buffer, false);
+            
+            index += count;
+            offset += count;
+            length -= count;
+        }
+    }
+    
+    /**
+     * Sets the byte at the specified index.
+     * @param index The index of the byte to set
+     * @param value The value of the byte
+     */
+    @Override
+    public void writeByte(int index, byte value) throws IOException {
+        BufferPool.Buffer buffer = this.pin(index);
+        buffer.putByte(index - buffer.getBytePosition(), value);
+        this.unpin(buffer, true);
+    }
+    
+    /**
+     * Writes the range of the array at the starting index, pinning each block
+     * the range covers once.
+     * @param index The index of the first byte to write
+     * @param bArray The array of bytes
+     * @param offset The position in the array of the first byte
+     * @param length The total number of bytes to write
+     */
+    @Override
+    public void write(int index, byte[] bArray, int offset, int length) throws IOException {
+        while (length > 0) {
+            BufferPool.Buffer buffer = this.pin(index);
+            
+            // Copy as much of the range as the buffer holds
+            int startPosition = index - buffer.getBytePosition();
+            int count = Math.min(length, buffer.getSize() - startPosition);
+            buffer.putBytes(startPosition, bArray, offset, count);
+            this.unpin(buffer, true);
+            
+            index += count;
+            offset += count;
+            length -= count;
+        }
+    }
+    
+    /**
+     * Sets every byte in the range starting at the provided index to the
+     * value, pinning each block the range covers once.
+     * @param index The index of the first byte to set
+     * @param length The total number of bytes to set
+     * @param value The value of the bytes
+     */
+    @Override
+    public void fill(int index, int length, byte value) throws IOException {
+        while (length > 0) {
+            BufferPool.Buffer buffer = this.pin(index);
+            
+            // Fill as much of the range as the buffer holds
+            int startPosition = index - buffer.getBytePosition();
+            int count = Math.min(length, buffer.getSize() - startPosition);
+            buffer.putFill(startPosition, count, value);
+            this.unpin(buffer, true);
+            
+            index += count;
+            length -= count;
+        }
+    }
+    
+    /**
+     * Flushes every stripe and writes all modified blocks.
+     */
+    @Override
+    public void flush() throws IOException {
+        for (BufferPool stripe : this.stripes) {
+            synchronized (stripe) {
+                List<BufferPool.Buffer> buffers = stripe.flush();
+                for (BufferPool.Buffer buffer : buffers) {
+                    if (this.monitor != null) {
+                        this.monitor.recordEviction(BridgeMonitor.EVICT_FLUSH, buffer.isDirty());
+                    }
+                    if (buffer.isDirty()) {
+                        this.writeBlock(buffer.getBytePosition(), buffer.getData());
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Cuts the file back to the provided length, rounded up to a whole block,
+     * dropping the changes every stripe holds to the blocks past the new end.
+     * @param length The number of bytes to keep
+     */
+    @Override
+    public void truncate(int length) throws IOException {
+        int end = ((length + this.blockSize - 1) / this.blockSize) * this.blockSize;
+        for (BufferPool stripe : this.stripes) {
+            synchronized (stripe) {
+                stripe.dropChangesFrom(end);
+            }
+        }
+        if (this.rfAccess.length() > end) this.rfAccess.setLength(end);
+    }
+    
+    /**
+     * Does nothing, as writing behind is not supported by this bridge.
+     * @param highWaterMark The number of dirty buffers allowed
+     */
+    @Override
+    public void enableWriteBehind(int highWaterMark) {
+    }
+    
+    /**
+     * Does nothing, as reading ahead is not supported by this bridge.
+     * @param blocks The number of blocks to read at a time
+     */
+    @Override
+    public void enableReadAhead(int blocks) {
+    }
+    
+    /**
+     * Does nothing, as reading ahead is not supported by this bridge.
+     * @param index The index of the first byte
+     * @param length The total number of bytes
+     */
+    @Override
+    public void prefetch(int index, int length) {
+    }
+    
+    /**
+     * Returns the name of the eviction policy used by the stripes.
+     * @return The String name
+     */
+    @Override
+    public String getPolicyName() {
+        return this.stripes[0].getPolicyName();
+    }
+    
+    /**
+     * Returns the number of times a thread has been able to find the
+     * requested data within the stripes.
+     * @return The integer count
+     */
+    @Override
+    public int getCacheHits() {
+        return this.hitCount.intValue();
+    }
+    
+    /**
+     * Returns the number of times a thread has been unable to find the
+     * requested data within the stripes.
+     * @return The integer count
+     */
+    @Override
+    public int getCacheMisses() {
+        return this.missCount.intValue();
+    }
+    
+    /**
+     * Returns the number of times the bridge has had to read from the disk.
+     * @return The integer count
+     */
+    @Override
+    public int getDiskReads() {
+        return this.readCount.intValue();
+    }
+    
+    /**
+     * Returns the number of times the bridge has had to write to the disk.
+     * @return The integer count
+     */
+    @Override
+    public int getDiskWrites() {
+        return this.writeCount.intValue();
+    }
+    
+    /**
+     * Returns the list of block IDs, one stripe after another.
+     * @return The String representing the list
+     */
+    @Override
+    public String getBlockIDs() {
+        StringBuilder sb = new StringBuilder();
+        for (BufferPool stripe : this.stripes) {
+            synchronized (stripe) {
+                sb.append(stripe.getIDList());
+            }
+        }
+        return sb.toString();
+    }
+    
+    // =====================================================================
+    // = PRIVATE METHODS                                                   =
+    // =====================================================================
+    
+    /**
+     * Returns the stripe that holds the provided block.
+     * @param block The block number
+     * @return The buffer pool of the stripe
+     */
+    private BufferPool getStripe(int block) {
+        return this.stripes[block % this.stripes.length];
+    }
+    
+    /**
+     * Returns the buffer holding the provided index, loading it if needed, and
+     * pins it. Waits if every buffer of the stripe is pinned, or if the block
+     * is being read or written by another thread.
+     * @param index The index to be contained in the buffer
+     * @return The pinned buffer
+     */
+    private BufferPool.Buffer pin(int index) throws IOException {
+        int block = index / this.blockSize;
+        int position = block * this.blockSize;
+        BufferPool stripe = this.getStripe(block);
+        HashSet<Integer> busy = this.busyBlocks.get(block % this.stripes.length);
+        BufferPool.Buffer buffer = null;
+        int oldBlock = -1;
+        synchronized (stripe) {
+            // Find the block, or a buffer to load it into
+            while (true) {
+                if (!busy.contains(block)) {
+                    BufferPool.Buffer found = stripe.getBufferAt(index);
+                    if (found != null) {
+                        this.hitCount.increment();
+                        if (this.monitor != null) this.monitor.recordAccess(block);
+                        found.pin();
+                        return found;
+                    }
+                    boolean replacing = stripe.isFull();
+                    buffer = stripe.evict(position);
+                    if (buffer != null) {
+                        if (this.monitor != null && replacing) {
+                            this.monitor.recordEviction(BridgeMonitor.EVICT_MISS, buffer.isDirty());
+                        }
+                        break;
+                    }
+                }
+                
+                // Wait for a buffer to be released or the block to be loaded
+                try {
+                    stripe.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for a buffer", ex);
+                }
+            }
+            
+            // Claim the new block (and the old one if it must be written), so
+            // other threads wait for them instead of reading stale bytes, and
+            // place the pinned buffer into the pool ahead of loading it
+            if (buffer.isDirty()) {
+                oldBlock = buffer.getBytePosition() / this.blockSize;
+                busy.add(oldBlock);
+            }
+            busy.add(block);
+            stripe.insert(buffer, position);
+            buffer.pin();
+            this.missCount.increment();
+            if (this.monitor != null) this.monitor.recordAccess(block);
+        }
+        
+        // Write the old block if modified, then load the new one
+        try {
+            if (oldBlock >= 0) this.writeBlock(oldBlock * this.blockSize, buffer.getData());
+            this.readBlock(position, buffer.getData());
+        } finally {
+            synchronized (stripe) {
+                busy.remove(block);
+                if (oldBlock >= 0) busy.remove(oldBlock);
+                stripe.notifyAll();
+            }
+        }
+        return buffer;
+    }
+    
+    /**
+     * Releases the pin on the buffer, waking any thread waiting for one.
+     * @param buffer The pinned buffer
+     * @param modified Whether or not the bytes of the buffer were changed
+     */
+    private void unpin(BufferPool.Buffer buffer, boolean modified) {
+        BufferPool stripe = this.getStripe(buffer.getBytePosition() / this.blockSize);
+        synchronized (stripe) {
+            if (modified) buffer.makeDirty();
+            buffer.unpin();
+            if (!buffer.isPinned()) stripe.notifyAll();
+        }
+    }
+    
+    /**
+     * Reads the block at the provided position into the provided view of a
+     * buffer, zeroing any part of it past the end of the file.
+     * @param position The byte position of the block
+     * @param target The view of the buffer to read the block into
+     */
+    private void readBlock(int position, ByteBuffer target) throws IOException {
+        long start = (this.monitor != null) ? System.nanoTime() : 0;
+        FileChannel channel = this.rfAccess.getChannel();
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) break;
+        }
+        while (target.hasRemaining()) target.put((byte) 0);
+        if (this.monitor != null) this.monitor.recordRead(System.nanoTime() - start);
+        this.readCount.increment();
+    }
+    
+    /**
+     * Writes the block to the file at the provided position.
+     * @param position The byte position of the block
+     * @param source The view of the buffer holding the block
+     */
+    private void writeBlock(int position, ByteBuffer source) throws IOException {
+        long start = (this.monitor != null) ? System.nanoTime() : 0;
+        FileChannel channel = this.rfAccess.getChannel();
+        while (source.hasRemaining()) {
+            channel.write(source, position + source.position());
+        }
+        if (this.monitor != null) this.monitor.recordWrite(System.nanoTime() - start);
+        this.writeCount.increment();
+    }
+}
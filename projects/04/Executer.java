@@ -1,9 +1,17 @@
  
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Utilizes a parse to read a file and execute various commands.
@@ -14,6 +22,10 @@ public class Executer {
     private MemPool memPool;
     private PRQuadTree<CityNode> quadTree;
     private BST<String, CityNode> bsTree;
+    private ExecutorService queryThreads; // Runs FIND and SEARCH (or null)
+    private List<Future<String[]>> pendingQueries; // Output of each query
+    private PoolCompactor compactor; // Compacts the pool between commands (or null)
+    private int compactRecords; // Records moved after each command
     
     /*************************************************************************/
     /* CLASS CONSTRUCTORS                                                    */
@@ -26,16 +38,59 @@ public class Executer {
      * @param quadTree The quadtree to link with this executer
      * @param bsTree The binary search tree to link with this executer
      */
-    public Executer(MemPool memPool, PRQuadTree quadTree, BST bsTree) {
+    public Executer(MemPool memPool, PRQuadTree<CityNode> quadTree,
+                    BST<String, CityNode> bsTree) {
+        this(memPool, quadTree, bsTree, 1);
+    }
+    
+    /**
+     * Creates a new instance of the Executer class that runs consecutive FIND
+     * and SEARCH commands on the provided number of threads. The output of
+     * each command is still printed in the order of the commands. The bridge
+     * of the memory pool must be safe to use from several threads if more
+     * than one thread is used.
+     * @param memPool The memory pool associated with this executer
+     * @param quadTree The quadtree to link with this executer
+     * @param bsTree The binary search tree to link with this executer
+     * @param threads The number of threads to run queries on
+     */
+    public Executer(MemPool memPool, PRQuadTree<CityNode> quadTree,
+                    BST<String, CityNode> bsTree, int threads) {
         this.memPool = memPool;
         this.quadTree = quadTree;
         this.bsTree = bsTree;
+        this.pendingQueries = new LinkedList<Future<String[]>>();
+        this.queryThreads = null;
+        this.compactor = null;
+        this.compactRecords = 0;
+        if (threads > 1) {
+            this.queryThreads = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "query");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
     }
     
     /*************************************************************************/
     /* CLASS METHODS                                                         */
     /*************************************************************************/
     
+    /**
+     * Compacts the memory pool after each command that is not a query by
+     * moving up to the provided number of records down into the free space
+     * before them, cutting the file back as the free space reaches its end.
+     * @param records The most records to move after each command
+     */
+    public void enableCompaction(int records) {
+        if (records <= 0) return;
+        this.compactor = new PoolCompactor(this.memPool);
+        this.compactRecords = records;
+    }
+    
     /**
      * Executes commands from the file specified.
      * @param fileName The name of the file containing commands
@@ -44,11 +99,21 @@ public class Executer {
         Parser parser = new Parser(new File(fileName));
         
         String[] args = new String[3];
-        int x, y, radius, commandsExecuted = 0;
+        int x, y, commandsExecuted = 0;
         int commandType = Parser.COMMAND_NONE;
         do {
             // Parse the next command and process it
             commandType = parser.getNextCommand(args);
+            
+            // Hand queries to the query threads; their output is printed once
+            // a command that is not a query (or the end of the file) is reached
+            if (this.queryThreads != null &&
+                (commandType == Parser.COMMAND_FIND || commandType == Parser.COMMAND_SEARCH)) {
+                this.submitQuery(commandType, ++commandsExecuted, args.clone());
+                continue;
+            }
+            this.printQueries();
+            
             if (commandType != Parser.COMMAND_NONE && commandType != Parser.COMMAND_UNKNOWN &&
                 commandType != Parser.COMMAND_BLANK) System.out.print("Command " + ++commandsExecuted + ": ");
             switch (commandType) {
@@ -142,7 +207,7 @@ public class Executer {
                         CityNode removedNode = null;
                         do {
                             if (removedNode != null)
-                                bsTree.insert(removedNode.getNamePtr(), nodeToRemoveHandle);
+                                bsTree.insert(removedNode.getNamePtr(), removedNode.getHandle());
                             removedNode = bsTree.remove(nodeToRemove.getName());
                         } while (!nodeToRemove.equals(removedNode));
                         System.out.println(">> Removed " + args[0] + ", " +
@@ -171,62 +236,11 @@ public class Executer {
                     break;
                     
                 case Parser.COMMAND_FIND:
-                    System.out.println("FIND " + args[0]);
-                    List<CityNode> cities = bsTree.findAll(args[0]);
-                    System.out.println(">> City record(s) found:");
-                    for (CityNode c : cities) {
-                        System.out.println(">> " + c.getX_Int() + ", " + c.getY_Int() +
-                                           ", " + c.getName());
-                    }
-                    if (cities.isEmpty()) System.out.println(">> No record exists");
+                    this.find(args[0], System.out);
                     break;
                     
                 case Parser.COMMAND_SEARCH:
-                    System.out.println("SEARCH " + args[0] + " " +
-                                       args[1] + " " + args[2]);
-                    
-                    // Assert the parameters are okay
-                    x = Integer.parseInt(args[0]);
-                    y = Integer.parseInt(args[1]);
-                    radius = Integer.parseInt(args[2]);
-                    
-                    // Check if x is within bounds
-                    if (Math.abs(x) >= 16384) {
-                        System.err.println(">> Search failed: bad X coordinate");
-                        break;
-                    }
-                    
-                    // Check if y is within bounds
-                    if (Math.abs(y) >= 16384) {
-                        System.err.println(">> Search failed: bad Y coordinate");
-                        break;
-                    }
-                    
-                    // Check if radius is within bounds
-                    if (radius < 0 || radius >= 16384) {
-                        System.err.println(">> Search failed: bad Radius value");
-                        break;
-                    }
-                    
-                    LinkedList<Integer> elements = new LinkedList<Integer>();
-                    int nodesSearched = quadTree.search(Integer.parseInt(args[0]),
-                                                        Integer.parseInt(args[1]),
-                                                        Integer.parseInt(args[2]),
-                                                        elements);
-                    // Print out a generic message
-                    System.out.println(">> City record(s) found:");
-                    
-                    // Check to see if any elements were found
-                    if (elements.isEmpty()) {
-                        System.out.println(">> No such record");
-                    } else {
-                        for (Integer e_Handle : elements) {
-                            System.out.println(">> " + CityNode.create(memPool, e_Handle).toString());
-                        }
-                    }
-                    
-                    // Print out the nodes traversed
-                    System.out.println(">> " + nodesSearched + " nodes searched");
+                    this.search(args, System.out, System.err);
                     break;
                     
                 case Parser.COMMAND_DEBUG:
@@ -268,6 +282,12 @@ public class Executer {
                     // Do nothing
             }
             
+            // Close some of the holes left in the pool before the next command
+            if (this.compactor != null &&
+                commandType != Parser.COMMAND_FIND && commandType != Parser.COMMAND_SEARCH) {
+                this.compactor.compact(quadTree, bsTree, this.compactRecords);
+            }
+            
             // Add a new line to make things more readable
             System.out.println();
         } while (commandType != Parser.COMMAND_NONE);
@@ -276,4 +296,127 @@ public class Executer {
         memPool.flush();
     }
     
+    /*************************************************************************/
+    /* PRIVATE METHODS                                                       */
+    /*************************************************************************/
+    
+    /**
+     * Executes the FIND command, printing all cities with the provided name.
+     * @param name The name of the cities to find
+     * @param out The stream to print the results through
+     */
+    private void find(String name, PrintStream out) throws FileNotFoundException, IOException {
+        out.println("FIND " + name);
+        List<CityNode> cities = bsTree.findAll(name);
+        out.println(">> City record(s) found:");
+        for (CityNode c : cities) {
+            out.println(">> " + c.getX_Int() + ", " + c.getY_Int() +
+                        ", " + c.getName());
+        }
+        if (cities.isEmpty()) out.println(">> No record exists");
+    }
+    
+    /**
+     * Executes the SEARCH command, printing all cities within the radius of
+     * the coordinates.
+     * @param args The x coordinate, y coordinate and radius
+     * @param out The stream to print the results through
+     * @param err The stream to print errors through
+     */
+    private void search(String[] args, PrintStream out, PrintStream err) throws FileNotFoundException, IOException {
+        out.println("SEARCH " + args[0] + " " +
+                    args[1] + " " + args[2]);
+        
+        // Assert the parameters are okay
+        int x = Integer.parseInt(args[0]);
+        int y = Integer.parseInt(args[1]);
+        int radius = Integer.parseInt(args[2]);
+        
+        // Check if x is within bounds
+        if (Math.abs(x) >= 16384) {
+            err.println(">> Search failed: bad X coordinate");
+            return;
+        }
+        
+        // Check if y is within bounds
+        if (Math.abs(y) >= 16384) {
+            err.println(">> Search failed: bad Y coordinate");
+            return;
+        }
+        
+        // Check if radius is within bounds
+        if (radius < 0 || radius >= 16384) {
+            err.println(">> Search failed: bad Radius value");
+            return;
+        }
+        
+        LinkedList<Integer> elements = new LinkedList<Integer>();
+        int nodesSearched = quadTree.search(x, y, radius, elements);
+        
+        // Print out a generic message
+        out.println(">> City record(s) found:");
+        
+        // Check to see if any elements were found
+        if (elements.isEmpty()) {
+            out.println(">> No such record");
+        } else {
+            for (Integer e_Handle : elements) {
+                out.println(">> " + CityNode.create(memPool, e_Handle).toString());
+            }
+        }
+        
+        // Print out the nodes traversed
+        out.println(">> " + nodesSearched + " nodes searched");
+    }
+    
+    /**
+     * Runs the FIND or SEARCH command on the query threads, keeping its output
+     * until it is printed.
+     * @param commandType The type of the command (FIND or SEARCH)
+     * @param commandNumber The number of the command
+     * @param args The arguments of the command
+     */
+    private void submitQuery(final int commandType, final int commandNumber, final String[] args) {
+        this.pendingQueries.add(this.queryThreads.submit(new Callable<String[]>() {
+            @Override
+            public String[] call() throws IOException {
+                ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+                ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+                PrintStream out = new PrintStream(outBytes);
+                PrintStream err = new PrintStream(errBytes);
+                
+                out.print("Command " + commandNumber + ": ");
+                if (commandType == Parser.COMMAND_FIND) {
+                    find(args[0], out);
+                } else {
+                    search(args, out, err);
+                }
+                out.println();
+                
+                out.flush();
+                err.flush();
+                return new String[] { outBytes.toString(), errBytes.toString() };
+            }
+        }));
+    }
+    
+    /**
+     * Waits for the queries handed to the query threads and prints their
+     * output in the order they were given.
+     */
+    private void printQueries() throws IOException {
+        for (Future<String[]> query : this.pendingQueries) {
+            try {
+                String[] output = query.get();
+                System.out.print(output[0]);
+                System.err.print(output[1]);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a query", ex);
+            } catch (ExecutionException ex) {
+                throw new IOException(ex.getCause());
+            }
+        }
+        this.pendingQueries.clear();
+    }
 }
@@ -0,0 +1,138 @@
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * Represents the least frequently used policy. Blocks are grouped by their
+ * access count and the block with the lowest count is removed first, with
+ * ties broken by removing the least recently used of them. All operations
+ * run in constant time, except that selecting a victim right after another
+ * (as pinned blocks are passed over) scans the counts for the new lowest.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public class LFUPolicy extends EvictionPolicy {
+    
+    private HashMap<Integer, Integer> counts; // Block number to access count
+    private HashMap<Integer, LinkedHashSet<Integer>> groups; // Count to blocks
+    private int minCount; // The lowest count of any tracked block
+    private HashMap<Integer, Integer> victims; // Counts of selected victims
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new, empty least frequently used policy.
+     */
+    public LFUPolicy() {
+        this.counts = new HashMap<Integer, Integer>();
+        this.groups = new HashMap<Integer, LinkedHashSet<Integer>>();
+        this.minCount = 0;
+        this.victims = new HashMap<Integer, Integer>();
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    @Override
+    public String getName() {
+        return LFU;
+    }
+    
+    @Override
+    public void blockAdded(int block) {
+        // The victims selected before the block was loaded are gone for good
+        this.victims.clear();
+        this.counts.put(block, 1);
+        this.getGroup(1).add(block);
+        this.minCount = 1;
+    }
+    
+    @Override
+    public void blockAccessed(int block) {
+        Integer count = this.counts.get(block);
+        if (count == null) return;
+        
+        // Move the block up to the next count
+        LinkedHashSet<Integer> group = this.groups.get(count);
+        group.remove(block);
+        if (group.isEmpty()) {
+            this.groups.remove(count);
+            if (this.minCount == count) ++this.minCount;
+        }
+        this.counts.put(block, count + 1);
+        this.getGroup(count + 1).add(block);
+    }
+    
+    @Override
+    public int selectVictim(int incomingBlock) {
+        // The lowest count is only out of date after another victim emptied
+        // its group without a block being added or restored since
+        LinkedHashSet<Integer> group = this.groups.get(this.minCount);
+        if (group == null) {
+            this.minCount = this.findMinCount();
+            group = this.groups.get(this.minCount);
+        }
+        Iterator<Integer> it = group.iterator();
+        int victim = it.next();
+        it.remove();
+        if (group.isEmpty()) this.groups.remove(this.minCount);
+        
+        // Remember the count in case the victim is restored
+        this.victims.put(victim, this.counts.remove(victim));
+        return victim;
+    }
+    
+    @Override
+    public void blockRestored(int block) {
+        Integer count = this.victims.remove(block);
+        if (count == null) {
+            this.blockAdded(block);
+            return;
+        }
+        this.counts.put(block, count);
+        this.getGroup(count).add(block);
+        if (this.counts.size() == 1 || count < this.minCount) this.minCount = count;
+    }
+    
+    @Override
+    public void clear() {
+        this.counts.clear();
+        this.groups.clear();
+        this.victims.clear();
+        this.minCount = 0;
+    }
+    
+    // =====================================================================
+    // = PRIVATE METHODS                                                   =
+    // =====================================================================
+    
+    /**
+     * Returns the lowest count of any tracked block (or 0 if there are none).
+     * Only needed once the group with the lowest count has emptied.
+     * @return The lowest count
+     */
+    private int findMinCount() {
+        int min = 0;
+        for (int count : this.groups.keySet()) {
+            if (min == 0 || count < min) min = count;
+        }
+        return min;
+    }
+    
+    /**
+     * Returns the group of blocks with the provided count, creating it if
+     * it does not exist.
+     * @param count The access count of the group
+     * @return The group of blocks
+     */
+    private LinkedHashSet<Integer> getGroup(int count) {
+        LinkedHashSet<Integer> group = this.groups.get(count);
+        if (group == null) {
+            group = new LinkedHashSet<Integer>();
+            this.groups.put(count, group);
+        }
+        return group;
+    }
+}
@@ -0,0 +1,259 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Represents a buffer bridge that memory maps the file instead of reading
+ * blocks into a buffer pool. Bytes are read and written directly in the
+ * mapping, leaving the caching of blocks to the operating system's page cache.
+ * The mapping grows in chunks as the memory pool grows and the file is cut
+ * back to the blocks actually written whenever the bridge is flushed.
+ * 
+ * Every access served by the mapping counts as a cache hit, (re)mapping the
+ * file counts as a disk read and forcing it to disk counts as a disk write.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public class MappedBufferBridge extends BufferBridge {
+    
+    /**
+     * Name used to select this bridge in place of an eviction policy.
+     */
+    public static final String MAPPED = "MAPPED";
+    
+    // The number of bytes the mapping grows by at a time
+    private static final int CHUNK_SIZE = 1 << 20;
+    
+    private MappedByteBuffer map; // The mapping (null until first used)
+    private int mappedSize; // The number of bytes currently mapped
+    private int fileLength; // The length of the file when flushed
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new instance of the mapped buffer bridge class that targets
+     * the specified file.
+     * @param file The file to access
+     * @param blockSize The size of each block in bytes
+     */
+    public MappedBufferBridge(File file, int blockSize) throws FileNotFoundException, IOException {
+        super(file, 1, blockSize);
+        this.map = null;
+        this.mappedSize = 0;
+        this.fileLength = (int) this.rfAccess.length();
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Retrieve the byte at the provided index.
+     * @param index The index to find the byte
+     * @return The byte retrieved
+     */
+    @Override
+    public byte getByte(int index) throws IOException {
+        this.ensureMapped(index + 1);
+        ++this.cacheHits;
+        return this.map.get(index);
+    }
+    
+    /**
+     * Retrieves the bytes starting at the provided index up the the end of the
+     * size indicated by the size header.
+     * @param index The index of the start of the array to return
+     * @return The size of the byte array returned (not including the header)
+     */
+    @Override
+    public int get(int index, byte[] byteArray) throws IOException {
+        int totalBytes = this.getLength(index);
+        
+        // Exit if the byte array is null
+        if (byteArray == null) return totalBytes;
+        
+        // Copy the size header and the record in one go
+        int totalSize = getHeaderSize(totalBytes) + totalBytes;
+        this.ensureMapped(index + totalSize);
+        ByteBuffer view = this.map.duplicate();
+        view.position(index);
+        view.get(byteArray, 0, totalSize);
+        return totalBytes;
+    }
+    
+    /**
+     * Sets the byte at the specified index.
+     * @param index The index of the byte to set
+     * @param value The value of the byte
+     */
+    @Override
+    public void writeByte(int index, byte value) throws IOException {
+        this.ensureMapped(index + 1);
+        ++this.cacheHits;
+        this.map.put(index, value);
+        this.extendFile(index + 1);
+    }
+    
+    /**
+     * Copies the range of bytes starting at the provided index into the array.
+     * @param index The index of the first byte to read
+     * @param bArray The array to copy the bytes into
+     * @param offset The position in the array of the first byte
+     * @param length The total number of bytes to read
+     */
+    @Override
+    public void read(int index, byte[] bArray, int offset, int length) throws IOException {
+        this.ensureMapped(index + length);
+        ++this.cacheHits;
+        ByteBuffer view = this.map.duplicate();
+        view.position(index);
+        view.get(bArray, offset, length);
+    }
+    
+    /**
+     * Writes the range of the array to the mapping at the starting index.
+     * @param index The index of the first byte to write
+     * @param bArray The array of bytes
+     * @param offset The position in the array of the first byte
+     * @param length The total number of bytes to write
+     */
+    @Override
+    public void write(int index, byte[] bArray, int offset, int length) throws IOException {
+        this.ensureMapped(index + length);
+        ++this.cacheHits;
+        ByteBuffer view = this.map.duplicate();
+        view.position(index);
+        view.put(bArray, offset, length);
+        this.extendFile(index + length);
+    }
+    
+    /**
+     * Sets every byte in the range starting at the provided index to the value.
+     * @param index The index of the first byte to set
+     * @param length The total number of bytes to set
+     * @param value The value of the bytes
+     */
+    @Override
+    public void fill(int index, int length, byte value) throws IOException {
+        this.ensureMapped(index + length);
+        ++this.cacheHits;
+        for (int i = index; i < index + length; ++i) {
+            this.map.put(i, value);
+        }
+        this.extendFile(index + length);
+    }
+    
+    /**
+     * Forces all changes to the disk, cuts the file back to the blocks that
+     * have been written and releases the mapping (it is remapped when next
+     * used).
+     */
+    @Override
+    public void flush() throws IOException {
+        // Nothing to do once the file has been closed
+        if (!this.rfAccess.getChannel().isOpen()) return;
+        
+        if (this.map != null) {
+            this.map.force();
+            ++this.diskWrites;
+            this.map = null;
+            this.mappedSize = 0;
+        }
+        if (this.rfAccess.length() != this.fileLength) {
+            this.rfAccess.setLength(this.fileLength);
+        }
+    }
+    
+    /**
+     * Cuts the file back to the provided length, rounded up to a whole block,
+     * by flushing the bridge once the file would lose at least a block (the
+     * mapping must be released before the file shrinks under it).
+     * @param length The number of bytes to keep
+     */
+    @Override
+    public void truncate(int length) throws IOException {
+        int end = ((length + this.blockSize - 1) / this.blockSize) * this.blockSize;
+        if (end >= this.fileLength) return;
+        this.fileLength = end;
+        this.flush();
+    }
+    
+    /**
+     * Records that the file holds the provided length, rounded up to a whole
+     * block, so the file is extended to it when the bridge is next flushed
+     * (the mapping itself already grows in whole chunks).
+     * @param length The number of bytes the file must hold
+     */
+    @Override
+    public void preallocate(int length) {
+        this.extendFile(length);
+    }
+    
+    /**
+     * Opens the file for reading and writing associated with this buffer bridge.
+     */
+    @Override
+    public void open() throws IOException {
+        super.open();
+        this.fileLength = (int) this.rfAccess.length();
+    }
+    
+    /**
+     * Does nothing, as the operating system already reads mapped pages ahead
+     * of their use.
+     * @param index The index of the first byte
+     * @param length The total number of bytes
+     */
+    @Override
+    public void prefetch(int index, int length) {
+    }
+    
+    /**
+     * Returns the name used to select this bridge.
+     * @return The String name
+     */
+    @Override
+    public String getPolicyName() {
+        return MAPPED;
+    }
+    
+    /**
+     * Returns an empty list as no buffers are held by this bridge.
+     * @return The empty String
+     */
+    @Override
+    public String getBlockIDs() {
+        return "";
+    }
+    
+    // =====================================================================
+    // = PRIVATE METHODS                                                   =
+    // =====================================================================
+    
+    /**
+     * Grows the mapping (in whole chunks) until it covers the provided number
+     * of bytes from the start of the file.
+     * @param end The number of bytes that must be mapped
+     */
+    private void ensureMapped(int end) throws IOException {
+        if (end <= this.mappedSize) return;
+        this.mappedSize = ((end + CHUNK_SIZE - 1) / CHUNK_SIZE) * CHUNK_SIZE;
+        this.map = this.rfAccess.getChannel().map(
+                FileChannel.MapMode.READ_WRITE, 0, this.mappedSize);
+        ++this.diskReads;
+    }
+    
+    /**
+     * Records that the file holds data up to the provided byte, rounded up to
+     * a whole block like the buffer pool would write it.
+     * @param end The number of bytes from the start of the file written
+     */
+    private void extendFile(int end) {
+        int blockEnd = ((end + this.blockSize - 1) / this.blockSize) * this.blockSize;
+        if (blockEnd > this.fileLength) this.fileLength = blockEnd;
+    }
+}
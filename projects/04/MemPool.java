@@ -1,6 +1,9 @@
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * This class represents the memory pool and provides functions to insert,
@@ -9,9 +12,13 @@ import java.io.IOException;
  */
 public class MemPool {
     
-    private LList<FreeSpace> freeBlocks;
+    private TreeMap<Integer, TreeSet<Integer>> freeBlocks; // Free handles by size
+    private TreeMap<Integer, Integer> freeAddresses; // Free sizes by handle
+    private int totalFreeBlocks;
     private BufferBridge bridge;
     private int poolSize;
+    private int growthMinimum; // Fewest bytes the pool grows by at a time
+    private int growthPercent; // Percent of its size the pool grows by
     
     /**
      * Creates a new instance of the Memory Pool with the specified number
@@ -24,10 +31,14 @@ public class MemPool {
         //byteArray = new byte[poolSize];
         this.poolSize = poolSize;
         this.bridge = bridge;
+        this.growthMinimum = 0;
+        this.growthPercent = 0;
         
         // Create the free block representing the entire memory pool
-        freeBlocks = new LList<FreeSpace>();
-        freeBlocks.append(new FreeSpace(0, poolSize));
+        freeBlocks = new TreeMap<Integer, TreeSet<Integer>>();
+        freeAddresses = new TreeMap<Integer, Integer>();
+        totalFreeBlocks = 0;
+        addFreeSpace(new FreeSpace(0, poolSize));
     }
     
     /**
@@ -38,6 +49,21 @@ public class MemPool {
         return this.poolSize;
     }
     
+    /**
+     * Sets how much the pool grows by when no free space is large enough for
+     * a record: the largest of the space the record needs, the minimum, and
+     * the percent of the current size of the pool. The bytes grown past the
+     * record are left free for the records that follow, and the file is
+     * extended to cover them in one step. Both are 0 unless set, which grows
+     * the pool by exactly the space of each record.
+     * @param minimum The fewest bytes to grow by
+     * @param percent The percent of the size of the pool to grow by
+     */
+    public void setGrowth(int minimum, int percent) {
+        this.growthMinimum = Math.max(minimum, 0);
+        this.growthPercent = Math.max(percent, 0);
+    }
+    
     /**
      * Returns the bridge associated with this pool.
      * @return The buffer bridge object
@@ -53,55 +79,37 @@ public class MemPool {
      * @return The handle pointing to the position in the byte array
      */
     public int insert(byte[] space, int size) throws IOException {
-        // Locate slot using bestfit algorithm
-        int startLocation = findOpenSlot(size);
-        int totalSize = size + 1; // Factors in the size byte
-        
-        // Insert the information into the free space
-        if (startLocation != -1) {
-            // Move to the free block with the matching handle
-            freeBlocks.moveToPos(findBestSpace(size));
+        int headerSize = BufferBridge.getHeaderSize(size);
+        int totalSize = size + headerSize; // Factors in the size header
+        
+        // Locate slot using bestfit algorithm, growing the pool if no free
+        // space is large enough (the space grown is then the only fit)
+        FreeSpace bestSpace = findBestSpace(size);
+        if (bestSpace == null) bestSpace = grow(totalSize);
+        int startLocation = bestSpace.getHandlePosition();
+        
+        // Get space left over after new record inserted
+        int leftoverSpace = bestSpace.getSpace() - totalSize;
+        
+        // Remove the free space from the index
+        removeFreeSpace(bestSpace);
+        
+        // Insert new record at postion, the header indicates the size
+        // of the record NOT including the header itself
+        bridge.writeLength(startLocation, size);
+        bridge.write(startLocation + headerSize, space, 0, size);
+        
+        // Check if need to create a new free space block to represent the
+        // leftover space and insert it into the list if created
+        if (leftoverSpace > 0) {
+            FreeSpace remainingSpace = 
+                    new FreeSpace(startLocation + totalSize, leftoverSpace);
             
-            // Get space left over after new record inserted
-            int leftoverSpace = freeBlocks.getValue().getSpace() - totalSize;
-            
-            // Remove the free space from the list
-            freeBlocks.remove();
-            
-            // Insert new record at postion, the first byte indicates the size
-            // of the record NOT including the size byte itself
-            byte[] temp = new byte[size + 1];
-            bridge.writeByte(startLocation, (byte) size);
-            for (int i = 0; i < size; ++i) {
-                bridge.writeByte(startLocation + i + 1, space[i]);
-            }
-            
-            // Check if need to create a new free space block to represent the
-            // leftover space and insert it into the list if created
-            if (leftoverSpace > 0) {
-                FreeSpace remainingSpace = 
-                        new FreeSpace(startLocation + totalSize, leftoverSpace);
-                
-                // Add to the list of free spaces and resort the list
-                freeBlocks.append(remainingSpace);
-                sortFreeSpace();
-                mergeFreeSpace();
-            }
-        } else {
-            freeBlocks.moveToStart();
-            if (freeBlocks.length() == 1 && freeBlocks.getValue().getSpace() == 0) {
-                freeBlocks.remove();
-            }
-            freeBlocks.append(new FreeSpace(poolSize, size + 1));
-            sortFreeSpace();
-            mergeFreeSpace();
-            poolSize += size + 1;
-            
-            // Recursively attempt to add space again
-            startLocation = insert(space, size);
+            // Add to the index of free spaces
+            mergeFreeSpace(remainingSpace);
         }
         
-        // Return the handle of the new record (or -1 if not created)
+        // Return the handle of the new record
         return startLocation;
     }
     
@@ -110,25 +118,24 @@ public class MemPool {
      * @param handle The integer position of the start of the record to remove
      */
     public void remove(int handle) throws FileNotFoundException, IOException {
-        int space = bridge.get(handle, null) + 1;
+        int recordSize = bridge.get(handle, null);
+        int space = BufferBridge.getHeaderSize(recordSize) + recordSize;
         
         // Create a new free space block to fill in this space
-        // Adds the single byte used to indicate size to the total bytes
+        // Adds the header used to indicate size to the total bytes
         FreeSpace newSpace = 
                 new FreeSpace(handle,
                 space);
         
         // Clear bytes associated with the record
-        // Adds the single byte used to indicate size to the total bytes
+        // Adds the header used to indicate size to the total bytes
         clearBytes(
                 handle, // Position
                 space
         );
         
-        // Insert the free space into the list of spaces, sort, and merge it
-        freeBlocks.append(newSpace);
-        sortFreeSpace();
-        mergeFreeSpace();
+        // Insert the free space into the index of spaces and merge it
+        mergeFreeSpace(newSpace);
     }
     
     /**
@@ -144,13 +151,128 @@ public class MemPool {
         int recordSize = bridge.get(handle, null);
         
         // Set the space array to the bytes (not including size)
-        for (int i = 0; i < size &&  i < recordSize; ++i) {
-            space[i] = bridge.getByte(handle + i + 1);
-        }
+        bridge.read(handle + BufferBridge.getHeaderSize(recordSize), space, 0,
+                    Math.min(size, recordSize));
         
         return recordSize;
     }
     
+    /**
+     * Returns the array of bytes representing the record pointed to by the
+     * provided handle, whatever its size.
+     * @param handle The handle pointing to the record
+     * @return The bytes of the record
+     */
+    public byte[] get(int handle) throws IOException {
+        int recordSize = bridge.get(handle, null);
+        byte[] space = new byte[recordSize];
+        bridge.read(handle + BufferBridge.getHeaderSize(recordSize), space, 0, recordSize);
+        
+        return space;
+    }
+    
+    /**
+     * Writes the provided bytes over the record pointed to by the handle,
+     * keeping its handle. The record must already be of the same size.
+     * @param handle The handle pointing to the record
+     * @param space The new bytes of the record
+     * @param size The size of the record
+     */
+    public void update(int handle, byte[] space, int size) throws IOException {
+        int recordSize = bridge.get(handle, null);
+        if (recordSize != size) {
+            throw new IOException("The record at " + handle + " holds " +
+                                  recordSize + " bytes, not " + size);
+        }
+        
+        bridge.write(handle + BufferBridge.getHeaderSize(size), space, 0, size);
+    }
+    
+    /**
+     * Returns the location of the first free space of the pool, which is
+     * where slide moves the next record to, or -1 if there is no free space.
+     * @return The location
+     */
+    public int getFirstFreeLocation() {
+        return freeAddresses.isEmpty() ? -1 : freeAddresses.firstKey();
+    }
+    
+    /**
+     * Returns the handle of the record that follows the first free space of
+     * the pool, which is the record slide moves next, or -1 if there is no
+     * free space or the first free space ends the pool.
+     * @return The handle of the record
+     */
+    public int getNextSlide() {
+        Map.Entry<Integer, Integer> first = freeAddresses.firstEntry();
+        if (first == null) return -1;
+        
+        int handle = first.getKey() + first.getValue();
+        return (handle < poolSize) ? handle : -1;
+    }
+    
+    /**
+     * Moves the record that follows the first free space down to the start
+     * of that space, so the free space moves up past the record and merges
+     * with any free space there. Whatever pointed to the record must then be
+     * given its new handle.
+     * @return The new handle of the record (or -1 if no record was moved)
+     */
+    public int slide() throws IOException {
+        int handle = getNextSlide();
+        if (handle == -1) return -1;
+        int start = freeAddresses.firstKey();
+        int space = freeAddresses.get(start);
+        
+        // Copy the header and the record (the two ranges may overlap)
+        int recordSize = bridge.get(handle, null);
+        int totalSize = BufferBridge.getHeaderSize(recordSize) + recordSize;
+        byte[] record = new byte[totalSize];
+        bridge.read(handle, record, 0, totalSize);
+        bridge.write(start, record, 0, totalSize);
+        
+        // Zero the bytes left behind and free them in place of the old space
+        clearBytes(start + totalSize, space);
+        removeFreeSpace(new FreeSpace(start, space));
+        mergeFreeSpace(new FreeSpace(start + totalSize, space));
+        
+        return start;
+    }
+    
+    /**
+     * Cuts the free space that ends the pool (if any) off the pool, and the
+     * file back to the blocks the pool still uses. When the pool grows by
+     * more than each record (see setGrowth), one growth step of that space is
+     * kept, so the next insert does not grow the pool straight back.
+     * @return The number of bytes cut off
+     */
+    public int trim() throws IOException {
+        Map.Entry<Integer, Integer> last = freeAddresses.lastEntry();
+        if (last == null || last.getKey() + last.getValue() != poolSize) return 0;
+        
+        int kept = (int) Math.min(last.getValue(), getGrowthStep(last.getKey()));
+        int cut = last.getValue() - kept;
+        if (cut == 0) return 0;
+        
+        removeFreeSpace(new FreeSpace(last.getKey(), last.getValue()));
+        if (kept > 0) addFreeSpace(new FreeSpace(last.getKey(), kept));
+        poolSize -= cut;
+        bridge.truncate(poolSize);
+        
+        return cut;
+    }
+    
+    /**
+     * Hints that the record pointed to by the provided handle will be read
+     * soon, so the block holding its start is read in the background if the
+     * bridge reads ahead.
+     * @param handle The handle pointing to the record (ignored if -1)
+     */
+    public void prefetch(int handle) throws IOException {
+        if (handle == -1) return;
+        bridge.prefetch(handle, 1);
+    }
+    
     /**
      * Retrieves the starting byte position of a free space.
      * @param index The free space in the list whose location to retrieve
@@ -158,16 +280,12 @@ public class MemPool {
      */
     public int getFreeSpaceLocation(int index) {
         // Check if the index is within the bounds of the array
-        if (index < 0 || index > freeBlocks.length() - 1) {
+        if (index < 0 || index > totalFreeBlocks - 1) {
             System.err.println("Free space index is out of bounds!");
             return -1;
         }
         
-        freeBlocks.moveToPos(index);
-        int location = freeBlocks.getValue().getHandlePosition();
-        freeBlocks.moveToStart();
-        
-        return location;
+        return getFreeSpace(index).getHandlePosition();
     }
     
     /**
@@ -177,16 +295,12 @@ public class MemPool {
      */
     public int getFreeSpaceSize(int index) {
         // Check if the index is within the bounds of the array
-        if (index < 0 || index > freeBlocks.length() - 1) {
+        if (index < 0 || index > totalFreeBlocks - 1) {
             System.err.println("Free space index is out of bounds!");
             return -1;
         }
         
-        freeBlocks.moveToPos(index);
-        int size = freeBlocks.getValue().getSpace();
-        freeBlocks.moveToStart();
-        
-        return size;
+        return getFreeSpace(index).getSpace();
     }
     
     /**
@@ -195,7 +309,7 @@ public class MemPool {
      * @return The total number of free blocks
      */
     public int getTotalFreeBlocks() {
-        return freeBlocks.length();
+        return totalFreeBlocks;
     }
     
     /**
@@ -215,80 +329,46 @@ public class MemPool {
     public void printFreeBlocks(java.io.OutputStream os) throws IOException {
         int n = 0;
         os.write("Free Blocks:\n".getBytes());
-        freeBlocks.moveToStart();
-        while (freeBlocks.currPos() != freeBlocks.length()) {
-            os.write(("--> " + n + ":").getBytes());
-            os.write((" Handle=" + freeBlocks.getValue().getHandlePosition()).getBytes());
-            os.write((" Size=" + freeBlocks.getValue().getSpace()).getBytes());
-            os.write('\n');
-            freeBlocks.next();
-            ++n;
+        for (Map.Entry<Integer, TreeSet<Integer>> entry : freeBlocks.descendingMap().entrySet()) {
+            for (int handle : entry.getValue()) {
+                os.write(("--> " + n + ":").getBytes());
+                os.write((" Handle=" + handle).getBytes());
+                os.write((" Size=" + entry.getKey()).getBytes());
+                os.write('\n');
+                ++n;
+            }
         }
         if (n == 0) os.write('\n');
-        
-        freeBlocks.moveToStart();
     }
     
     /**
-     * Returns the index of best free space to place the
-     * specified number of bytes.
+     * Returns the best free space to place the specified number of bytes:
+     * the smallest space large enough for the bytes and the size header, and
+     * the earliest of the spaces of that size.
      * @param space The number of bytes to potentially place
-     * @return The location of the free space in the list of spaces
+     * @return The free space (or null if none is large enough)
      */
-    private int findBestSpace(int space) {
-        int currentSpace = -1;
-        int freeSize = -1;
-        
-        // Exit early if there is no free space
-        if (freeBlocks.length() == 0) return -1;
-        
-        // Start at beginning to search for free block
-        freeBlocks.moveToStart();
-        freeSize = freeBlocks.getValue().getSpace() + 2; // Make one larger than
-                                                         // the maximum size
-        
-        for (int i = 0; i < freeBlocks.length(); ++i) {
-            // Check if there is enough space with this block (ignores blocks
-            // of the same size as the current best block)
-            if (freeBlocks.getValue().getSpace() >= space + 1 &&
-                freeBlocks.getValue().getSpace() < freeSize) {
-                currentSpace = i;
-                freeSize = freeBlocks.getValue().getSpace();
-            } else if (freeBlocks.getValue().getSpace() < space + 1) {
-                break;
-            }
-            
-            // Check next block
-            freeBlocks.next();
-        }
+    private FreeSpace findBestSpace(int space) {
+        // Find the smallest size that fits
+        Map.Entry<Integer, TreeSet<Integer>> entry =
+                freeBlocks.ceilingEntry(space + BufferBridge.getHeaderSize(space));
+        if (entry == null) return null;
         
-        // Reset location to beginning
-        freeBlocks.moveToStart();
-        
-        // Return the location (or -1 if not found)
-        return currentSpace;
+        return new FreeSpace(entry.getValue().first(), entry.getKey());
     }
     
     /**
      * Returns an integer pointing to the available location in the byte array
-     * to store the specified number of bytes plus the size byte.
+     * to store the specified number of bytes plus the size header.
      * Returns -1 if no location is available to use.
      * @param space The number of bytes to store
      * @return The Handle to store the bytes
      */
     public int findOpenSlot(int space) {
-        int freeBlockIndex = findBestSpace(space);
-        int byteIndex = -1;
-        
-        // Get starting location of best free space in the byte array
-        if (freeBlockIndex != -1) {
-            freeBlocks.moveToPos(freeBlockIndex);
-            byteIndex = freeBlocks.getValue().getHandlePosition();
-            freeBlocks.moveToStart();
-        }
+        FreeSpace bestSpace = findBestSpace(space);
         
         // Returns the starting location of the block or -1 if there is no block
-        return byteIndex;
+        return (bestSpace != null) ? bestSpace.getHandlePosition() : -1;
     }
     
     /**
@@ -297,137 +377,122 @@ public class MemPool {
     public void flush() throws IOException {
         bridge.flush();
         freeBlocks.clear();
+        freeAddresses.clear();
+        totalFreeBlocks = 0;
         poolSize = 0;
     }
     
     /**
-     * Merges all adjacent free space blocks.
+     * Adds the free space to the index of free spaces after merging it with
+     * the free spaces ending where it starts and starting where it ends,
+     * which are looked up by handle position.
+     * @param newSpace The free space to add
+     * @return The free space added (including the spaces merged)
      */
-    private void mergeFreeSpace() {
-        // Exit if there's one or zero free blocks
-        if (freeBlocks.length() < 2) return;
-        
-        // Represents the current space comparing to all other spaces
-        // and its position in the list
-        FreeSpace currentSpace = null;
-        int currentIndexPosition = 0;
-        int currentPosition = 0;
-        int otherPosition = 0;
-        
-        // Start at beginning of free block list
-        freeBlocks.moveToStart();
-        
-        // Loop through and find the two adjacent free blocks
-        while (freeBlocks.currPos() != freeBlocks.length()) {
-            // Get the current free block and its position
-            currentSpace = freeBlocks.getValue();
-            currentPosition = freeBlocks.getValue().getHandlePosition();
-            
-            // Loop through and check all possible remaining free blocks
-            // to see if they are connected
-            for (int i = currentIndexPosition + 1; i < freeBlocks.length(); ++i) {
-                // Move to next block
-                freeBlocks.next();
-                
-                // Get the starting position of the other free block
-                otherPosition = freeBlocks.getValue().getHandlePosition();
-                
-                // Compare free space to see if adjacent
-                if (currentSpace.isAdjacent(freeBlocks.getValue())) {
-                    // Get the combined size of the two free spaces
-                    int totalSize = 
-                            currentSpace.getSpace() + freeBlocks.getValue().getSpace();
-                    
-                    // Determine which block is the left of the two being merged
-                    // and grab its position
-                    int position = (currentPosition < otherPosition) ? 
-                                    currentPosition : otherPosition;
-                    
-                    // Create a new free space at the start of the left smaller
-                    // free space with the size of the two merged spaces
-                    FreeSpace mergedBlock = 
-                            new FreeSpace(position, totalSize);
-                    
-                    // Remove other space
-                    freeBlocks.remove();
-                    
-                    // Remove current space
-                    freeBlocks.moveToPos(currentIndexPosition);
-                    freeBlocks.remove();
-                    
-                    // Append new free space to end of list
-                    freeBlocks.append(mergedBlock);
-                    
-                    // Sort free block list, attempt a renewed merge, and exit
-                    sortFreeSpace();
-                    mergeFreeSpace();
-                    
-                    return;
-                }
-            }
-            
-            // Move to next free block in list
-            freeBlocks.moveToPos(++currentIndexPosition);
+    private FreeSpace mergeFreeSpace(FreeSpace newSpace) {
+        int position = newSpace.getHandlePosition();
+        int space = newSpace.getSpace();
+        
+        // Merge the free space to the left
+        Map.Entry<Integer, Integer> left = freeAddresses.floorEntry(position);
+        while (left != null && left.getKey() + left.getValue() == position) {
+            removeFreeSpace(new FreeSpace(left.getKey(), left.getValue()));
+            position = left.getKey();
+            space += left.getValue();
+            left = freeAddresses.floorEntry(position);
         }
         
-        // Sort one last time
-        sortFreeSpace();
+        // Merge the free space to the right
+        Integer right = freeAddresses.get(position + space);
+        while (right != null) {
+            removeFreeSpace(new FreeSpace(position + space, right));
+            space += right;
+            right = freeAddresses.get(position + space);
+        }
         
-        // Move back to beginning of free space list
-        freeBlocks.moveToStart();
+        FreeSpace merged = new FreeSpace(position, space);
+        addFreeSpace(merged);
+        return merged;
     }
     
     /**
-     * Sorts the list of free spaces in descending order of size and, in the
-     * case of having the same size, in ascending order of handle position.
+     * Grows the pool at its end by at least the provided number of bytes (see
+     * setGrowth) and returns the free space that then ends the pool.
+     * @param space The number of bytes needed
+     * @return The free space ending the pool
      */
-    private void sortFreeSpace() {
-        // Create an empty free space list to populate in decending order
-        // of spaces
-        LList<FreeSpace> newSpaceList = new LList<FreeSpace>();
-        
-        // Loop through and move free spaces from the old list to the new
-        // list in decending order of sizes and, in the case of matching sizes,
-        // ascending order of handles
-        while (freeBlocks.length() != 0) {
-            // Start at beginning of free block list
-            freeBlocks.moveToStart();
-            
-            int largestHandle = freeBlocks.getValue().getHandlePosition();
-            int largestSize = freeBlocks.getValue().getSpace();
-            int largestSpacePos = 0;
-            for (int i = 1; i < freeBlocks.length(); ++i) {
-                freeBlocks.next();
-                
-                // New block is larger than current largest block
-                if (freeBlocks.getValue().getSpace() > largestSize) {
-                    largestHandle = freeBlocks.getValue().getHandlePosition();
-                    largestSize = freeBlocks.getValue().getSpace();
-                    largestSpacePos = freeBlocks.currPos();
-                    
-                // New block is equal in size, but has an earlier handle
-                } else if (freeBlocks.getValue().getSpace() == largestSize) {
-                    if (freeBlocks.getValue().getHandlePosition() < largestHandle) {
-                        largestHandle = freeBlocks.getValue().getHandlePosition();
-                        largestSize = freeBlocks.getValue().getSpace();
-                        largestSpacePos = freeBlocks.currPos();
-                    }
+    private FreeSpace grow(int space) throws IOException {
+        int growth = (int) Math.min(Math.max(space, getGrowthStep(poolSize)),
+                                    Integer.MAX_VALUE - poolSize);
+        
+        // Add the new bytes as free space
+        if (totalFreeBlocks == 1 && freeBlocks.containsKey(0)) {
+            removeFreeSpace(new FreeSpace(freeBlocks.get(0).first(), 0));
+        }
+        FreeSpace end = mergeFreeSpace(new FreeSpace(poolSize, growth));
+        poolSize += growth;
+        
+        // Set the bytes left over aside in the file in one step
+        if (growth > space) bridge.preallocate(poolSize);
+        
+        return end;
+    }
+    
+    /**
+     * Returns the fewest bytes a pool of the provided size grows by beyond
+     * the space of the record (see setGrowth).
+     * @param size The size of the pool
+     * @return The number of bytes (0 if growth is not set)
+     */
+    private long getGrowthStep(int size) {
+        return Math.max(growthMinimum, (long) size * growthPercent / 100);
+    }
+    
+    /**
+     * Adds the free space to the index of free spaces.
+     * @param space The free space to add
+     */
+    private void addFreeSpace(FreeSpace space) {
+        TreeSet<Integer> handles = freeBlocks.get(space.getSpace());
+        if (handles == null) {
+            handles = new TreeSet<Integer>();
+            freeBlocks.put(space.getSpace(), handles);
+        }
+        handles.add(space.getHandlePosition());
+        freeAddresses.put(space.getHandlePosition(), space.getSpace());
+        ++totalFreeBlocks;
+    }
+    
+    /**
+     * Removes the free space from the index of free spaces.
+     * @param space The free space to remove
+     */
+    private void removeFreeSpace(FreeSpace space) {
+        TreeSet<Integer> handles = freeBlocks.get(space.getSpace());
+        handles.remove(space.getHandlePosition());
+        if (handles.isEmpty()) freeBlocks.remove(space.getSpace());
+        freeAddresses.remove(space.getHandlePosition());
+        --totalFreeBlocks;
+    }
+    
+    /**
+     * Returns the free space at the provided index of the order the spaces
+     * are printed in: descending order of size and, in the case of having
+     * the same size, ascending order of handle position.
+     * @param index The index of the free space
+     * @return The free space
+     */
+    private FreeSpace getFreeSpace(int index) {
+        for (Map.Entry<Integer, TreeSet<Integer>> entry : freeBlocks.descendingMap().entrySet()) {
+            if (index < entry.getValue().size()) {
+                for (int handle : entry.getValue()) {
+                    if (index-- == 0) return new FreeSpace(handle, entry.getKey());
                 }
             }
-            
-            // Move to next free space to insert
-            freeBlocks.moveToPos(largestSpacePos);
-            
-            // Insert the free space into the new list and remove it from the
-            // old list
-            newSpaceList.append(freeBlocks.remove());
+            index -= entry.getValue().size();
         }
         
-        // Start new list at beginning
-        newSpaceList.moveToStart();
-        
-        // Move new list of free spaces to free block list
-        freeBlocks = newSpaceList;
+        return null;
     }
     
     /**
@@ -439,9 +504,7 @@ public class MemPool {
         // Exit if not in bounds
         if (startingPosition < 0) return;
         
-        byte[] temp = new byte[totalBytes];
-        for (int i = 0; i < totalBytes; ++i) 
-            bridge.writeByte(startingPosition + i, (byte) 0);
+        bridge.fill(startingPosition, totalBytes, (byte) 0);
     }
     
         /**
@@ -478,26 +541,6 @@ public class MemPool {
             return space;
         }
         
-        /**
-         * Checks to see if the other space is adjacent to this one.
-         * @param otherSpace The other free space to compare
-         * @return Whether or not the two spaces are adjacent
-         */
-        public boolean isAdjacent(FreeSpace otherSpace) {
-            // Represents the end of the left free block
-            int endOfSpace = 0;
-            
-            // Check if the other space is to the left or right of the
-            // current space
-            if (this.handlePosition < otherSpace.getHandlePosition()) { // Right
-                endOfSpace = this.handlePosition + this.space - 1;
-                return (endOfSpace == otherSpace.getHandlePosition() - 1);
-            } else { // Left
-                endOfSpace = otherSpace.handlePosition + otherSpace.space - 1;
-                return (endOfSpace == this.getHandlePosition() - 1);
-            }
-        }
-        
         /**
          * Returns the free space as a string.
          * @return The string representation
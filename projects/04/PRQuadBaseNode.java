@@ -1,7 +1,6 @@
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.Arrays;
 
 /**
  * Represents a generic node in a QuadTree.
@@ -55,7 +54,7 @@ public abstract class PRQuadBaseNode<T> {
      * Stores the current contents of this node into memory (updates the handle).
      */
     public final void storeInMemory() throws IOException {
-        byte[] temp = new byte[256];
+        byte[] temp = new byte[getByteSize()];
         int tempSize = saveToBytes(temp);
         setHandle(this.memPool.insert(temp, tempSize));
     }
@@ -66,9 +65,7 @@ public abstract class PRQuadBaseNode<T> {
     public final void loadFromMemory() throws IOException {
         assert (this.handle != -1) : 
                 "ERROR: Invalid handle for loading from memory!";
-        byte[] temp = new byte[256];
-        int tempSize = this.memPool.get(temp, handle, 256);
-        loadFromBytes(Arrays.copyOf(temp, tempSize));
+        loadFromBytes(this.memPool.get(handle));
     }
     
     /**
@@ -84,6 +81,16 @@ public abstract class PRQuadBaseNode<T> {
         this.storeInMemory();
     }
     
+    /**
+     * Writes the current contents of this node over its record in memory,
+     * keeping the handle (the size of the contents must not have changed).
+     */
+    public final void rewriteInMemory() throws IOException {
+        byte[] temp = new byte[getByteSize()];
+        int tempSize = saveToBytes(temp);
+        this.memPool.update(this.handle, temp, tempSize);
+    }
+    
     /*************************************************************************/
     /* CLASS ABSTRACT METHODS                                                */
     /*************************************************************************/
@@ -162,6 +169,12 @@ public abstract class PRQuadBaseNode<T> {
     @Override
     public abstract String toString();
     
+    /**
+     * Returns the number of bytes this node takes in byte form.
+     * @return The size of the byte form of this node
+     */
+    public abstract int getByteSize();
+    
     /**
      * Converts this node into a byte form (with the size as the first byte).
      * @param byteArray The array to store the bytes into
@@ -138,6 +138,15 @@ public class PRQuadEmptyNode<T extends SerialNode> extends PRQuadBaseNode<T> {
         return "*";
     }
 
+    /**
+     * Returns the number of bytes this empty node takes in byte form.
+     * @return The size of the byte form of this empty node
+     */
+    @Override
+    public int getByteSize() {
+        return 1;
+    }
+    
     /**
      * Converts this empty node into a byte array with the size being the first
      * byte and the type being the second byte
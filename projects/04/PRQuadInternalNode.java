@@ -162,6 +162,59 @@ public class PRQuadInternalNode<T extends SerialNode> extends PRQuadBaseNode<T>
         
         return this.southEast;
     }
+    
+    /**
+     * Replaces the pointer to a child that is being moved in memory and
+     * rewrites this node in place (unlike the setters, which store the node
+     * again).
+     * @param oldPtr The pointer the child had
+     * @param newPtr The pointer the child has now
+     * @return Whether or not the node pointed to the child
+     */
+    public final boolean moveChildPtr(int oldPtr, int newPtr) throws IOException {
+        if (this.northWest == oldPtr) {
+            this.northWest = newPtr;
+        } else if (this.northEast == oldPtr) {
+            this.northEast = newPtr;
+        } else if (this.southWest == oldPtr) {
+            this.southWest = newPtr;
+        } else if (this.southEast == oldPtr) {
+            this.southEast = newPtr;
+        } else {
+            return false;
+        }
+        
+        this.rewriteInMemory();
+        return true;
+    }
+    
+    /**
+     * Returns the pointer to the region that contains the pair of coordinates
+     * without loading it (returns -1 if not in entire region).
+     * @param xMin The minimum x coordinate in the region
+     * @param yMin The minimum y coordinate in the region
+     * @param xMax The maximum x coordinate in the region
+     * @param yMax The maximum y coordinate in the region
+     * @param x The x coordinate to look for
+     * @param y The y coordinate to look for
+     * @return The pointer to the region containing the coordinates
+     */
+    public final int getRegionPtr(
+            double xMin, double yMin, double xMax, double yMax,
+            double x, double y) {
+        switch (this.getRegionFlag(xMin, yMin, xMax, yMax, x, y)) {
+            case REGION_NORTHWEST:
+                return this.northWest;
+            case REGION_NORTHEAST:
+                return this.northEast;
+            case REGION_SOUTHWEST:
+                return this.southWest;
+            case REGION_SOUTHEAST:
+                return this.southEast;
+            default:
+                return -1;
+        }
+    }
 
     /**
      * Sets the node located in the northwest region of this node.
@@ -173,13 +226,9 @@ public class PRQuadInternalNode<T extends SerialNode> extends PRQuadBaseNode<T>
         if (northWest != -1) getMemPool().remove(northWest);
         
         // Add the new instance
-        byte[] temp = new byte[256];
-        int tempSize;
-        if (newNorthWest == null) {
-            tempSize = (new PRQuadEmptyNode(getMemPool())).saveToBytes(temp);
-        } else {
-            tempSize = newNorthWest.saveToBytes(temp);
-        }
+        if (newNorthWest == null) newNorthWest = new PRQuadEmptyNode<T>(getMemPool());
+        byte[] temp = new byte[newNorthWest.getByteSize()];
+        int tempSize = newNorthWest.saveToBytes(temp);
         northWest = getMemPool().insert(temp, tempSize);
         
         return this.northWest;
@@ -195,13 +244,9 @@ public class PRQuadInternalNode<T extends SerialNode> extends PRQuadBaseNode<T>
         if (northEast != -1) getMemPool().remove(northEast);
         
         // Add the new instance
-        byte[] temp = new byte[256];
-        int tempSize;
-        if (newNorthEast == null) {
-            tempSize = (new PRQuadEmptyNode(getMemPool())).saveToBytes(temp);
-        } else {
-            tempSize = newNorthEast.saveToBytes(temp);
-        }
+        if (newNorthEast == null) newNorthEast = new PRQuadEmptyNode<T>(getMemPool());
+        byte[] temp = new byte[newNorthEast.getByteSize()];
+        int tempSize = newNorthEast.saveToBytes(temp);
         northEast = getMemPool().insert(temp, tempSize);
         
         return this.northEast;
@@ -217,13 +262,9 @@ public class PRQuadInternalNode<T extends SerialNode> extends PRQuadBaseNode<T>
         if (southWest != -1) getMemPool().remove(southWest);
         
         // Add the new instance
-        byte[] temp = new byte[256];
-        int tempSize;
-        if (newSouthWest == null) {
-            tempSize = (new PRQuadEmptyNode(getMemPool())).saveToBytes(temp);
-        } else {
-            tempSize = newSouthWest.saveToBytes(temp);
-        }
+        if (newSouthWest == null) newSouthWest = new PRQuadEmptyNode<T>(getMemPool());
+        byte[] temp = new byte[newSouthWest.getByteSize()];
+        int tempSize = newSouthWest.saveToBytes(temp);
         southWest = getMemPool().insert(temp, tempSize);
         
         return this.southWest;
@@ -239,13 +280,9 @@ public class PRQuadInternalNode<T extends SerialNode> extends PRQuadBaseNode<T>
         if (southEast != -1) getMemPool().remove(southEast);
         
         // Add the new instance
-        byte[] temp = new byte[256];
-        int tempSize;
-        if (newSouthEast == null) {
-            tempSize = (new PRQuadEmptyNode(getMemPool())).saveToBytes(temp);
-        } else {
-            tempSize = newSouthEast.saveToBytes(temp);
-        }
+        if (newSouthEast == null) newSouthEast = new PRQuadEmptyNode<T>(getMemPool());
+        byte[] temp = new byte[newSouthEast.getByteSize()];
+        int tempSize = newSouthEast.saveToBytes(temp);
         southEast = getMemPool().insert(temp, tempSize);
         
         return this.southEast;
@@ -830,6 +867,15 @@ public class PRQuadInternalNode<T extends SerialNode> extends PRQuadBaseNode<T>
         return ""; // Blank because wrapper is handled in main class
     }
 
+    /**
+     * Returns the number of bytes this internal node takes in byte form.
+     * @return The size of the byte form of this internal node
+     */
+    @Override
+    public int getByteSize() {
+        return 1 + 4 * 4;
+    }
+    
     /**
      * Convert this internal node into a byte array with the type being the 
      * first byte and the contents being the remaining bytes.
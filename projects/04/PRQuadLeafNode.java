@@ -67,6 +67,21 @@ public class PRQuadLeafNode<T extends SerialNode> extends PRQuadBaseNode<T> {
         return elementHandles;
     }
     
+    /**
+     * Replaces the handle of an element that is being moved in memory and
+     * rewrites this leaf in place.
+     * @param oldHandle The handle the element had
+     * @param newHandle The handle the element has now
+     * @return Whether or not this leaf held the element
+     */
+    public boolean moveElementHandle(int oldHandle, int newHandle) throws IOException {
+        int index = elementHandles.indexOf(oldHandle);
+        if (index == -1) return false;
+        elementHandles.set(index, newHandle);
+        this.rewriteInMemory();
+        return true;
+    }
+    
     /*************************************************************************/
     /* INHERITED METHODS                                                     */
     /*************************************************************************/
@@ -271,6 +286,15 @@ public class PRQuadLeafNode<T extends SerialNode> extends PRQuadBaseNode<T> {
         return returnString;
     }
 
+    /**
+     * Returns the number of bytes this leaf node takes in byte form.
+     * @return The size of the byte form of this leaf node
+     */
+    @Override
+    public int getByteSize() {
+        return 1 + 1 + MAXIMUM_ELEMENTS * 4;
+    }
+    
     /**
      * Converts this leaf node into a byte array with the type being the first 
      * byte and the remaining bytes being the contents of this leaf node.
@@ -123,6 +123,9 @@ public class PRQuadTree<T extends SerialNode> {
         } else if (root.isFlyweight()) {
             // Do nothing
         } else {
+            // Hint the children before the regions load them
+            this.prefetchChildren((PRQuadInternalNode<T>) root);
+            
             List<PRQuadBaseNode<T>> regions =
                     ((PRQuadInternalNode<T>) root).getRegions(
                         xMin, yMin, 
@@ -227,6 +230,68 @@ public class PRQuadTree<T extends SerialNode> {
         return (foundNode != null) ? loadFromHandle(foundNode.getElementHandleAt(x, y)) : null;
     }
     
+    /**
+     * Replaces the handle of the element with the provided coordinates, which
+     * is being moved in memory, in the leaf that holds it. Only the pointers
+     * on the way to the leaf are followed, so the element is never read.
+     * @param x The x coordinate of the element
+     * @param y The y coordinate of the element
+     * @param oldHandle The handle the element had
+     * @param newHandle The handle the element has now
+     * @return Whether or not the element was found
+     */
+    public boolean moveElement(double x, double y, int oldHandle, int newHandle) throws FileNotFoundException, IOException {
+        double[] bounds = { minimumXBound, minimumYBound, maximumXBound, maximumYBound };
+        PRQuadBaseNode<?> node = getNodeFromHandle(memPool, root);
+        while (node.isInternal()) {
+            node = getNodeFromHandle(memPool, narrowRegion((PRQuadInternalNode<?>) node, bounds, x, y));
+        }
+        
+        return node.isLeaf() && ((PRQuadLeafNode<?>) node).moveElementHandle(oldHandle, newHandle);
+    }
+    
+    /**
+     * Replaces the pointer to the node, which is being moved in memory, in its
+     * parent (or the root of the tree). The parent is found by descending
+     * towards one of the elements held under the node, which must still be
+     * at its old handle.
+     * @param oldHandle The handle the node had
+     * @param newHandle The handle the node has now
+     * @return Whether or not the node was found
+     */
+    public boolean moveNode(int oldHandle, int newHandle) throws FileNotFoundException, IOException {
+        if (root == oldHandle) {
+            root = newHandle;
+            return true;
+        }
+        
+        // Find the first element held under the node
+        PRQuadBaseNode<?> node = getNodeFromHandle(memPool, oldHandle);
+        while (node.isInternal()) {
+            PRQuadInternalNode<?> internal = (PRQuadInternalNode<?>) node;
+            int child = internal.getNorthWestPtr();
+            if (child == -1) child = internal.getNorthEastPtr();
+            if (child == -1) child = internal.getSouthWestPtr();
+            if (child == -1) child = internal.getSouthEastPtr();
+            node = getNodeFromHandle(memPool, child);
+        }
+        if (!node.isLeaf() || node.getTotalElements() == 0) return false;
+        SerialNode element = CityNode.create(memPool,
+                ((PRQuadLeafNode<?>) node).getElementHandles().get(0));
+        
+        // Descend towards the element until the node is one of the children
+        double[] bounds = { minimumXBound, minimumYBound, maximumXBound, maximumYBound };
+        node = getNodeFromHandle(memPool, root);
+        while (node.isInternal()) {
+            PRQuadInternalNode<?> internal = (PRQuadInternalNode<?>) node;
+            int child = narrowRegion(internal, bounds, element.x, element.y);
+            if (child == oldHandle) return internal.moveChildPtr(oldHandle, newHandle);
+            node = getNodeFromHandle(memPool, child);
+        }
+        
+        return false;
+    }
+    
     /**
      * Prints out information about the entire tree.
      */
@@ -246,6 +311,7 @@ public class PRQuadTree<T extends SerialNode> {
         
         // Check if it is an internal node that has children
         if (qRoot.isInternal()) {
+            this.prefetchChildren((PRQuadInternalNode) qRoot);
             oStream.write("(".getBytes());
             print(((PRQuadInternalNode) qRoot).getNorthWest(), oStream);
             print(((PRQuadInternalNode) qRoot).getNorthEast(), oStream);
@@ -255,6 +321,36 @@ public class PRQuadTree<T extends SerialNode> {
         }
     }
     
+    /**
+     * Hints to the memory pool that the children of the internal node are
+     * about to be read.
+     * @param node The internal node whose children to hint
+     */
+    private void prefetchChildren(PRQuadInternalNode<?> node) throws IOException {
+        memPool.prefetch(node.getNorthWestPtr());
+        memPool.prefetch(node.getNorthEastPtr());
+        memPool.prefetch(node.getSouthWestPtr());
+        memPool.prefetch(node.getSouthEastPtr());
+    }
+    
+    /**
+     * Narrows the bounds to the region of the internal node that contains the
+     * coordinates and returns the pointer to that region.
+     * @param node The internal node bounded by the bounds
+     * @param bounds The minimum x, minimum y, maximum x and maximum y
+     * @param x The x coordinate to look for
+     * @param y The y coordinate to look for
+     * @return The pointer to the region containing the coordinates
+     */
+    private int narrowRegion(PRQuadInternalNode<?> node, double[] bounds, double x, double y) {
+        int region = node.getRegionPtr(bounds[0], bounds[1], bounds[2], bounds[3], x, y);
+        double xMiddle = (bounds[0] + bounds[2]) / 2;
+        double yMiddle = (bounds[1] + bounds[3]) / 2;
+        if (x < xMiddle) bounds[2] = xMiddle; else bounds[0] = xMiddle;
+        if (y < yMiddle) bounds[3] = yMiddle; else bounds[1] = yMiddle;
+        return region;
+    }
+    
     /**
      * Returns the quad node found at the specified handle.
      * @param handle The handle used to find the quad node
@@ -262,9 +358,8 @@ public class PRQuadTree<T extends SerialNode> {
      */
     public static PRQuadBaseNode getNodeFromHandle(MemPool memPool, int handle) throws FileNotFoundException, IOException {
         if (handle == -1) return new PRQuadEmptyNode(memPool);
-        byte[] temp = new byte[256];
-        int tempSize = memPool.get(temp, handle, 256);
-        if (tempSize > 0) {
+        byte[] temp = memPool.get(handle);
+        if (temp.length > 0) {
             if (temp[0] == TYPE_LEAF) {
                 PRQuadLeafNode leafNode = new PRQuadLeafNode(memPool, handle);
                 leafNode.loadFromBytes(temp);
@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Represents an online compaction of the memory pool that runs a few records
+ * at a time between commands, so the holes left by removals are closed and
+ * the file shrinks without a long pause. Each step slides the record that
+ * follows the first free space down to the start of that space, which moves
+ * the free space up past the record, once everything pointing to the record
+ * has been given its new handle: the key or element of its binary search
+ * tree node, the name pointer of its city, the element handles of its
+ * quadtree leaf or the child pointer of its quadtree parent (or the root).
+ * Once the free space reaches the end of the pool it is cut off the file.
+ *
+ * Records are identified by the handles held in the binary search tree,
+ * else by the type byte of a quadtree node. A record that cannot be
+ * identified (or whose pointer cannot be found) is left where it is, which
+ * stops the compaction at that record.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public class PoolCompactor {
+    
+    private static final byte TYPE_LEAF = 2;
+    private static final byte TYPE_INTERNAL = 3;
+    
+    private MemPool memPool;
+    private int recordsMoved; // Records moved by every step
+    private int bytesTrimmed; // Bytes cut off the end of the pool
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new compaction of the provided memory pool.
+     * @param memPool The memory pool to compact
+     */
+    public PoolCompactor(MemPool memPool) {
+        this.memPool = memPool;
+        this.recordsMoved = 0;
+        this.bytesTrimmed = 0;
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Slides up to the provided number of records down into the free space
+     * before them, then cuts any free space that ends the pool off the file.
+     * @param quadTree The quadtree whose nodes and elements are in the pool
+     * @param bsTree The binary search tree of the names and cities
+     * @param records The most records to move
+     * @return The number of records moved
+     */
+    public int compact(PRQuadTree<CityNode> quadTree, BST<String, CityNode> bsTree,
+                       int records) throws IOException {
+        // Index the nodes of the binary search tree by the handles they hold
+        Map<Integer, BSTNode<String, CityNode>> byKey =
+                new HashMap<Integer, BSTNode<String, CityNode>>();
+        Map<Integer, BSTNode<String, CityNode>> byElement =
+                new HashMap<Integer, BSTNode<String, CityNode>>();
+        for (BSTNode<String, CityNode> node : bsTree.nodes()) {
+            byKey.put(node.keyPtr(), node);
+            byElement.put(node.elementPtr(), node);
+        }
+        
+        int moved = 0;
+        while (moved < records) {
+            int oldHandle = this.memPool.getNextSlide();
+            if (oldHandle == -1) break;
+            int newHandle = this.memPool.getFirstFreeLocation();
+            
+            // Point everything at the new handle while the record can still
+            // be read at the old one, then move it
+            BSTNode<String, CityNode> keyNode = byKey.remove(oldHandle);
+            BSTNode<String, CityNode> elementNode = byElement.remove(oldHandle);
+            if (keyNode != null) {
+                this.moveName(keyNode, newHandle);
+                byKey.put(newHandle, keyNode);
+            } else if (elementNode != null) {
+                if (!this.moveCity(quadTree, elementNode, newHandle)) break;
+                byElement.put(newHandle, elementNode);
+            } else if (!this.moveQuadNode(quadTree, oldHandle, newHandle)) {
+                break;
+            }
+            this.memPool.slide();
+            ++moved;
+        }
+        
+        this.recordsMoved += moved;
+        this.bytesTrimmed += this.memPool.trim();
+        return moved;
+    }
+    
+    /**
+     * Returns the number of records moved by every compaction so far.
+     * @return The integer count
+     */
+    public int getRecordsMoved() {
+        return this.recordsMoved;
+    }
+    
+    /**
+     * Returns the number of bytes cut off the end of the pool so far.
+     * @return The integer count
+     */
+    public int getBytesTrimmed() {
+        return this.bytesTrimmed;
+    }
+    
+    // =====================================================================
+    // = PRIVATE METHODS                                                   =
+    // =====================================================================
+    
+    /**
+     * Gives the name of the city held by the binary search tree node its new
+     * handle in the node and in the city.
+     * @param node The node whose key is the name
+     * @param newHandle The handle the name is moved to
+     */
+    private void moveName(BSTNode<String, CityNode> node, int newHandle) throws IOException {
+        node.setKey(newHandle);
+        CityNode city = CityNode.create(this.memPool, node.elementPtr());
+        city.setNamePtr(newHandle);
+        city.rewriteInMemory();
+    }
+    
+    /**
+     * Gives the city held by the binary search tree node its new handle in
+     * the node and in the quadtree leaf holding it.
+     * @param quadTree The quadtree holding the city
+     * @param node The node whose element is the city
+     * @param newHandle The handle the city is moved to
+     * @return Whether or not the leaf holding the city was found
+     */
+    private boolean moveCity(PRQuadTree<CityNode> quadTree, BSTNode<String, CityNode> node,
+                             int newHandle) throws IOException {
+        CityNode city = CityNode.create(this.memPool, node.elementPtr());
+        if (!quadTree.moveElement(city.x, city.y, node.elementPtr(), newHandle)) return false;
+        node.setElement(newHandle);
+        return true;
+    }
+    
+    /**
+     * Gives the quadtree node at the handle its new handle in its parent (or
+     * the root of the tree) if the record is a quadtree node.
+     * @param quadTree The quadtree holding the node
+     * @param oldHandle The handle of the record
+     * @param newHandle The handle the node is moved to
+     * @return Whether or not the record was a node of the tree
+     */
+    private boolean moveQuadNode(PRQuadTree<CityNode> quadTree, int oldHandle,
+                                 int newHandle) throws IOException {
+        byte[] record = this.memPool.get(oldHandle);
+        if (record.length == 0 || (record[0] != TYPE_LEAF && record[0] != TYPE_INTERNAL)) {
+            return false;
+        }
+        
+        return quadTree.moveNode(oldHandle, newHandle);
+    }
+}
@@ -0,0 +1,188 @@
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Represents a background reader that loads runs of blocks ahead of their
+ * use. Each run is read with a single positional channel read on a daemon
+ * thread and its blocks are held (staged) until the buffer bridge takes them
+ * on a miss. Staged blocks do not occupy the buffer pool, so reading ahead
+ * never evicts anything. Runs are read into a fixed set of slots allocated
+ * up front, which are reused oldest first. Only the thread using the bridge
+ * may call these
+ * methods; the background thread only fills in the runs.
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public class ReadAhead {
+    
+    private ExecutorService reader;
+    private HashMap<Integer, Staged> staged; // Block number to staged block
+    private byte[] slots; // The bytes of every slot, one block each
+    private int[] slotBlocks; // The block held by each slot (-1 if none)
+    private int nextSlot; // The slot the next run starts at
+    private int blockSize;
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new background reader with its own daemon thread.
+     * @param blockSize The size of each block in bytes
+     * @param maxStaged The most blocks to hold before forgetting the oldest
+     */
+    public ReadAhead(int blockSize, int maxStaged) {
+        this.blockSize = blockSize;
+        this.staged = new HashMap<Integer, Staged>();
+        this.slots = new byte[maxStaged * blockSize];
+        this.slotBlocks = new int[maxStaged];
+        Arrays.fill(this.slotBlocks, -1);
+        this.nextSlot = 0;
+        this.reader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "read-ahead");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    /**
+     * Schedules the run of blocks to be read in the background with one read
+     * into adjacent slots. The blocks held by those slots are forgotten.
+     * @param channel The channel of the file to read from
+     * @param firstBlock The block number of the first block of the run
+     * @param totalBlocks The number of blocks in the run
+     */
+    public void schedule(final FileChannel channel, int firstBlock, int totalBlocks) {
+        // Keep the run whole, starting over at the first slot if needed
+        totalBlocks = Math.min(totalBlocks, this.slotBlocks.length);
+        if (this.nextSlot + totalBlocks > this.slotBlocks.length) this.nextSlot = 0;
+        int firstSlot = this.nextSlot;
+        this.nextSlot += totalBlocks;
+        for (int i = 0; i < totalBlocks; ++i) this.release(firstSlot + i);
+        
+        // Only this run writes to its slots until it is taken or released
+        // (runs are read one at a time, so a released run is finished first)
+        final long position = (long) firstBlock * this.blockSize;
+        final ByteBuffer target = ByteBuffer.wrap(this.slots, firstSlot * this.blockSize,
+                                                  totalBlocks * this.blockSize).slice();
+        Future<Void> run = this.reader.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                // Read up to the end of the file and zero the rest
+                while (target.hasRemaining()) {
+                    if (channel.read(target, position + target.position()) < 0) break;
+                }
+                while (target.hasRemaining()) target.put((byte) 0);
+                return null;
+            }
+        });
+        for (int i = 0; i < totalBlocks; ++i) {
+            this.staged.put(firstBlock + i, new Staged(run, firstSlot + i));
+            this.slotBlocks[firstSlot + i] = firstBlock + i;
+        }
+    }
+    
+    /**
+     * Returns whether or not the block is staged (or being read).
+     * @param block The block number to check
+     * @return Whether or not the block is staged
+     */
+    public boolean isStaged(int block) {
+        return this.staged.containsKey(block);
+    }
+    
+    /**
+     * Removes the staged block and copies its bytes into the provided byte
+     * buffer, waiting for its run to finish reading if needed. Returns false
+     * (copying nothing) if the block is not staged or its run could not be
+     * read.
+     * @param block The block number to take
+     * @param target The byte buffer to copy the bytes into
+     * @return Whether or not the bytes were copied
+     */
+    public boolean take(int block, ByteBuffer target) {
+        Staged entry = this.staged.remove(block);
+        if (entry == null) return false;
+        this.slotBlocks[entry.slot] = -1;
+        try {
+            entry.run.get();
+            target.put(this.slots, entry.slot * this.blockSize, this.blockSize);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException ex) {
+            return false;
+        }
+    }
+    
+    /**
+     * Forgets the staged block (its contents are about to change on disk).
+     * @param block The block number to forget
+     */
+    public void discard(int block) {
+        Staged entry = this.staged.remove(block);
+        if (entry != null) this.slotBlocks[entry.slot] = -1;
+    }
+    
+    /**
+     * Forgets every staged block.
+     */
+    public void clear() {
+        this.staged.clear();
+        Arrays.fill(this.slotBlocks, -1);
+    }
+    
+    // =====================================================================
+    // = PRIVATE METHODS                                                   =
+    // =====================================================================
+    
+    /**
+     * Forgets the block held by the slot, if any, so the slot can be reused.
+     * @param slot The index of the slot
+     */
+    private void release(int slot) {
+        int block = this.slotBlocks[slot];
+        if (block < 0) return;
+        this.staged.remove(block);
+        this.slotBlocks[slot] = -1;
+    }
+    
+    // =====================================================================
+    // = INNER CLASSES                                                     =
+    // =====================================================================
+    
+    /**
+     * A block held within a run that is read (or being read) in the background.
+     */
+    private static class Staged {
+        private Future<Void> run;
+        private int slot; // The slot holding the block
+        
+        /**
+         * Creates a new staged block.
+         * @param run The run containing the block
+         * @param slot The slot holding the block
+         */
+        public Staged(Future<Void> run, int slot) {
+            this.run = run;
+            this.slot = slot;
+        }
+    }
+}
@@ -1,7 +1,6 @@
 
 import java.awt.Point;
 import java.io.IOException;
-import java.util.Arrays;
 
 /*
  * To change this template, choose Tools | Templates
@@ -104,7 +103,7 @@ public abstract class SerialNode extends Point.Double {
      * Stores the current contents of this node into memory (updates the handle).
      */
     public final void storeInMemory() throws IOException {
-        byte[] temp = new byte[256];
+        byte[] temp = new byte[getByteSize()];
         int tempSize = saveToBytes(temp);
         setHandle(this.memPool.insert(temp, tempSize));
     }
@@ -115,15 +114,24 @@ public abstract class SerialNode extends Point.Double {
     public final void loadFromMemory() throws IOException {
         assert (this.handle != -1) : 
                 "ERROR: Invalid handle for loading from memory!";
-        byte[] temp = new byte[256];
-        int tempSize = this.memPool.get(temp, handle, 256);
-        loadFromBytes(Arrays.copyOf(temp, tempSize));
+        loadFromBytes(this.memPool.get(handle));
+    }
+    
+    /**
+     * Writes the current contents of this node over its record in memory,
+     * keeping the handle (the size of the contents must not have changed).
+     */
+    public final void rewriteInMemory() throws IOException {
+        byte[] temp = new byte[getByteSize()];
+        int tempSize = saveToBytes(temp);
+        this.memPool.update(this.handle, temp, tempSize);
     }
     
     /*************************************************************************/
     /* CLASS ABSTRACT METHODS                                                */
     /*************************************************************************/
     
+    public abstract int getByteSize();
     public abstract int saveToBytes(byte[] byteArray);
     public abstract void loadFromBytes(byte[] byteArray);
     public abstract void delete();
@@ -0,0 +1,107 @@
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * Represents the full 2Q policy (Johnson and Shasha). New blocks enter a small
+ * FIFO queue (A1in) so that a single scan cannot flush the pool. Blocks pushed
+ * out of A1in are remembered in a ghost queue (A1out); a block that is loaded
+ * again while remembered is promoted to the main LRU queue (Am).
+ * @author rcsvt (Robert C. Senkbeil)
+ */
+public class TwoQueuePolicy extends EvictionPolicy {
+    
+    private LinkedHashSet<Integer> a1In; // FIFO of blocks seen once
+    private LinkedHashSet<Integer> a1Out; // Ghost FIFO (no buffers held)
+    private LinkedHashSet<Integer> am; // LRU of blocks seen again
+    private int maxA1In; // Kin, the target size of A1in
+    private int maxA1Out; // Kout, the number of ghosts remembered
+    
+    // =====================================================================
+    // = CONSTRUCTORS                                                      =
+    // =====================================================================
+    
+    /**
+     * Creates a new 2Q policy for a pool of the provided size, using the
+     * suggested tuning of Kin = 25% and Kout = 50% of the pool.
+     * @param capacity The total number of buffers in the pool
+     */
+    public TwoQueuePolicy(int capacity) {
+        this.a1In = new LinkedHashSet<Integer>();
+        this.a1Out = new LinkedHashSet<Integer>();
+        this.am = new LinkedHashSet<Integer>();
+        this.maxA1In = Math.max(capacity / 4, 1);
+        this.maxA1Out = Math.max(capacity / 2, 1);
+    }
+    
+    // =====================================================================
+    // = PUBLIC METHODS                                                    =
+    // =====================================================================
+    
+    @Override
+    public String getName() {
+        return TWO_QUEUE;
+    }
+    
+    @Override
+    public void blockAdded(int block) {
+        // A remembered block has proven itself and goes to the main queue
+        if (this.a1Out.remove(block)) {
+            this.am.add(block);
+        } else {
+            this.a1In.add(block);
+        }
+    }
+    
+    @Override
+    public void blockAccessed(int block) {
+        // Hits in A1in are treated as correlated and ignored
+        if (this.am.remove(block)) this.am.add(block);
+    }
+    
+    @Override
+    public int selectVictim(int incomingBlock) {
+        // Take from A1in while it is over its share (or Am has nothing)
+        if (this.a1In.size() > this.maxA1In || this.am.isEmpty()) {
+            int victim = removeFirst(this.a1In);
+            
+            // Remember the block, forgetting the oldest ghost if needed
+            this.a1Out.add(victim);
+            if (this.a1Out.size() > this.maxA1Out) removeFirst(this.a1Out);
+            return victim;
+        }
+        return removeFirst(this.am);
+    }
+    
+    @Override
+    public void blockRestored(int block) {
+        // A victim of A1in was remembered in A1out, while Am forgets its own
+        if (this.a1Out.remove(block)) {
+            this.a1In.add(block);
+        } else {
+            this.am.add(block);
+        }
+    }
+    
+    @Override
+    public void clear() {
+        this.a1In.clear();
+        this.a1Out.clear();
+        this.am.clear();
+    }
+    
+    // =====================================================================
+    // = PRIVATE METHODS                                                   =
+    // =====================================================================
+    
+    /**
+     * Removes and returns the oldest block of the provided queue.
+     * @param queue The queue to remove from
+     * @return The block removed
+     */
+    private static int removeFirst(LinkedHashSet<Integer> queue) {
+        Iterator<Integer> it = queue.iterator();
+        int block = it.next();
+        it.remove();
+        return block;
+    }
+}